@@ -35,6 +35,9 @@ public class Application {
     @Value("${sensitiveData.enableLogging:false}")
     private boolean enableSensitiveLogging;
 
+    @Value("${sensitiveData.maxLoggedResponseBytes:65536}")
+    private int maxLoggedResponseBytes;
+
     private final Log log = LogFactory.getLog(Application.class);
 
     public static void main(String[] args) {
@@ -46,6 +49,6 @@ public class Application {
 
     @Bean
     public Filter reqRespLoggingFilter() {
-        return new RequestResponseLoggingFilter(null, enableSensitiveLogging);
+        return new RequestResponseLoggingFilter(null, enableSensitiveLogging, maxLoggedResponseBytes);
     }
 }
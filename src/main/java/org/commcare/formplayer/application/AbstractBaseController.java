@@ -63,6 +63,9 @@ public abstract class AbstractBaseController {
     @Autowired
     private VirtualDataInstanceService virtualDataInstanceService;
 
+    @Autowired
+    protected FormSessionCache formSessionCache;
+
 
     void logNotification(@Nullable NotificationMessage notification, HttpServletRequest req) {
         notificationLogger.logNotification(notification, req);
@@ -110,9 +113,30 @@ public abstract class AbstractBaseController {
         return getFormSession(serializableFormSession, commCareSession);
     }
 
+    /**
+     * Get the form session for a request that saves it afterwards, using the live session kept on
+     * this node when it is still current. Callers put the session back in the {@link FormSessionCache}
+     * once it is saved.
+     */
+    protected FormSession getCachedFormSession(SerializableFormSession serializableFormSession) throws Exception {
+        if (formSessionCache.isEnabled()) {
+            // sync first if the restore has expired so the sandbox version reflects it
+            restoreFactory.getSandbox();
+            FormSession formSession = formSessionCache.take(serializableFormSession,
+                    restoreFactory.getSandboxVersion());
+            if (formSession != null && formSession.resume(serializableFormSession, restoreFactory,
+                    storageFactory)) {
+                return formSession;
+            }
+        }
+        return getFormSession(serializableFormSession);
+    }
+
     @NotNull
     protected FormSession getFormSession(SerializableFormSession serializableFormSession,
             @Nullable CommCareSession commCareSession) throws Exception {
+        // the rebuilt session shares its form definition with any live one
+        formSessionCache.evict(serializableFormSession.getId());
         FormplayerRemoteInstanceFetcher formplayerRemoteInstanceFetcher = new FormplayerRemoteInstanceFetcher(
                 runnerService.getCaseSearchHelper(),
                 virtualDataInstanceService);
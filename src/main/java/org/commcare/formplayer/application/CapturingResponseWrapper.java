@@ -0,0 +1,151 @@
+package org.commcare.formplayer.application;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Response wrapper that passes the body straight through to the client while keeping a copy of
+ * its first bytes for logging.
+ *
+ * Unlike {@link org.springframework.web.util.ContentCachingResponseWrapper} the body is never
+ * held in memory in full, so large responses are written out as they are serialized and sent
+ * with chunked transfer encoding rather than buffered until the request completes.
+ */
+public class CapturingResponseWrapper extends HttpServletResponseWrapper {
+
+    private final int maxCapturedBytes;
+    private final ByteArrayOutputStream captured = new ByteArrayOutputStream();
+    private long size;
+
+    private CapturingOutputStream outputStream;
+    private PrintWriter writer;
+
+    /**
+     * @param maxCapturedBytes the number of leading bytes of the body to keep
+     */
+    public CapturingResponseWrapper(HttpServletResponse response, int maxCapturedBytes) {
+        super(response);
+        this.maxCapturedBytes = maxCapturedBytes;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (writer != null) {
+            throw new IllegalStateException("getWriter() has already been called on this response");
+        }
+        if (outputStream == null) {
+            outputStream = new CapturingOutputStream(super.getOutputStream());
+        }
+        return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            if (outputStream != null) {
+                throw new IllegalStateException("getOutputStream() has already been called on this response");
+            }
+            outputStream = new CapturingOutputStream(super.getOutputStream());
+            writer = new PrintWriter(new OutputStreamWriter(outputStream, getCharset()));
+        }
+        return writer;
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        super.flushBuffer();
+    }
+
+    /**
+     * @return the leading bytes of the body decoded with the response's character encoding
+     */
+    public String getCapturedBody() {
+        if (writer != null) {
+            writer.flush();
+        }
+        return new String(captured.toByteArray(), getCharset());
+    }
+
+    /**
+     * @return the total number of bytes written to the body
+     */
+    public long getSize() {
+        return size;
+    }
+
+    public boolean isTruncated() {
+        return size > captured.size();
+    }
+
+    private Charset getCharset() {
+        String encoding = getCharacterEncoding();
+        try {
+            return encoding == null ? StandardCharsets.ISO_8859_1 : Charset.forName(encoding);
+        } catch (IllegalArgumentException e) {
+            return StandardCharsets.ISO_8859_1;
+        }
+    }
+
+    private void capture(byte[] bytes, int offset, int length) {
+        size += length;
+        int remaining = maxCapturedBytes - captured.size();
+        if (remaining > 0) {
+            captured.write(bytes, offset, Math.min(remaining, length));
+        }
+    }
+
+    private class CapturingOutputStream extends ServletOutputStream {
+        private final ServletOutputStream delegate;
+
+        CapturingOutputStream(ServletOutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate.write(b);
+            size++;
+            if (captured.size() < maxCapturedBytes) {
+                captured.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            delegate.write(bytes, offset, length);
+            capture(bytes, offset, length);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            delegate.setWriteListener(writeListener);
+        }
+    }
+}
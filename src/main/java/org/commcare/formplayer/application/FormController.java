@@ -82,7 +82,7 @@ public class FormController extends AbstractBaseController {
     public FormEntryResponseBean changeLocale(@RequestBody ChangeLocaleRequestBean changeLocaleBean,
                                               @CookieValue(name = Constants.POSTGRES_DJANGO_SESSION_ID, required = false) String authToken) throws Exception {
         SerializableFormSession serializableFormSession = formSessionService.getSessionById(changeLocaleBean.getSessionId());
-        FormSession formEntrySession = getFormSession(serializableFormSession);
+        FormSession formEntrySession = getCachedFormSession(serializableFormSession);
         formEntrySession.changeLocale(changeLocaleBean.getLocale());
         FormEntryResponseBean responseBean = formEntrySession.getCurrentJson();
         updateSession(formEntrySession);
@@ -108,7 +108,7 @@ public class FormController extends AbstractBaseController {
 
         FormSession formEntrySession = categoryTimingHelper.timed(
                 Constants.TimingCategories.INITIALIZE_SESSION,
-                () -> getFormSession(serializableFormSession)
+                () -> getCachedFormSession(serializableFormSession)
         );
 
         FormEntryResponseBean responseBean = categoryTimingHelper.timed(
@@ -184,7 +184,7 @@ public class FormController extends AbstractBaseController {
     public FormEntryResponseBean newRepeat(@RequestBody RepeatRequestBean newRepeatRequestBean,
                                            @CookieValue(Constants.POSTGRES_DJANGO_SESSION_ID) String authToken) throws Exception {
         SerializableFormSession serializableFormSession = formSessionService.getSessionById(newRepeatRequestBean.getSessionId());
-        FormSession formEntrySession = getFormSession(serializableFormSession);
+        FormSession formEntrySession = getCachedFormSession(serializableFormSession);
         JSONObject response = JsonActionUtils.descendRepeatToJson(formEntrySession.getFormEntryController(),
                 formEntrySession.getFormEntryModel(),
                 newRepeatRequestBean.getRepeatIndex());
@@ -203,7 +203,7 @@ public class FormController extends AbstractBaseController {
     public FormEntryResponseBean deleteRepeat(@RequestBody RepeatRequestBean deleteRepeatRequestBean,
                                               @CookieValue(name = Constants.POSTGRES_DJANGO_SESSION_ID, required = false) String authToken) throws Exception {
         SerializableFormSession serializableFormSession = formSessionService.getSessionById(deleteRepeatRequestBean.getSessionId());
-        FormSession formEntrySession = getFormSession(serializableFormSession);
+        FormSession formEntrySession = getCachedFormSession(serializableFormSession);
         JSONObject response = JsonActionUtils.deleteRepeatToJson(formEntrySession.getFormEntryController(),
                 formEntrySession.getFormEntryModel(),
                 deleteRepeatRequestBean.getRepeatIndex(), deleteRepeatRequestBean.getFormIndex());
@@ -222,7 +222,7 @@ public class FormController extends AbstractBaseController {
     public FormEntryNavigationResponseBean getNext(@RequestBody SessionRequestBean requestBean,
                                                    @CookieValue(name = Constants.POSTGRES_DJANGO_SESSION_ID, required = false) String authToken) throws Exception {
         SerializableFormSession serializableFormSession = formSessionService.getSessionById(requestBean.getSessionId());
-        FormSession formSession = getFormSession(serializableFormSession);
+        FormSession formSession = getCachedFormSession(serializableFormSession);
         formSession.stepToNextIndex();
         FormEntryNavigationResponseBean responseBean = formSession.getFormNavigation();
         updateSession(formSession);
@@ -237,7 +237,7 @@ public class FormController extends AbstractBaseController {
     public FormEntryNavigationResponseBean getNextSms(@RequestBody SessionRequestBean requestBean,
                                                       @CookieValue(name = Constants.POSTGRES_DJANGO_SESSION_ID, required = false) String authToken) throws Exception {
         SerializableFormSession serializableFormSession = formSessionService.getSessionById(requestBean.getSessionId());
-        FormSession formSession = getFormSession(serializableFormSession);
+        FormSession formSession = getCachedFormSession(serializableFormSession);
         FormEntryNavigationResponseBean responseBean = formSession.getNextFormNavigation();
         updateSession(formSession);
         return responseBean;
@@ -251,7 +251,7 @@ public class FormController extends AbstractBaseController {
     public FormEntryNavigationResponseBean getPrevious(@RequestBody SessionRequestBean requestBean,
                                                        @CookieValue(name = Constants.POSTGRES_DJANGO_SESSION_ID, required = false) String authToken) throws Exception {
         SerializableFormSession serializableFormSession = formSessionService.getSessionById(requestBean.getSessionId());
-        FormSession formSession = getFormSession(serializableFormSession);
+        FormSession formSession = getCachedFormSession(serializableFormSession);
         formSession.stepToPreviousIndex();
         FormEntryNavigationResponseBean responseBean = formSession.getFormNavigation();
         updateSession(formSession);
@@ -283,16 +283,17 @@ public class FormController extends AbstractBaseController {
     public FormEntryNavigationResponseBean getCurrent(@RequestBody SessionRequestBean requestBean,
                                                       @CookieValue(name = Constants.POSTGRES_DJANGO_SESSION_ID, required = false) String authToken) throws Exception {
         org.commcare.formplayer.objects.SerializableFormSession serializableFormSession = formSessionService.getSessionById(requestBean.getSessionId());
-        FormSession formSession = getFormSession(serializableFormSession);
+        FormSession formSession = getCachedFormSession(serializableFormSession);
         FormEntryNavigationResponseBean responseBean = formSession.getFormNavigation();
         updateSession(formSession);
         return responseBean;
     }
 
     private void updateSession(FormSession formEntrySession) throws Exception {
-        categoryTimingHelper.timed(
+        SerializableFormSession savedSession = categoryTimingHelper.timed(
                 Constants.TimingCategories.UPDATE_SESSION,
                 () -> formSessionService.saveSession(formEntrySession.serialize())
         );
+        formSessionCache.put(formEntrySession, savedSession, restoreFactory.getSandboxVersion());
     }
 }
@@ -79,6 +79,9 @@ public class FormSubmissionController extends AbstractBaseController {
     @Autowired
     private FormplayerDatadog datadog;
 
+    @Autowired
+    private CaseSearchHelper caseSearchHelper;
+
     @Resource(name = "redisVolatilityDict")
     private ValueOperations<String, FormVolatilityRecord> volatilityCache;
 
@@ -302,6 +305,7 @@ public class FormSubmissionController extends AbstractBaseController {
 
             boolean skipFixtures = storageFactory.getPropertyManager().skipFixturesAfterSubmit();
             restoreFactory.performTimedSync(true, skipFixtures, false);
+            caseSearchHelper.clearCacheForUser();
         }
         return context.success();
     }
@@ -108,9 +108,10 @@ public class MenuController extends AbstractBaseController {
 
         restoreFactory.cacheSessionSelections(selections);
         return setLocationNeeds(
-                new EntityDetailListResponse(entityScreen,
-                        menuSession.getEvalContextWithHereFuncHandler(),
+                runnerService.getCaseListDetail(menuSession,
+                        entityScreen,
                         reference,
+                        detailSelection,
                         storageFactory.getPropertyManager().isFuzzySearchEnabled()),
                 menuSession
         );
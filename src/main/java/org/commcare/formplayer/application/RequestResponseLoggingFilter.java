@@ -9,7 +9,6 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.springframework.core.annotation.Order;
 import org.springframework.web.filter.GenericFilterBean;
-import org.springframework.web.util.ContentCachingResponseWrapper;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
@@ -28,9 +27,18 @@ public class RequestResponseLoggingFilter extends GenericFilterBean {
 
     private Log log = LogFactory.getLog(RequestResponseLoggingFilter.class);
     private boolean enableSensitiveLogging = false;
+    // only the start of the response body is logged so the body is never held in memory in full
+    private int maxLoggedResponseBytes = DEFAULT_MAX_LOGGED_RESPONSE_BYTES;
+
+    public static final int DEFAULT_MAX_LOGGED_RESPONSE_BYTES = 64 * 1024;
 
     public RequestResponseLoggingFilter(Log log, boolean enableSensitiveLogging){
+        this(log, enableSensitiveLogging, DEFAULT_MAX_LOGGED_RESPONSE_BYTES);
+    }
+
+    public RequestResponseLoggingFilter(Log log, boolean enableSensitiveLogging, int maxLoggedResponseBytes){
         super();
+        this.maxLoggedResponseBytes = maxLoggedResponseBytes;
         if (log != null) {
             this.log = log;
         }
@@ -70,7 +78,8 @@ public class RequestResponseLoggingFilter extends GenericFilterBean {
 
         // Pass onto next filter, which should not throw an exception.
         final HttpServletResponse httpResponse = (HttpServletResponse) response;
-        ContentCachingResponseWrapper responseWrapper = new ContentCachingResponseWrapper(httpResponse);
+        CapturingResponseWrapper responseWrapper = new CapturingResponseWrapper(httpResponse,
+                maxLoggedResponseBytes);
         filterChain.doFilter(request, responseWrapper);
 
         try {
@@ -80,9 +89,8 @@ public class RequestResponseLoggingFilter extends GenericFilterBean {
             log.error(e);
             logLineJson.put("loggingResponseError", e);
         } finally {
-            // Always log and always prep the response for outbound connection
+            // Always log, the body has already been written through to the response
             log.info(logLineJson);
-            responseWrapper.copyBodyToResponse();
         }
     }
 
@@ -108,10 +116,12 @@ public class RequestResponseLoggingFilter extends GenericFilterBean {
         logLineJson.put("requestUrl", new String(((HttpServletRequest) request).getRequestURL()));
     }
 
-    private void doAfter(JSONObject logLineJson, ContentCachingResponseWrapper responseWrapper) {
-        String responseBody = new String(responseWrapper.getContentAsByteArray());
+    private void doAfter(JSONObject logLineJson, CapturingResponseWrapper responseWrapper) {
         logLineJson.put("date", this.currentTimeISO8601())
-                .put("responseBody", responseBody).put("responseCode", responseWrapper.getStatus());
+                .put("responseBody", responseWrapper.getCapturedBody())
+                .put("responseSize", responseWrapper.getSize())
+                .put("responseTruncated", responseWrapper.isTruncated())
+                .put("responseCode", responseWrapper.getStatus());
     }
 
     private String currentTimeISO8601() {
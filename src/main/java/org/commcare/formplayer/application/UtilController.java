@@ -7,9 +7,11 @@ import org.commcare.formplayer.annotations.UserLock;
 import org.commcare.formplayer.annotations.UserRestore;
 import org.commcare.formplayer.aspects.LockAspect;
 import org.commcare.formplayer.beans.*;
+import org.commcare.formplayer.services.CaseSearchHelper;
 import org.commcare.formplayer.services.CategoryTimingHelper;
 import org.commcare.formplayer.services.FormSessionService;
 import org.commcare.formplayer.services.FormplayerLockRegistry;
+import org.commcare.formplayer.services.PrewarmService;
 import org.commcare.formplayer.services.RestoreFactory;
 import org.commcare.formplayer.sqlitedb.UserDB;
 import org.commcare.formplayer.util.Constants;
@@ -55,12 +57,19 @@ public class UtilController {
     @Autowired
     private CategoryTimingHelper categoryTimingHelper;
 
+    @Autowired
+    private PrewarmService prewarmService;
+
+    @Autowired
+    private CaseSearchHelper caseSearchHelper;
+
     @RequestMapping(value = Constants.URL_SYNC_DB, method = RequestMethod.POST)
     @UserLock
     @UserRestore
     public SyncDbResponseBean syncUserDb(@RequestBody SyncDbRequestBean syncRequest,
                                          @CookieValue(value = Constants.POSTGRES_DJANGO_SESSION_ID, required = false) String authToken) throws Exception {
         restoreFactory.performTimedSync();
+        caseSearchHelper.clearCacheForUser();
         return new SyncDbResponseBean();
     }
 
@@ -137,6 +146,18 @@ public class UtilController {
         return new ServerUpBean();
     }
 
+    @RequestMapping(value = Constants.URL_PREWARM_BUILD, method = RequestMethod.POST)
+    public PrewarmStatusBean prewarmBuild(@RequestBody PrewarmRequestBean prewarmRequest) {
+        return prewarmService.prewarm(
+                prewarmRequest.getDomain(), prewarmRequest.getAppId(), prewarmRequest.getBuildId());
+    }
+
+    @RequestMapping(value = Constants.URL_PREWARM_STATUS, method = RequestMethod.POST)
+    public PrewarmStatusBean prewarmStatus(@RequestBody PrewarmRequestBean prewarmRequest) {
+        return prewarmService.getStatus(
+                prewarmRequest.getDomain(), prewarmRequest.getAppId(), prewarmRequest.getBuildId());
+    }
+
     @NoLogging
     @RequestMapping(
         value = Constants.URL_VALIDATE_FORM,
@@ -14,12 +14,26 @@ import org.commcare.formplayer.aspects.LoggingAspect;
 import org.commcare.formplayer.aspects.MetricsAspect;
 import org.commcare.formplayer.aspects.SetBrowserValuesAspect;
 import org.commcare.formplayer.aspects.UserRestoreAspect;
+import org.commcare.formplayer.engine.CczBlobStore;
+import org.commcare.formplayer.engine.CczStore;
 import org.commcare.formplayer.engine.FormplayerArchiveFileRoot;
+import org.commcare.formplayer.engine.LocalDiskCczBlobStore;
+import org.commcare.formplayer.engine.SharedFileSystemCczBlobStore;
+import org.commcare.formplayer.engine.ZipFileCache;
+import org.commcare.formplayer.installers.XFormPreparser;
 import org.commcare.formplayer.objects.FormVolatilityRecord;
 import org.commcare.formplayer.services.BrowserValuesProvider;
+import org.commcare.formplayer.services.CaseSearchRedisCache;
+import org.commcare.formplayer.services.DetailResponseCache;
+import org.commcare.formplayer.services.EntityListCache;
+import org.commcare.formplayer.services.FormSessionCache;
 import org.commcare.formplayer.services.FormattedQuestionsService;
 import org.commcare.formplayer.services.FormplayerLockRegistry;
+import org.commcare.formplayer.services.GraphHtmlCache;
+import org.commcare.formplayer.services.NavigationSnapshotCache;
+import org.commcare.formplayer.services.SessionSelectionCache;
 import org.commcare.formplayer.util.FormplayerDatadog;
+import org.commcare.formplayer.util.ParallelEntityEvaluator;
 import org.commcare.modern.reference.ArchiveFileRoot;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -35,12 +49,14 @@ import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.context.request.RequestContextListener;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.io.File;
 import java.util.Arrays;
 import java.util.List;
 
@@ -76,6 +92,72 @@ public class WebAppContext implements WebMvcConfigurer {
     @Value("${detailed_tagging.tag_names:}")
     private List<String> detailedTagNames;
 
+    @Value("${formplayer.ccz.dir:ccz/}")
+    private String cczDir;
+
+    @Value("${formplayer.ccz.maxEntries:200}")
+    private int cczMaxEntries;
+
+    @Value("${formplayer.ccz.maxSizeMb:10240}")
+    private long cczMaxSizeMb;
+
+    @Value("${formplayer.ccz.sharedDir:}")
+    private String cczSharedDir;
+
+    @Value("${formplayer.zipCache.idleTimeoutMs:600000}")
+    private long zipCacheIdleTimeoutMs;
+
+    @Value("${formplayer.entityEvaluation.threads:#{T(java.lang.Runtime).getRuntime().availableProcessors()}}")
+    private int entityEvaluationThreads;
+
+    @Value("${formplayer.entityEvaluation.maxPerRequest:4}")
+    private int entityEvaluationMaxPerRequest;
+
+    @Value("${formplayer.entityListCache.maxSizeMb:256}")
+    private long entityListCacheMaxSizeMb;
+
+    @Value("${formplayer.entityListCache.expireAfterAccessSeconds:1800}")
+    private long entityListCacheExpireAfterAccessSeconds;
+
+    @Value("${formplayer.navigationSnapshotCache.maxSizeMb:128}")
+    private long navigationSnapshotCacheMaxSizeMb;
+
+    @Value("${formplayer.navigationSnapshotCache.expireAfterWriteSeconds:600}")
+    private long navigationSnapshotCacheExpireAfterWriteSeconds;
+
+    @Value("${formplayer.graphCache.maxSizeMb:64}")
+    private long graphCacheMaxSizeMb;
+
+    @Value("${formplayer.graphCache.expireAfterAccessSeconds:1800}")
+    private long graphCacheExpireAfterAccessSeconds;
+
+    @Value("${formplayer.detailCache.maxEntries:10000}")
+    private long detailCacheMaxEntries;
+
+    @Value("${formplayer.detailCache.expireAfterAccessSeconds:1800}")
+    private long detailCacheExpireAfterAccessSeconds;
+
+    @Value("${formplayer.sessionSelectionCache.nearCacheTtlSeconds:10}")
+    private long sessionSelectionNearCacheTtlSeconds;
+
+    @Value("${formplayer.sessionSelectionCache.nearCacheMaxUsers:10000}")
+    private long sessionSelectionNearCacheMaxUsers;
+
+    @Value("${formplayer.formSessionCache.maxEntries:500}")
+    private long formSessionCacheMaxEntries;
+
+    @Value("${formplayer.formSessionCache.expireAfterAccessSeconds:900}")
+    private long formSessionCacheExpireAfterAccessSeconds;
+
+    @Value("${formplayer.caseSearchCache.redisTtlSeconds:300}")
+    private long caseSearchRedisTtlSeconds;
+
+    @Value("${formplayer.caseSearchCache.redisMaxPayloadBytes:1048576}")
+    private int caseSearchRedisMaxPayloadBytes;
+
+    @Value("${formplayer.install.parseThreads:#{T(java.lang.Runtime).getRuntime().availableProcessors()}}")
+    private int installParseThreads;
+
     @Bean
     public static PropertySourcesPlaceholderConfigurer propertiesResolver() {
         return new PropertySourcesPlaceholderConfigurer();
@@ -140,6 +222,29 @@ public class WebAppContext implements WebMvcConfigurer {
         return template;
     }
 
+    @Bean
+    public RedisTemplate<String, byte[]> redisTemplateBytes() {
+        RedisTemplate<String, byte[]> template = new RedisTemplate<>();
+        template.setConnectionFactory(jedisConnFactory());
+        template.setKeySerializer(RedisSerializer.string());
+        template.setValueSerializer(RedisSerializer.byteArray());
+        template.setHashKeySerializer(RedisSerializer.string());
+        template.setHashValueSerializer(RedisSerializer.byteArray());
+        return template;
+    }
+
+    @Bean
+    public CaseSearchRedisCache caseSearchRedisCache() {
+        return new CaseSearchRedisCache(redisTemplateBytes(), caseSearchRedisTtlSeconds,
+                caseSearchRedisMaxPayloadBytes);
+    }
+
+    @Bean
+    public SessionSelectionCache sessionSelectionCache() {
+        return new SessionSelectionCache(redisSetTemplate(), sessionSelectionNearCacheTtlSeconds,
+                sessionSelectionNearCacheMaxUsers);
+    }
+
     @Bean
     public RedisTemplate<String, Long> redisTemplateLong() {
         RedisTemplate template = new RedisTemplate<String, Long>();
@@ -212,6 +317,62 @@ public class WebAppContext implements WebMvcConfigurer {
         return new FormplayerArchiveFileRoot();
     }
 
+    @Bean
+    public CczStore cczStore() {
+        CczBlobStore sharedStore = null;
+        if (!cczSharedDir.isEmpty()) {
+            sharedStore = new SharedFileSystemCczBlobStore(new File(cczSharedDir));
+        }
+        CczStore cczStore = new CczStore(new LocalDiskCczBlobStore(new File(cczDir)), sharedStore,
+                datadogStatsDClient(), cczMaxEntries, cczMaxSizeMb * 1024 * 1024);
+        cczStore.addEvictionListener(zipFileCache()::invalidate);
+        return cczStore;
+    }
+
+    @Bean
+    public EntityListCache entityListCache() {
+        return new EntityListCache(entityListCacheMaxSizeMb * 1024 * 1024,
+                entityListCacheExpireAfterAccessSeconds);
+    }
+
+    @Bean
+    public NavigationSnapshotCache navigationSnapshotCache() {
+        return new NavigationSnapshotCache(navigationSnapshotCacheMaxSizeMb * 1024 * 1024,
+                navigationSnapshotCacheExpireAfterWriteSeconds);
+    }
+
+    @Bean
+    public GraphHtmlCache graphHtmlCache() {
+        return new GraphHtmlCache(graphCacheMaxSizeMb * 1024 * 1024, graphCacheExpireAfterAccessSeconds,
+                datadogStatsDClient());
+    }
+
+    @Bean
+    public DetailResponseCache detailResponseCache() {
+        return new DetailResponseCache(detailCacheMaxEntries, detailCacheExpireAfterAccessSeconds);
+    }
+
+    @Bean
+    public FormSessionCache formSessionCache() {
+        return new FormSessionCache(formSessionCacheMaxEntries, formSessionCacheExpireAfterAccessSeconds,
+                datadogStatsDClient());
+    }
+
+    @Bean
+    public ParallelEntityEvaluator parallelEntityEvaluator() {
+        return new ParallelEntityEvaluator(entityEvaluationThreads, entityEvaluationMaxPerRequest);
+    }
+
+    @Bean
+    public XFormPreparser xFormPreparser() {
+        return new XFormPreparser(installParseThreads, datadogStatsDClient());
+    }
+
+    @Bean
+    public ZipFileCache zipFileCache() {
+        return new ZipFileCache(zipCacheIdleTimeoutMs);
+    }
+
     @Bean
     public LockProvider lockProvider(DataSource dataSource) {
         return new JdbcTemplateLockProvider(
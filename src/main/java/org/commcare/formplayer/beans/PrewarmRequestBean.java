@@ -0,0 +1,54 @@
+package org.commcare.formplayer.beans;
+
+import com.fasterxml.jackson.annotation.JsonGetter;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonSetter;
+
+/**
+ * Request from HQ to prewarm the caches for an app build, or to report on the progress of doing so
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class PrewarmRequestBean {
+    private String domain;
+    private String appId;
+    private String buildId;
+
+    public PrewarmRequestBean() {
+    }
+
+    public String getDomain() {
+        return domain;
+    }
+
+    public void setDomain(String domain) {
+        this.domain = domain;
+    }
+
+    @JsonGetter(value = "app_id")
+    public String getAppId() {
+        return appId;
+    }
+
+    @JsonSetter(value = "app_id")
+    public void setAppId(String appId) {
+        this.appId = appId;
+    }
+
+    /**
+     * Id of the build to prewarm, if absent the latest saved version of the app is used
+     */
+    @JsonGetter(value = "build_id")
+    public String getBuildId() {
+        return buildId;
+    }
+
+    @JsonSetter(value = "build_id")
+    public void setBuildId(String buildId) {
+        this.buildId = buildId;
+    }
+
+    @Override
+    public String toString() {
+        return "PrewarmRequestBean [domain=" + domain + ", appId=" + appId + ", buildId=" + buildId + "]";
+    }
+}
@@ -0,0 +1,100 @@
+package org.commcare.formplayer.beans;
+
+import com.fasterxml.jackson.annotation.JsonGetter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * Progress of prewarming an app build on this node
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class PrewarmStatusBean {
+
+    public enum State {
+        unknown, queued, downloading, parsing, complete, failed
+    }
+
+    private String domain;
+    private String appId;
+    private String buildId;
+    private volatile State state = State.queued;
+    private volatile int formsTotal;
+    private volatile int formsProcessed;
+    private volatile String error;
+    private long requestedAt;
+
+    // our JSON-Object mapping lib (Jackson) requires a default constructor
+    public PrewarmStatusBean() {
+    }
+
+    public PrewarmStatusBean(String domain, String appId, String buildId) {
+        this.domain = domain;
+        this.appId = appId;
+        this.buildId = buildId;
+    }
+
+    public String getDomain() {
+        return domain;
+    }
+
+    @JsonGetter(value = "app_id")
+    public String getAppId() {
+        return appId;
+    }
+
+    @JsonGetter(value = "build_id")
+    public String getBuildId() {
+        return buildId;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public void setState(State state) {
+        this.state = state;
+    }
+
+    @JsonGetter(value = "forms_total")
+    public int getFormsTotal() {
+        return formsTotal;
+    }
+
+    public void setFormsTotal(int formsTotal) {
+        this.formsTotal = formsTotal;
+    }
+
+    @JsonGetter(value = "forms_processed")
+    public int getFormsProcessed() {
+        return formsProcessed;
+    }
+
+    public void setFormsProcessed(int formsProcessed) {
+        this.formsProcessed = formsProcessed;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    /**
+     * @return when the request this status is for was made, in milliseconds since the epoch
+     */
+    @JsonGetter(value = "requested_at")
+    public long getRequestedAt() {
+        return requestedAt;
+    }
+
+    public void setRequestedAt(long requestedAt) {
+        this.requestedAt = requestedAt;
+    }
+
+    @JsonIgnore
+    public boolean isFinished() {
+        return state == State.complete || state == State.failed;
+    }
+}
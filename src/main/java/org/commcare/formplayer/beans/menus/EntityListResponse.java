@@ -7,25 +7,40 @@ import org.commcare.cases.entity.NodeEntityFactory;
 import org.commcare.core.graph.model.GraphData;
 import org.commcare.core.graph.util.GraphException;
 import org.commcare.formplayer.exceptions.ApplicationConfigException;
+import org.commcare.formplayer.services.EntityListCache;
+import org.commcare.formplayer.services.GraphHtmlCache;
+import org.commcare.formplayer.util.EntitySearchIndex;
 import org.commcare.formplayer.util.EntityStringFilterer;
 import org.commcare.formplayer.util.FormplayerGraphUtil;
+import org.commcare.formplayer.util.ParallelEntityEvaluator;
+import org.commcare.formplayer.util.SortAndSearchEntityFactory;
+import org.commcare.formplayer.util.TopKSorter;
 import org.commcare.modern.session.SessionWrapper;
 import org.commcare.modern.util.Pair;
+import org.commcare.session.SessionFrame;
 import org.commcare.suite.model.Action;
 import org.commcare.suite.model.Detail;
 import org.commcare.suite.model.DetailField;
 import org.commcare.suite.model.EntityDatum;
 import org.commcare.suite.model.Style;
+import org.commcare.suite.model.graph.Graph;
 import org.commcare.util.screen.EntityListSubscreen;
 import org.commcare.util.screen.EntityScreen;
 import org.commcare.util.screen.MultiSelectEntityScreen;
 import org.javarosa.core.model.condition.EvaluationContext;
 import org.javarosa.core.model.instance.TreeReference;
+import org.javarosa.core.services.locale.Localization;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.function.Predicate;
 
 import datadog.trace.api.Trace;
@@ -69,6 +84,31 @@ public class EntityListResponse extends MenuBean {
             int sortIndex,
             boolean isFuzzySearchEnabled,
             int casesPerPage) {
+        this(nextScreen, detailSelection, offset, searchText, sortIndex, isFuzzySearchEnabled, casesPerPage,
+                null, null, null, null, false);
+    }
+
+    /**
+     * @param entityListCache cache of sorted and filtered case lists, may be null
+     * @param graphHtmlCache  cache of rendered graphs, may be null
+     * @param sandboxVersion  identifies the app and the contents of the user's sandbox, caching is
+     *                        skipped when this is null
+     * @param entityEvaluator pool to render the page's graphs on, may be null to render them serially
+     * @param sortNextPage    when the list has to be sorted, also sort the page after the requested one
+     *                        so that paging forward is served from the entity list cache
+     */
+    public EntityListResponse(EntityScreen nextScreen,
+            String detailSelection,
+            int offset,
+            String searchText,
+            int sortIndex,
+            boolean isFuzzySearchEnabled,
+            int casesPerPage,
+            EntityListCache entityListCache,
+            GraphHtmlCache graphHtmlCache,
+            String sandboxVersion,
+            ParallelEntityEvaluator entityEvaluator,
+            boolean sortNextPage) {
         SessionWrapper session = nextScreen.getSession();
         Detail detail = nextScreen.getShortDetail();
         EntityDatum neededDatum = (EntityDatum)session.getNeededDatum();
@@ -93,25 +133,39 @@ public class EntityListResponse extends MenuBean {
             if (longDetails != null) {
                 detail = longDetails[0];
             }
-            entities = processEntitiesForCaseDetail(detail, reference, ec, neededDatum);
+            entities = processEntitiesForCaseDetail(detail, reference, ec, neededDatum,
+                    new GraphRenderer(detail, ec, session.getFrame(), graphHtmlCache, sandboxVersion, null));
         } else {
             Vector<TreeReference> references = nextScreen.getReferences();
-            List<EntityBean> entityList = processEntitiesForCaseList(detail, references, ec,
-                    searchText, neededDatum, sortIndex, isFuzzySearchEnabled);
-
             if (casesPerPage == 0) {
                 casesPerPage = DEFAULT_CASES_PER_PAGE;
             }
             casesPerPage = Math.min(casesPerPage, MAX_CASES_PER_PAGE);
-
-            if (entityList.size() > casesPerPage && !(detail.getNumEntitiesToDisplayPerRow() > 1)) {
+            boolean paginated = !(detail.getNumEntitiesToDisplayPerRow() > 1);
+
+            // filter the full list but only sort up to the end of the requested page, display
+            // fields are computed for the current page
+            int limit = paginated ? (int)Math.min(Integer.MAX_VALUE, (long)offset + casesPerPage)
+                    : Integer.MAX_VALUE;
+            int sortLimit = paginated && sortNextPage
+                    ? (int)Math.min(Integer.MAX_VALUE, (long)limit + casesPerPage) : limit;
+            SortedReferences sortedReferences = getSortedReferences(detail, ec, session.getFrame(),
+                    references, searchText, sortIndex, isFuzzySearchEnabled, limit, sortLimit, entityListCache,
+                    sandboxVersion);
+            List<TreeReference> entityList = sortedReferences.references;
+
+            if (sortedReferences.total > casesPerPage && paginated) {
                 // we're doing pagination
                 setCurrentPage(offset / casesPerPage);
-                setPageCount((int)Math.ceil((double)entityList.size() / casesPerPage));
-                entityList = paginateEntities(entityList, casesPerPage, offset);
+                setPageCount((int)Math.ceil((double)sortedReferences.total / casesPerPage));
+                entityList = paginateEntities(entityList, sortedReferences.total, casesPerPage, offset);
             }
-            entities = new EntityBean[entityList.size()];
-            entityList.toArray(entities);
+            GraphRenderer graphRenderer = new GraphRenderer(detail, ec, session.getFrame(), graphHtmlCache,
+                    sandboxVersion, entityEvaluator);
+            List<EntityBean> entityBeans = processEntities(detail, entityList, ec, neededDatum, graphRenderer);
+            graphRenderer.render(entityBeans, entityList);
+            entities = new EntityBean[entityBeans.size()];
+            entityBeans.toArray(entities);
         }
 
         processTitle(session);
@@ -155,8 +209,10 @@ public class EntityListResponse extends MenuBean {
     }
 
     private static EntityBean[] processEntitiesForCaseDetail(Detail detail, TreeReference reference,
-            EvaluationContext ec, EntityDatum neededDatum) {
-        return new EntityBean[]{processEntity(detail, reference, ec, neededDatum)};
+            EvaluationContext ec, EntityDatum neededDatum, GraphRenderer graphRenderer) {
+        EntityBean entity = processEntity(detail, reference, ec, neededDatum, graphRenderer);
+        graphRenderer.render(Collections.singletonList(entity), Collections.singletonList(reference));
+        return new EntityBean[]{entity};
     }
 
     @Trace
@@ -167,16 +223,97 @@ public class EntityListResponse extends MenuBean {
             EntityDatum neededDatum,
             int sortIndex,
             boolean isFuzzySearchEnabled) {
-        List<Entity<TreeReference>> entityList = buildEntityList(detail, ec, references, searchText,
-                sortIndex, isFuzzySearchEnabled);
+        List<TreeReference> entityList = getSortedReferences(detail, ec, null, references, searchText,
+                sortIndex, isFuzzySearchEnabled, Integer.MAX_VALUE, Integer.MAX_VALUE, null, null).references;
+        GraphRenderer graphRenderer = new GraphRenderer(detail, ec, null, null, null, null);
+        List<EntityBean> entities = processEntities(detail, entityList, ec, neededDatum, graphRenderer);
+        graphRenderer.render(entities, entityList);
+        return entities;
+    }
+
+    @Trace
+    private static List<EntityBean> processEntities(Detail detail,
+            List<TreeReference> references,
+            EvaluationContext ec,
+            EntityDatum neededDatum,
+            GraphRenderer graphRenderer) {
         List<EntityBean> entities = new ArrayList<>();
-        for (Entity<TreeReference> entity : entityList) {
-            TreeReference treeReference = entity.getElement();
-            entities.add(processEntity(detail, treeReference, ec, neededDatum));
+        for (TreeReference treeReference : references) {
+            entities.add(processEntity(detail, treeReference, ec, neededDatum, graphRenderer));
         }
         return entities;
     }
 
+    /**
+     * Filter the references and sort the first {@code limit} of them, reusing the result of an
+     * earlier request for the same list when the user's sandbox has not changed since
+     *
+     * @param sortLimit number of references to sort if the cached result doesn't cover the limit,
+     *                  at least {@code limit}. Only rows that can be cached are sorted ahead.
+     */
+    @Trace
+    private static SortedReferences getSortedReferences(Detail detail,
+            EvaluationContext ec,
+            SessionFrame frame,
+            Vector<TreeReference> references,
+            String searchText,
+            int sortIndex,
+            boolean isFuzzySearchEnabled,
+            int limit,
+            int sortLimit,
+            EntityListCache entityListCache,
+            String sandboxVersion) {
+        EntityListCache.Key key = null;
+        // all references come from the same nodeset so share its instance
+        if (entityListCache != null && sandboxVersion != null
+                && (references.isEmpty() || EntityListCache.isSandboxReference(ec, references.get(0)))
+                && !EntityListCache.refersToNow(detail)) {
+            key = new EntityListCache.Key(sandboxVersion, detail.getId(),
+                    EntityListCache.hashReferences(references), frame, EntityListCache.today(), sortIndex,
+                    searchText, isFuzzySearchEnabled, Localization.getGlobalLocalizerAdvanced().getLocale());
+            EntityListCache.SortedRows cached = entityListCache.get(key);
+            if (cached != null && cached.covers(limit)) {
+                List<TreeReference> sorted = new ArrayList<>(cached.getRows().length);
+                for (int row : cached.getRows()) {
+                    sorted.add(references.get(row));
+                }
+                return new SortedReferences(sorted, cached.getTotal());
+            } else if (cached != null) {
+                // paging past the cached rows, sort further ahead so the next pages are covered too
+                sortLimit = (int)Math.min(Integer.MAX_VALUE, Math.max(sortLimit, 2L * cached.getRows().length));
+            }
+        } else {
+            sortLimit = limit;
+        }
+
+        List<Entity<TreeReference>> matched = buildEntityList(detail, ec, references, searchText,
+                sortIndex, isFuzzySearchEnabled, entityListCache,
+                key == null ? null : EntityListCache.Key.forSearchIndex(key));
+        List<Entity<TreeReference>> entityList = TopKSorter.sort(matched, getSorter(detail, sortIndex), sortLimit);
+        List<TreeReference> sorted = new ArrayList<>(entityList.size());
+        for (Entity<TreeReference> entity : entityList) {
+            sorted.add(entity.getElement());
+        }
+        SortedReferences sortedReferences = new SortedReferences(sorted, matched.size());
+        if (key != null) {
+            Map<TreeReference, Integer> positions = new IdentityHashMap<>();
+            for (int i = 0; i < references.size(); i++) {
+                positions.put(references.get(i), i);
+            }
+            int[] rows = new int[sorted.size()];
+            for (int i = 0; i < rows.length; i++) {
+                Integer position = positions.get(sorted.get(i));
+                if (position == null) {
+                    // entity isn't backed by one of the references, don't cache
+                    return sortedReferences;
+                }
+                rows[i] = position;
+            }
+            entityListCache.put(key, rows, matched.size());
+        }
+        return sortedReferences;
+    }
+
     @Trace
     private static List<Entity<TreeReference>> filterEntities(String searchText,
             NodeEntityFactory nodeEntityFactory,
@@ -190,68 +327,86 @@ public class EntityListResponse extends MenuBean {
     }
 
     @Trace
-    private List<EntityBean> paginateEntities(List<EntityBean> matched, int casesPerPage,
+    private <T> List<T> paginateEntities(List<T> matched, int total, int casesPerPage,
             int offset) {
-        if (offset > matched.size()) {
+        if (offset > total) {
             throw new RuntimeException("Pagination offset " + offset +
-                    " exceeded case list length: " + matched.size());
+                    " exceeded case list length: " + total);
         }
 
         int end = offset + casesPerPage;
         int length = casesPerPage;
-        if (end > matched.size()) {
-            end = matched.size();
+        if (end > total) {
+            end = total;
             length = end - offset;
         }
-        setPageCount((int)Math.ceil((double)matched.size() / casesPerPage));
+        setPageCount((int)Math.ceil((double)total / casesPerPage));
         matched = matched.subList(offset, offset + length);
         return matched;
     }
 
+    /**
+     * Build and filter the entities. Only the fields the list is sorted or searched on are
+     * evaluated, and when searching with a cached search index only the entities that can match
+     * the search are built.
+     */
     @Trace
     private static List<Entity<TreeReference>> buildEntityList(Detail shortDetail,
             EvaluationContext context,
             Vector<TreeReference> references,
             String searchText,
             int sortIndex,
-            boolean isFuzzySearchEnabled) {
-        NodeEntityFactory nodeEntityFactory = new NodeEntityFactory(shortDetail, context);
+            boolean isFuzzySearchEnabled,
+            EntityListCache entityListCache,
+            EntityListCache.Key searchIndexKey) {
+        boolean searching = searchText != null && !"".equals(searchText);
+        NodeEntityFactory nodeEntityFactory = new SortAndSearchEntityFactory(shortDetail, context,
+                getSortFields(shortDetail, sortIndex), searching);
+        // fuzzy matches needn't share any trigrams with the search so can't use the index
+        boolean useSearchIndex = searching && !isFuzzySearchEnabled
+                && entityListCache != null && searchIndexKey != null;
+        EntitySearchIndex searchIndex = useSearchIndex ? entityListCache.getSearchIndex(searchIndexKey) : null;
+        int[] candidates = searchIndex == null ? null : searchIndex.getCandidates(searchText.split(" "));
+
         List<Entity<TreeReference>> full = new ArrayList<>();
-        for (TreeReference reference : references) {
-            full.add(nodeEntityFactory.getEntity(reference));
+        if (candidates != null) {
+            for (int position : candidates) {
+                full.add(nodeEntityFactory.getEntity(references.get(position)));
+            }
+        } else {
+            for (TreeReference reference : references) {
+                full.add(nodeEntityFactory.getEntity(reference));
+            }
         }
         nodeEntityFactory.prepareEntities(full);
-        List<Entity<TreeReference>> matched = filterEntities(searchText, nodeEntityFactory, full,
-                isFuzzySearchEnabled);
-        sort(matched, shortDetail, sortIndex);
-        return matched;
+        if (useSearchIndex && searchIndex == null) {
+            entityListCache.putSearchIndex(searchIndexKey, EntitySearchIndex.build(full, Locale.getDefault()));
+        }
+        return filterEntities(searchText, nodeEntityFactory, full, isFuzzySearchEnabled);
     }
 
-    @Trace
-    private static void sort(List<Entity<TreeReference>> entityList,
-            Detail shortDetail,
-            int sortIndex) {
-        int[] order;
-        boolean reverse = false;
+    private static EntitySorter getSorter(Detail shortDetail, int sortIndex) {
+        // a negative sort index sorts its column in reverse
+        return new EntitySorter(shortDetail.getFields(), sortIndex < 0, getSortFields(shortDetail, sortIndex),
+                new LogNotifier());
+    }
+
+    /**
+     * The indices of the fields the list is sorted on, in order
+     */
+    private static int[] getSortFields(Detail shortDetail, int sortIndex) {
         if (sortIndex != 0) {
-            if (sortIndex < 0) {
-                reverse = true;
-                sortIndex = Math.abs(sortIndex);
-            }
             // sort index is one indexed so adjust for that
-            int sortFieldIndex = sortIndex - 1;
-            order = new int[]{sortFieldIndex};
-        } else {
-            order = shortDetail.getOrderedFieldIndicesForSorting();
-            for (int i = 0; i < shortDetail.getFields().length; ++i) {
-                String header = shortDetail.getFields()[i].getHeader().evaluate();
-                if (order.length == 0 && !"".equals(header)) {
-                    order = new int[]{i};
-                }
+            return new int[]{Math.abs(sortIndex) - 1};
+        }
+        int[] order = shortDetail.getOrderedFieldIndicesForSorting();
+        for (int i = 0; i < shortDetail.getFields().length; ++i) {
+            String header = shortDetail.getFields()[i].getHeader().evaluate();
+            if (order.length == 0 && !"".equals(header)) {
+                order = new int[]{i};
             }
         }
-        java.util.Collections.sort(entityList,
-                new EntitySorter(shortDetail.getFields(), reverse, order, new LogNotifier()));
+        return order;
     }
 
     public int[] getSortIndices() {
@@ -271,7 +426,7 @@ public class EntityListResponse extends MenuBean {
 
     @Trace
     private static EntityBean processEntity(Detail detail, TreeReference treeReference,
-            EvaluationContext ec, EntityDatum neededDatum) {
+            EvaluationContext ec, EntityDatum neededDatum, GraphRenderer graphRenderer) {
         EvaluationContext context = new EvaluationContext(ec, treeReference);
         detail.populateEvaluationContextVariables(context);
         DetailField[] fields = detail.getFields();
@@ -281,16 +436,13 @@ public class EntityListResponse extends MenuBean {
         EntityBean ret = new EntityBean(id);
         int i = 0;
         for (DetailField field : fields) {
-            Object o;
-            o = field.getTemplate().evaluate(context);
-            if (o instanceof GraphData) {
-                try {
-                    data[i] = FormplayerGraphUtil.getHtml((GraphData)o, "").replace("\"", "'");
-                } catch (GraphException e) {
-                    data[i] = "<html><body>Error loading graph " + e + "</body></html>";
-                }
+            String graphHtml = field.getTemplate() instanceof Graph
+                    ? graphRenderer.getCached(treeReference, i) : null;
+            if (graphHtml != null) {
+                data[i] = graphHtml;
             } else {
-                data[i] = o;
+                // graphs are left as GraphData and rendered by the GraphRenderer
+                data[i] = field.getTemplate().evaluate(context);
             }
             i++;
         }
@@ -298,6 +450,156 @@ public class EntityListResponse extends MenuBean {
         return ret;
     }
 
+    /**
+     * The leading references of a sorted case list and the number of references that matched
+     */
+    private static class SortedReferences {
+        private final List<TreeReference> references;
+        private final int total;
+
+        SortedReferences(List<TreeReference> references, int total) {
+            this.references = references;
+            this.total = total;
+        }
+    }
+
+    /**
+     * Renders the graphs evaluated for a detail's entities, reusing graphs rendered by earlier
+     * requests where the cache allows
+     */
+    private static class GraphRenderer {
+        private final String detailId;
+        private final EvaluationContext ec;
+        private final SessionFrame frame;
+        private final GraphHtmlCache graphHtmlCache;
+        private final String sandboxVersion;
+        private final ParallelEntityEvaluator entityEvaluator;
+        private final String locale;
+        private final String date;
+
+        /**
+         * @param frame           the session frame the detail is shown in, may be null when there
+         *                        is no cache
+         * @param entityEvaluator pool to render graphs on, may be null to render them serially
+         */
+        GraphRenderer(Detail detail, EvaluationContext ec, SessionFrame frame, GraphHtmlCache graphHtmlCache,
+                String sandboxVersion, ParallelEntityEvaluator entityEvaluator) {
+            this.detailId = detail.getId();
+            this.ec = ec;
+            this.frame = frame;
+            this.graphHtmlCache = sandboxVersion == null || frame == null || !usesGraphs(detail)
+                    || EntityListCache.refersToNow(detail) ? null : graphHtmlCache;
+            this.sandboxVersion = sandboxVersion;
+            this.entityEvaluator = entityEvaluator;
+            this.locale = this.graphHtmlCache == null ? null
+                    : Localization.getGlobalLocalizerAdvanced().getLocale();
+            this.date = this.graphHtmlCache == null ? null : EntityListCache.today();
+        }
+
+        private static boolean usesGraphs(Detail detail) {
+            for (DetailField field : detail.getFields()) {
+                if (field.getTemplate() instanceof Graph) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return the cached HTML for the graph in the column, or null if it needs evaluating
+         */
+        String getCached(TreeReference reference, int column) {
+            return isCacheable(reference) ? graphHtmlCache.get(getKey(reference, column)) : null;
+        }
+
+        /**
+         * Graphs for rows of remote or virtual instances aren't cached since their references
+         * don't identify the row's contents
+         */
+        private boolean isCacheable(TreeReference reference) {
+            return graphHtmlCache != null && EntityListCache.isSandboxReference(ec, reference);
+        }
+
+        private GraphHtmlCache.Key getKey(TreeReference reference, int column) {
+            return new GraphHtmlCache.Key(sandboxVersion, detailId, column, reference.toString(), frame, date,
+                    locale);
+        }
+
+        /**
+         * Replace the evaluated graphs in the entities' data with their HTML. Rendering only
+         * needs the evaluated GraphData so it can safely run off the request thread.
+         *
+         * @param references the reference each entity was evaluated against
+         */
+        @Trace
+        void render(List<EntityBean> entities, List<TreeReference> references) {
+            List<GraphCell> cells = new ArrayList<>();
+            for (int row = 0; row < entities.size(); row++) {
+                Object[] data = entities.get(row).getData();
+                for (int i = 0; i < data.length; i++) {
+                    if (data[i] instanceof GraphData) {
+                        cells.add(new GraphCell(data, i, references.get(row)));
+                    }
+                }
+            }
+            List<String> html;
+            if (entityEvaluator == null || cells.size() < 2) {
+                html = new ArrayList<>(cells.size());
+                for (GraphCell cell : cells) {
+                    html.add(renderGraph(cell.getGraphData()));
+                }
+            } else {
+                List<Callable<String>> renders = new ArrayList<>(cells.size());
+                for (GraphCell cell : cells) {
+                    renders.add(() -> renderGraph(cell.getGraphData()));
+                }
+                try {
+                    html = entityEvaluator.evaluate(renders);
+                } catch (ExecutionException e) {
+                    throw new RuntimeException("Error rendering graphs", e.getCause());
+                }
+            }
+            for (int i = 0; i < cells.size(); i++) {
+                GraphCell cell = cells.get(i);
+                cell.setHtml(html.get(i));
+                if (isCacheable(cell.reference)) {
+                    graphHtmlCache.put(getKey(cell.reference, cell.column), html.get(i));
+                }
+            }
+        }
+
+        private static String renderGraph(GraphData graphData) {
+            try {
+                return FormplayerGraphUtil.getHtml(graphData, "").replace("\"", "'");
+            } catch (GraphException e) {
+                return "<html><body>Error loading graph " + e + "</body></html>";
+            }
+        }
+    }
+
+    /**
+     * A graph field of an entity waiting to be rendered
+     */
+    private static class GraphCell {
+        private final Object[] data;
+        private final int column;
+        private final TreeReference reference;
+
+        GraphCell(Object[] data, int column, TreeReference reference) {
+            this.data = data;
+            this.column = column;
+            this.reference = reference;
+        }
+
+        GraphData getGraphData() {
+            return (GraphData)data[column];
+        }
+
+        void setHtml(String html) {
+            data[column] = html;
+        }
+    }
+
     private static Style[] processStyles(Detail detail) {
         DetailField[] fields = detail.getFields();
         Style[] styles = new Style[fields.length];
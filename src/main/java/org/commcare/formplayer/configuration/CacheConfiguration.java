@@ -29,6 +29,11 @@ public class CacheConfiguration {
         private Integer expireAfterWrite;
         private Integer expireAfterAccess;
         private Integer maximumSize = 500;
+        /**
+         * Approximate size limit in bytes, replaces maximumSize when set. Values stored as byte
+         * arrays are weighed by their length, other values count as one byte.
+         */
+        private Long maximumWeight;
     }
 
     private Map<String, CacheSpec> specs;
@@ -47,14 +52,20 @@ public class CacheConfiguration {
     }
 
     private CaffeineCache buildCache(String name, CacheSpec cacheSpec, Ticker ticker) {
-        log.info("Cache '{}' configured - expireAfterWrite: {}, expireAfterAccess: {}, max size: {}",
+        log.info("Cache '{}' configured - expireAfterWrite: {}, expireAfterAccess: {}, max size: {}, "
+                        + "max weight: {}",
                 name, cacheSpec.getExpireAfterWrite(), cacheSpec.getExpireAfterAccess(),
-                cacheSpec.getMaximumSize());
+                cacheSpec.getMaximumSize(), cacheSpec.getMaximumWeight());
         final Caffeine<Object, Object> caffeineBuilder = Caffeine.newBuilder()
                 .expireAfterWrite(cacheSpec.getExpireAfterWrite(), TimeUnit.SECONDS)
                 .expireAfterAccess(cacheSpec.getExpireAfterAccess(), TimeUnit.SECONDS)
-                .maximumSize(cacheSpec.getMaximumSize())
                 .ticker(ticker);
+        if (cacheSpec.getMaximumWeight() != null) {
+            caffeineBuilder.maximumWeight(cacheSpec.getMaximumWeight())
+                    .weigher((Object key, Object value) -> value instanceof byte[] ? ((byte[])value).length : 1);
+        } else {
+            caffeineBuilder.maximumSize(cacheSpec.getMaximumSize());
+        }
         return new CaffeineCache(name, caffeineBuilder.build());
     }
 
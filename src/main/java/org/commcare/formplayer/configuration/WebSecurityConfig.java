@@ -59,6 +59,12 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
             .antMatchers("/validate_form")
             .access("isAuthenticated() or hasAuthority('" + Constants.AUTHORITY_COMMCARE + "')");
 
+        // HMAC only: called by HQ when a new build is released
+        http
+            .authorizeRequests()
+            .antMatchers("/" + Constants.URL_PREWARM_BUILD, "/" + Constants.URL_PREWARM_STATUS)
+            .hasAuthority(Constants.AUTHORITY_COMMCARE);
+
         // full auth required
         http.authorizeRequests().antMatchers("/**").authenticated();
 
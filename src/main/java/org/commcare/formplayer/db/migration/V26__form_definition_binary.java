@@ -0,0 +1,18 @@
+package org.commcare.formplayer.db.migration;
+
+import java.util.Arrays;
+
+/**
+ * Store serialized form definitions as binary rather than Base64 text.
+ * Existing rows are decoded and prefixed with the uncompressed format marker,
+ * see FormDefSerializer for the layout.
+ */
+public class V26__form_definition_binary extends BaseFormplayerMigration {
+    @Override
+    public Iterable<String> getSqlStatements() {
+        return Arrays.asList(
+                "ALTER TABLE form_definition ALTER COLUMN formdef TYPE bytea " +
+                        "USING decode('00', 'hex') || decode(formdef, 'base64')"
+        );
+    }
+}
@@ -0,0 +1,76 @@
+package org.commcare.formplayer.engine;
+
+import org.commcare.modern.reference.ArchiveFileReference;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * ArchiveFileReference that reads through a shared handle from the {@link ZipFileCache} rather
+ * than owning an open ZipFile. Every method that reads the archive acquires a handle for as long
+ * as it needs one, a stream retaining its handle until the stream is closed, so that the cache is
+ * free to close idle or invalidated archives in between.
+ */
+public class CachedArchiveFileReference extends ArchiveFileReference {
+
+    private final ZipFileCache zipFileCache;
+    private final String zipPath;
+    private final String entryPath;
+
+    public CachedArchiveFileReference(ZipFileCache zipFileCache, String zipPath, String guid,
+            String entryPath) {
+        // the pooled ZipFile may be closed at any time so the superclass never gets one
+        super(null, guid, entryPath);
+        this.zipFileCache = zipFileCache;
+        this.zipPath = zipPath;
+        this.entryPath = entryPath;
+    }
+
+    @Override
+    public boolean doesBinaryExist() throws IOException {
+        try (ZipFileCache.Handle handle = zipFileCache.acquire(zipPath)) {
+            return handle.getZipFile().getEntry(entryPath) != null;
+        }
+    }
+
+    @Override
+    public String getLocalURI() {
+        return new File(zipPath + File.separator + entryPath).getAbsolutePath();
+    }
+
+    @Override
+    public InputStream getStream() throws IOException {
+        ZipFileCache.Handle handle = zipFileCache.acquire(zipPath);
+        try {
+            ZipFile zipFile = handle.getZipFile();
+            ZipEntry entry = zipFile.getEntry(entryPath);
+            if (entry == null) {
+                throw new FileNotFoundException(
+                        String.format("No entry %s in archive %s", entryPath, zipPath));
+            }
+            return new FilterInputStream(zipFile.getInputStream(entry)) {
+                private boolean closed = false;
+
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        if (!closed) {
+                            closed = true;
+                            handle.close();
+                        }
+                    }
+                }
+            };
+        } catch (IOException | RuntimeException e) {
+            handle.close();
+            throw e;
+        }
+    }
+}
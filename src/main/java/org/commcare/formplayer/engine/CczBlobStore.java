@@ -0,0 +1,33 @@
+package org.commcare.formplayer.engine;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Storage tier for CCZ archives. Blobs are addressed by a relative key of the form
+ * {@code <appId>/<buildVersion>-<sha256>.ccz} so that the same key always refers to the same
+ * archive content regardless of which node or tier it is stored on.
+ */
+public interface CczBlobStore {
+
+    /**
+     * Name of this tier, used to tag metrics
+     */
+    String getTierName();
+
+    boolean contains(String key);
+
+    /**
+     * Copy the blob stored under the key to the target file
+     *
+     * @return false if there is no blob stored under the key
+     */
+    boolean copyTo(String key, File target) throws IOException;
+
+    /**
+     * Store the contents of the source file under the key, replacing any existing blob
+     */
+    void put(String key, File source) throws IOException;
+
+    void delete(String key) throws IOException;
+}
@@ -0,0 +1,102 @@
+package org.commcare.formplayer.engine;
+
+import org.apache.commons.lang3.StringUtils;
+import org.commcare.formplayer.exceptions.ApplicationConfigException;
+import org.commcare.formplayer.exceptions.FormattedApplicationConfigException;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.springframework.http.HttpMethod;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * Downloads CCZs from HQ, translating HQ's error responses into errors that can be shown to the user
+ */
+public class CczDownloader {
+
+    private final RestTemplate restTemplate;
+
+    public CczDownloader(RestTemplate restTemplate) {
+        this.restTemplate = restTemplate;
+    }
+
+    /**
+     * Download the CCZ at the given URL to a temporary file
+     *
+     * @return the path of the downloaded file
+     */
+    public String download(String resource) {
+        File file = null;
+        try {
+            file = restTemplate.execute(resource, HttpMethod.GET, null, clientHttpResponse -> {
+                File ret = File.createTempFile("commcare_", ".ccz");
+                long copied;
+                try (FileOutputStream out = new FileOutputStream(ret)) {
+                    copied = StreamUtils.copy(clientHttpResponse.getBody(), out);
+                }
+                long expected = clientHttpResponse.getHeaders().getContentLength();
+                if (expected >= 0 && copied != expected) {
+                    ret.delete();
+                    throw new IOException(String.format(
+                            "Incomplete CCZ download: expected %d bytes, received %d", expected, copied));
+                }
+                return ret;
+            });
+        } catch (HttpClientErrorException.BadRequest e) {
+            handleInstallError(e.getResponseBodyAsString());
+        } catch (HttpServerErrorException.ServiceUnavailable e) {
+            throw new RuntimeException(
+                    "Server is too busy. Please try again in a moment."
+            );
+        } catch (HttpClientErrorException e) {
+            throw new RuntimeException(
+                    "Formplayer encountered an unknown error. Please submit a ticket if you continue to see this."
+            );
+        } catch (HttpServerErrorException.GatewayTimeout e) {
+            throw new RuntimeException(
+                    "Timed out fetching the CommCare application. Please submit a ticket if you continue to see this."
+            );
+        } catch (HttpServerErrorException.InternalServerError e) {
+            String errorMessage = parseErrorFromResponse(e.getResponseBodyAsString());
+            if (StringUtils.isEmpty(errorMessage)) {
+                errorMessage = "There are errors in your application. Please fix these errors in your application before using app preview.";
+            }
+            throw new ApplicationConfigException(errorMessage);
+        }
+        return Objects.requireNonNull(file).getAbsolutePath();
+    }
+
+    private String parseErrorFromResponse(String responseBody) {
+        try {
+            JSONObject errorJson = new JSONObject(responseBody);
+            if (errorJson.has("errors")) {
+                JSONArray errors = errorJson.getJSONArray("errors");
+                String consolidatedErrorMessage = "";
+                for (int i = 0; i < errors.length(); i++) {
+                    consolidatedErrorMessage += errors.getString(i);
+                    consolidatedErrorMessage += "\n";
+                }
+                return consolidatedErrorMessage;
+            }
+        } catch (JSONException e ){
+            return null;
+        }
+        return null;
+    }
+
+    private void handleInstallError(String responseBody) {
+        JSONObject errorJson = new JSONObject(responseBody);
+        if (errorJson.has("error_html")) {
+            throw new FormattedApplicationConfigException(errorJson.getString("error_html"));
+        }
+        throw new ApplicationConfigException(errorJson.getJSONArray("errors").join(" "));
+    }
+}
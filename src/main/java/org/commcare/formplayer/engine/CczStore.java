@@ -0,0 +1,493 @@
+package org.commcare.formplayer.engine;
+
+import com.timgroup.statsd.StatsDClient;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.commcare.formplayer.exceptions.ApplicationConfigException;
+import org.commcare.formplayer.util.Constants;
+import org.w3c.dom.Document;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+/**
+ * Node-local store of downloaded CCZ archives.
+ *
+ * Archives are stored under the key {@code <appId>/<buildVersion>-<sha256>.ccz} so the same build
+ * downloaded for different users resolves to a single file on disk. Concurrent requests for the
+ * same download share one in-flight download, every download is verified before it is admitted
+ * and archives are reference counted while an install is using them. Once the store exceeds its
+ * configured bounds the least recently used unreferenced archives are deleted. Archives that
+ * installed apps still read their forms and media from are pinned and never evicted, see
+ * {@link #pin(String, String)}.
+ *
+ * When a shared tier is configured newly downloaded archives are published to it, and archives
+ * that are not on this node are fetched from it before falling back to a download from HQ.
+ *
+ * Live installs always download the latest version of the app since the download URL doesn't pin
+ * a build. When that turns out to be the same build a prewarm already stored, and so whose forms
+ * are already parsed, the download is discarded in favour of the stored archive and counted as a
+ * cold start avoided.
+ */
+public class CczStore {
+
+    private static final String PROFILE_ENTRY = "profile.ccpr";
+
+    private static final String TIER_LOCAL = "local";
+    private static final String TIER_ORIGIN = "origin";
+    private static final String TIER_MISS = "miss";
+
+    private final Log log = LogFactory.getLog(CczStore.class);
+
+    private final LocalDiskCczBlobStore localStore;
+    private final CczBlobStore sharedStore;
+    private final StatsDClient datadogStatsDClient;
+    private final int maxEntries;
+    private final long maxSizeBytes;
+
+    // access ordered so iteration starts from the least recently used archive
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentHashMap<String, CompletableFuture<Entry>> inFlight = new ConcurrentHashMap<>();
+    // owner -> key of the archive it pins
+    private final Map<String, String> pins = new HashMap<>();
+    private final List<Consumer<String>> evictionListeners = new CopyOnWriteArrayList<>();
+    private long totalSizeBytes = 0;
+
+    /**
+     * @param localStore          node-local tier holding the archives in use on this node
+     * @param sharedStore         tier shared between nodes, or null if there is none
+     * @param datadogStatsDClient client used to report hits for each tier
+     */
+    public CczStore(LocalDiskCczBlobStore localStore, CczBlobStore sharedStore,
+            StatsDClient datadogStatsDClient, int maxEntries, long maxSizeBytes) {
+        this.localStore = localStore;
+        this.sharedStore = sharedStore;
+        this.datadogStatsDClient = datadogStatsDClient;
+        this.maxEntries = maxEntries;
+        this.maxSizeBytes = maxSizeBytes;
+        loadPins();
+        loadExistingArchives();
+    }
+
+    /**
+     * Return a lease on the archive for the given download, downloading it if no other request
+     * is already doing so. The archive will not be evicted until the lease is closed.
+     *
+     * @param appId       id of the app being installed
+     * @param downloadKey identifies the build being downloaded, typically the download URL
+     * @param downloader  downloads the archive to a temporary file and returns its path
+     */
+    public Lease acquire(String appId, String downloadKey, Supplier<String> downloader) {
+        return acquire(appId, downloadKey, downloader, false);
+    }
+
+    /**
+     * As {@link #acquire(String, String, Supplier)}, marking the archive as prewarmed so that the
+     * first live download of the same build is counted as a cold start avoided
+     */
+    public Lease acquireForPrewarm(String appId, String downloadKey, Supplier<String> downloader) {
+        return acquire(appId, downloadKey, downloader, true);
+    }
+
+    private Lease acquire(String appId, String downloadKey, Supplier<String> downloader, boolean prewarm) {
+        String flightKey = getFlightKey(appId, downloadKey);
+        while (true) {
+            CompletableFuture<Entry> future = new CompletableFuture<>();
+            CompletableFuture<Entry> existing = inFlight.putIfAbsent(flightKey, future);
+            if (existing == null) {
+                try {
+                    Entry entry = admit(appId, downloader.get(), prewarm);
+                    future.complete(entry);
+                    return new Lease(entry);
+                } catch (RuntimeException e) {
+                    future.completeExceptionally(e);
+                    throw e;
+                } finally {
+                    inFlight.remove(flightKey, future);
+                }
+            }
+            log.info(String.format("Waiting on in-flight CCZ download for appId %s", appId));
+            Lease lease = retain(join(existing));
+            if (lease != null) {
+                return lease;
+            }
+            // the archive was evicted before we could retain it, download it again
+        }
+    }
+
+    /**
+     * Keep the archive at the given location from being evicted while the owner refers to it.
+     * Installed apps resolve their forms and media from the archive they were installed from for
+     * as long as they are installed, so the archive GUID recorded for an install pins its archive
+     * until the GUID is recorded for another archive. The archive pinned before by the same owner
+     * can then be evicted.
+     *
+     * @param owner    identifies what refers to the archive, e.g. an archive GUID
+     * @param location as returned by {@link #getLocation(String)}, locations outside the store
+     *                 are ignored
+     */
+    public synchronized void pin(String owner, String location) {
+        if (new File(location).isAbsolute() || location.equals(pins.get(owner))) {
+            return;
+        }
+        pins.put(owner, location);
+        savePins();
+        evict();
+    }
+
+    public synchronized boolean isPinned(String key) {
+        return pins.containsValue(key);
+    }
+
+    /**
+     * Resolve a stored archive location to a file on this node, fetching it from the shared tier
+     * if necessary.
+     *
+     * @param location an archive key, or the absolute path of an archive stored outside this store
+     * @return the local path of the archive or null if it is not available from any tier
+     */
+    public String resolve(String location) {
+        File file = new File(location);
+        if (file.isAbsolute()) {
+            String key = localStore.getKey(file);
+            if (key == null) {
+                // not managed by the store, e.g. a local app reference
+                return file.isFile() ? file.getPath() : null;
+            }
+            location = key;
+        }
+        synchronized (this) {
+            Entry entry = entries.get(location);
+            if (entry != null && localStore.contains(location)) {
+                recordLookup(TIER_LOCAL);
+                return entry.getPath();
+            }
+        }
+        if (sharedStore != null) {
+            Entry entry = fetchFromSharedStore(location);
+            if (entry != null) {
+                recordLookup(sharedStore.getTierName());
+                return entry.getPath();
+            }
+        }
+        recordLookup(TIER_MISS);
+        return null;
+    }
+
+    /**
+     * @return the location to record for the archive at the given path, which other nodes are
+     * able to resolve with {@link #resolve(String)} when the archive is managed by this store
+     */
+    public String getLocation(String path) {
+        String key = localStore.getKey(new File(path));
+        return key == null ? path : key;
+    }
+
+    /**
+     * Register a listener to be called with the local path of each archive that is evicted
+     */
+    public void addEvictionListener(Consumer<String> listener) {
+        evictionListeners.add(listener);
+    }
+
+    public synchronized boolean contains(String key) {
+        return entries.containsKey(key);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getTotalSizeBytes() {
+        return totalSizeBytes;
+    }
+
+    private Entry join(CompletableFuture<Entry> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private Entry fetchFromSharedStore(String key) {
+        File temp = null;
+        try {
+            temp = File.createTempFile("commcare_", ".ccz");
+            if (!sharedStore.copyTo(key, temp)) {
+                return null;
+            }
+            verify(temp);
+            synchronized (this) {
+                Entry entry = entries.get(key);
+                if (entry == null) {
+                    entry = addEntry(key, localStore.moveIn(key, temp));
+                    evict();
+                }
+                return entry;
+            }
+        } catch (IOException | ApplicationConfigException e) {
+            log.warn(String.format("Unable to fetch CCZ %s from %s tier", key, sharedStore.getTierName()), e);
+            return null;
+        } finally {
+            if (temp != null) {
+                deleteQuietly(temp);
+            }
+        }
+    }
+
+    /**
+     * Verify the downloaded archive and move it into the store, or discard it if the store
+     * already holds an identical archive. The returned entry is retained on behalf of the caller.
+     *
+     * @param prewarm whether the archive was downloaded by a prewarm rather than a live install
+     */
+    private Entry admit(String appId, String downloadedPath, boolean prewarm) {
+        File downloaded = new File(downloadedPath);
+        try {
+            String version = verify(downloaded);
+            String hash;
+            try (InputStream in = Files.newInputStream(downloaded.toPath())) {
+                hash = DigestUtils.sha256Hex(in);
+            }
+            String key = String.format("%s/%s-%s%s",
+                    sanitize(appId), version, hash, LocalDiskCczBlobStore.CCZ_EXTENSION);
+            Entry entry;
+            synchronized (this) {
+                entry = entries.get(key);
+                if (entry != null && localStore.contains(key)) {
+                    // the download has already been paid for, so this isn't a local hit
+                    Files.deleteIfExists(downloaded.toPath());
+                    if (entry.prewarmed && !prewarm) {
+                        // only count the first live install of a prewarmed build
+                        entry.prewarmed = false;
+                        datadogStatsDClient.increment(Constants.DATADOG_PREWARM_COLD_STARTS_AVOIDED);
+                    }
+                } else {
+                    entry = addEntry(key, localStore.moveIn(key, downloaded));
+                }
+                recordLookup(TIER_ORIGIN);
+                if (prewarm) {
+                    entry.prewarmed = true;
+                }
+                entry.refCount++;
+                evict();
+            }
+            publish(entry);
+            return entry;
+        } catch (IOException e) {
+            deleteQuietly(downloaded);
+            throw new RuntimeException("Error storing CCZ for appId " + appId, e);
+        } catch (RuntimeException e) {
+            deleteQuietly(downloaded);
+            throw e;
+        }
+    }
+
+    private void publish(Entry entry) {
+        if (sharedStore == null) {
+            return;
+        }
+        try {
+            if (!sharedStore.contains(entry.key)) {
+                sharedStore.put(entry.key, entry.file);
+            }
+        } catch (IOException e) {
+            // the archive is still usable on this node
+            log.warn(String.format("Unable to publish CCZ %s to %s tier", entry.key, sharedStore.getTierName()), e);
+        }
+    }
+
+    /**
+     * Check that the archive is a readable zip containing a parseable profile
+     *
+     * @return the build version declared by the profile
+     */
+    public static String verify(File archive) {
+        try (ZipFile zip = new ZipFile(archive)) {
+            ZipEntry profile = zip.getEntry(PROFILE_ENTRY);
+            if (profile == null) {
+                throw new ApplicationConfigException(
+                        "Downloaded CommCare Package is missing " + PROFILE_ENTRY);
+            }
+            try (InputStream in = zip.getInputStream(profile)) {
+                DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+                factory.setExpandEntityReferences(false);
+                Document document = factory.newDocumentBuilder().parse(in);
+                String version = document.getDocumentElement().getAttribute("version");
+                return version.isEmpty() ? "unversioned" : sanitize(version);
+            }
+        } catch (ApplicationConfigException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ApplicationConfigException(
+                    "Downloaded file is not a valid CommCare Package: " + e.getMessage(), e);
+        }
+    }
+
+    private void recordLookup(String tier) {
+        datadogStatsDClient.increment(Constants.DATADOG_CCZ_STORE_LOOKUPS, "tier:" + tier);
+    }
+
+    private synchronized Entry addEntry(String key, File file) {
+        Entry entry = new Entry(key, file, file.length());
+        entries.put(key, entry);
+        totalSizeBytes += entry.sizeBytes;
+        return entry;
+    }
+
+    private synchronized Lease retain(Entry entry) {
+        if (entry.evicted) {
+            return null;
+        }
+        entry.refCount++;
+        entries.get(entry.key);
+        return new Lease(entry);
+    }
+
+    private synchronized void release(Entry entry) {
+        entry.refCount--;
+        evict();
+    }
+
+    private synchronized void evict() {
+        // pinned archives are never evicted, even if they alone exceed the store's bounds
+        Set<String> pinned = new HashSet<>(pins.values());
+        Iterator<Entry> iterator = entries.values().iterator();
+        while ((entries.size() > maxEntries || totalSizeBytes > maxSizeBytes) && iterator.hasNext()) {
+            Entry candidate = iterator.next();
+            if (candidate.refCount > 0 || pinned.contains(candidate.key)) {
+                continue;
+            }
+            iterator.remove();
+            candidate.evicted = true;
+            totalSizeBytes -= candidate.sizeBytes;
+            log.info("Evicting CCZ " + candidate.key);
+            for (Consumer<String> listener : evictionListeners) {
+                listener.accept(candidate.getPath());
+            }
+            deleteQuietly(candidate.file);
+        }
+    }
+
+    private synchronized void loadPins() {
+        try {
+            pins.putAll(localStore.readPins());
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read pinned CCZs", e);
+        }
+    }
+
+    private synchronized void savePins() {
+        try {
+            localStore.writePins(pins);
+        } catch (IOException e) {
+            // the pin still holds until this node restarts
+            log.warn("Unable to record pinned CCZs", e);
+        }
+    }
+
+    private void loadExistingArchives() {
+        List<Entry> found = new ArrayList<>();
+        for (String key : localStore.listKeys()) {
+            File file = localStore.getFile(key);
+            found.add(new Entry(key, file, file.length()));
+        }
+        found.sort((a, b) -> Long.compare(a.file.lastModified(), b.file.lastModified()));
+        synchronized (this) {
+            for (Entry entry : found) {
+                entries.put(entry.key, entry);
+                totalSizeBytes += entry.sizeBytes;
+            }
+            evict();
+        }
+    }
+
+    private void deleteQuietly(File file) {
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException e) {
+            log.warn("Unable to delete " + file.getAbsolutePath(), e);
+        }
+    }
+
+    private static String getFlightKey(String appId, String downloadKey) {
+        return appId + "|" + downloadKey;
+    }
+
+    private static String sanitize(String value) {
+        return value.replaceAll("[^A-Za-z0-9_.-]", "_");
+    }
+
+    private static class Entry {
+        private final String key;
+        private final File file;
+        private final long sizeBytes;
+        private int refCount = 0;
+        private boolean evicted = false;
+        private boolean prewarmed = false;
+
+        Entry(String key, File file, long sizeBytes) {
+            this.key = key;
+            this.file = file;
+            this.sizeBytes = sizeBytes;
+        }
+
+        String getPath() {
+            return file.getAbsolutePath();
+        }
+    }
+
+    /**
+     * Handle on a stored archive. The archive is protected from eviction until the lease is closed.
+     */
+    public class Lease implements AutoCloseable {
+        private final Entry entry;
+        private boolean closed = false;
+
+        private Lease(Entry entry) {
+            this.entry = entry;
+        }
+
+        public String getPath() {
+            return entry.getPath();
+        }
+
+        public String getKey() {
+            return entry.key;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                release(entry);
+            }
+        }
+    }
+}
@@ -18,15 +18,22 @@ public class FormplayerArchiveFileRoot extends ArchiveFileRoot {
     @Autowired
     private StringRedisTemplate redisTemplate;
 
+    @Autowired
+    private CczStore cczStore;
+
+    @Autowired
+    private ZipFileCache zipFileCache;
+
     private int MAX_RECENT = 5;
 
     @Override
     public String addArchiveFile(ZipFile zip, String appId) {
         String mGUID = super.addArchiveFile(zip, appId);
-        redisTemplate.opsForValue().set(
-                String.format("formplayer:archive:%s", mGUID),
-                zip.getName()
-        );
+        // record a location other nodes can resolve through the CCZ store's shared tier
+        String location = cczStore.getLocation(zip.getName());
+        redisTemplate.opsForValue().set(String.format("formplayer:archive:%s", mGUID), location);
+        // the installed app keeps reading from the archive so it must not be evicted
+        cczStore.pin(mGUID, location);
         return mGUID;
     }
 
@@ -38,11 +45,21 @@ public class FormplayerArchiveFileRoot extends ArchiveFileRoot {
             return new ArchiveFileReference(guidToFolderMap.get(GUID), GUID, getPath(guidPath));
         }
         try {
-            String zipName = redisTemplate.opsForValue().get(String.format("formplayer:archive:%s", GUID));
-            if (zipName == null) {
+            String location = redisTemplate.opsForValue().get(String.format("formplayer:archive:%s", GUID));
+            if (location == null) {
                 throw new InvalidReferenceException(String.format("No zip file saved for key %s.", guidPath), guidPath);
             }
-            return new ArchiveFileReference(new ZipFile(zipName), GUID, getPath(guidPath));
+            String zipName = cczStore.resolve(location);
+            if (zipName != null) {
+                // pin archives fetched from the shared tier and those recorded by other nodes
+                cczStore.pin(GUID, location);
+            }
+            if (zipName == null) {
+                throw new InvalidReferenceException(String.format("Zip file for key %s is not available.", guidPath), guidPath);
+            }
+            // check the archive can be opened before handing out references into it
+            zipFileCache.acquire(zipName).close();
+            return new CachedArchiveFileReference(zipFileCache, zipName, GUID, getPath(guidPath));
         } catch (IOException e) {
             throw new InvalidReferenceException(String.format("Error deriving reference with exception %s.", guidPath), guidPath);
         }
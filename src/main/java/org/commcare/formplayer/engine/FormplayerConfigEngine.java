@@ -1,13 +1,11 @@
 package org.commcare.formplayer.engine;
 
-import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.utils.URIBuilder;
-import org.commcare.formplayer.exceptions.ApplicationConfigException;
-import org.commcare.formplayer.exceptions.FormattedApplicationConfigException;
 import org.commcare.formplayer.installers.FormplayerInstallerFactory;
+import org.commcare.formplayer.installers.XFormPreparser;
 import org.commcare.modern.reference.ArchiveFileRoot;
 import org.commcare.modern.reference.JavaHttpRoot;
 import org.commcare.resources.model.InstallCancelledException;
@@ -17,24 +15,16 @@ import org.commcare.util.engine.CommCareConfigEngine;
 import org.javarosa.core.reference.InvalidReferenceException;
 import org.javarosa.core.reference.ReferenceManager;
 import org.javarosa.core.reference.ResourceReferenceFactory;
+import org.javarosa.core.model.FormDef;
 import org.javarosa.core.services.locale.Localization;
 import org.javarosa.core.services.storage.IStorageIndexedFactory;
 import org.javarosa.xml.util.UnfullfilledRequirementsException;
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-import org.springframework.http.HttpMethod;
-import org.springframework.util.StreamUtils;
-import org.springframework.web.client.HttpClientErrorException;
-import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.RestTemplate;
 
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.Collections;
 import java.util.List;
-import java.util.Objects;
 import java.util.zip.ZipFile;
 
 /**
@@ -43,14 +33,23 @@ import java.util.zip.ZipFile;
 public class FormplayerConfigEngine extends CommCareConfigEngine {
 
     private final Log log = LogFactory.getLog(FormplayerConfigEngine.class);
-    private RestTemplate restTemplate;
+    private CczDownloader cczDownloader;
+    private CczStore cczStore;
+    private FormplayerInstallerFactory formplayerInstallerFactory;
+    private XFormPreparser xFormPreparser;
+    private List<FormDef> installedForms = Collections.emptyList();
 
     public FormplayerConfigEngine(IStorageIndexedFactory storageFactory,
                                   FormplayerInstallerFactory formplayerInstallerFactory,
                                   ArchiveFileRoot formplayerArchiveFileRoot,
-                                  RestTemplate restTemplate) {
+                                  RestTemplate restTemplate,
+                                  CczStore cczStore,
+                                  XFormPreparser xFormPreparser) {
         super(storageFactory, formplayerInstallerFactory, System.out);
-        this.restTemplate = restTemplate;
+        this.cczDownloader = new CczDownloader(restTemplate);
+        this.cczStore = cczStore;
+        this.formplayerInstallerFactory = formplayerInstallerFactory;
+        this.xFormPreparser = xFormPreparser;
         this.mArchiveRoot = formplayerArchiveFileRoot;
         ReferenceManager.instance().addReferenceFactory(formplayerArchiveFileRoot);
     }
@@ -78,10 +77,8 @@ public class FormplayerConfigEngine extends CommCareConfigEngine {
 
     public void initFromArchive(String archiveURL, boolean preview) throws InstallCancelledException,
             UnresolvedResourceException, UnfullfilledRequirementsException {
-        String fileName;
-        String appId = null;
         if (archiveURL.startsWith("http")) {
-            appId = parseAppId(archiveURL);
+            String appId = parseAppId(archiveURL);
             if (!preview) {
                 try {
                     mArchiveRoot.derive("jr://archive/" + appId + "/");
@@ -92,10 +89,17 @@ public class FormplayerConfigEngine extends CommCareConfigEngine {
                     // Expected in many cases, pass
                 }
             }
-            fileName = downloadToTemp(archiveURL);
+            // hold the lease until install completes so the archive can't be evicted underneath us
+            try (CczStore.Lease lease = cczStore.acquire(appId, archiveURL, () -> downloadToTemp(archiveURL))) {
+                initFromArchiveFile(archiveURL, lease.getPath(), appId);
+            }
         } else {
-            fileName = archiveURL;
+            initFromArchiveFile(archiveURL, archiveURL, null);
         }
+    }
+
+    private void initFromArchiveFile(String archiveURL, String fileName, String appId)
+            throws InstallCancelledException, UnresolvedResourceException, UnfullfilledRequirementsException {
         ZipFile zip;
         try {
             zip = new ZipFile(fileName);
@@ -104,66 +108,28 @@ public class FormplayerConfigEngine extends CommCareConfigEngine {
             return;
         }
         String archiveGUID = this.mArchiveRoot.addArchiveFile(zip, appId);
-        init("jr://archive/" + archiveGUID + "/profile.ccpr");
-    }
-
-    @Override
-    protected String downloadToTemp(String resource) {
-        File file = null;
+        String archiveRoot = "jr://archive/" + archiveGUID + "/";
+        // parse forms in parallel up front, the resource table then only has to write them
+        XFormPreparser.PreparsedXForms preparsedForms = xFormPreparser.parse(zip, archiveRoot);
+        formplayerInstallerFactory.setPreparsedForms(preparsedForms);
         try {
-            file = restTemplate.execute(resource, HttpMethod.GET, null, clientHttpResponse -> {
-                File ret = File.createTempFile("commcare_", ".ccz");
-                StreamUtils.copy(clientHttpResponse.getBody(), new FileOutputStream(ret));
-                return ret;
-            });
-        } catch (HttpClientErrorException.BadRequest e) {
-            handleInstallError(e.getResponseBodyAsString());
-        } catch (HttpServerErrorException.ServiceUnavailable e) {
-            throw new RuntimeException(
-                    "Server is too busy. Please try again in a moment."
-            );
-        } catch (HttpClientErrorException e) {
-            throw new RuntimeException(
-                    "Formplayer encountered an unknown error. Please submit a ticket if you continue to see this."
-            );
-        } catch (HttpServerErrorException.GatewayTimeout e) {
-            throw new RuntimeException(
-                    "Timed out fetching the CommCare application. Please submit a ticket if you continue to see this."
-            );
-        } catch (HttpServerErrorException.InternalServerError e) {
-            String errorMessage = parseErrorFromResponse(e.getResponseBodyAsString());
-            if (StringUtils.isEmpty(errorMessage)) {
-                errorMessage = "There are errors in your application. Please fix these errors in your application before using app preview.";
-            }
-            throw new ApplicationConfigException(errorMessage);
+            init(archiveRoot + "profile.ccpr");
+            installedForms = preparsedForms.getAllForms();
+        } finally {
+            formplayerInstallerFactory.setPreparsedForms(null);
         }
-        return Objects.requireNonNull(file).getAbsolutePath();
     }
 
-    private String parseErrorFromResponse(String responseBody) {
-        try {
-            JSONObject errorJson = new JSONObject(responseBody);
-            if (errorJson.has("errors")) {
-                JSONArray errors = errorJson.getJSONArray("errors");
-                String consolidatedErrorMessage = "";
-                for (int i = 0; i < errors.length(); i++) {
-                    consolidatedErrorMessage += errors.getString(i);
-                    consolidatedErrorMessage += "\n";
-                }
-                return consolidatedErrorMessage;
-            }
-        } catch (JSONException e ){
-            return null;
-        }
-        return null;
+    /**
+     * @return the forms parsed while installing the app archive, empty if nothing was installed
+     */
+    public List<FormDef> getInstalledForms() {
+        return installedForms;
     }
 
-    private void handleInstallError(String responseBody) {
-        JSONObject errorJson = new JSONObject(responseBody);
-        if (errorJson.has("error_html")) {
-            throw new FormattedApplicationConfigException(errorJson.getString("error_html"));
-        }
-        throw new ApplicationConfigException(errorJson.getJSONArray("errors").join(" "));
+    @Override
+    protected String downloadToTemp(String resource) {
+        return cczDownloader.download(resource);
     }
 
     @Override
@@ -0,0 +1,206 @@
+package org.commcare.formplayer.engine;
+
+import org.javarosa.core.model.condition.EvaluationContext;
+import org.javarosa.core.model.data.IAnswerData;
+import org.javarosa.core.model.instance.TreeElement;
+import org.javarosa.core.model.instance.TreeReference;
+import org.javarosa.xpath.XPathException;
+import org.javarosa.xpath.XPathNodeset;
+import org.javarosa.xpath.expr.FunctionUtils;
+import org.javarosa.xpath.expr.XPathEqExpr;
+import org.javarosa.xpath.expr.XPathExpression;
+import org.javarosa.xpath.expr.XPathPathExpr;
+import org.javarosa.xpath.expr.XPathStep;
+import org.javarosa.xpath.expr.XPathStringLiteral;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Root of an external instance, such as case search results or a multi-select selection, that
+ * answers equality predicates on its children from hash indexes instead of scanning them.
+ *
+ * Lookups like instance('results')/results/case[@case_id = current()/index/parent] are evaluated
+ * once per case list row or form question, which makes a scan of the results quadratic. Here the
+ * first predicate is answered from an index over the children's attribute or child element
+ * values when it compares one of them with a literal, an absolute path or a path from current(),
+ * and the remaining predicates are left to the evaluation context. Indexes are built on first use.
+ *
+ * Lookups match the scan exactly: children without the attribute or element compare as the empty
+ * string, and children with more than one of the element aren't indexed since comparing them
+ * raises a type mismatch.
+ */
+public class IndexedExternalTreeElement extends TreeElement {
+
+    // returned for children that can't be indexed, the lookup falls back to the scan
+    private static final Map<String, List<TreeElement>> UNINDEXABLE = Collections.emptyMap();
+
+    // child name -> "@attribute" or "element" -> value -> children in document order
+    private final Map<String, Map<String, Map<String, List<TreeElement>>>> indexes =
+            new ConcurrentHashMap<>();
+    private final AtomicInteger indexedLookups = new AtomicInteger();
+
+    private IndexedExternalTreeElement(String name) {
+        super(name);
+    }
+
+    /**
+     * Move the children and attributes of a parsed instance root to an indexed root
+     */
+    public static TreeElement index(TreeElement root) {
+        if (root == null || root instanceof IndexedExternalTreeElement) {
+            return root;
+        }
+        IndexedExternalTreeElement indexed = new IndexedExternalTreeElement(root.getName());
+        indexed.setInstanceName(root.getInstanceName());
+        indexed.setNamespace(root.getNamespace());
+        for (int i = 0; i < root.getAttributeCount(); i++) {
+            indexed.setAttribute(root.getAttributeNamespace(i), root.getAttributeName(i),
+                    root.getAttributeValue(i));
+        }
+        List<TreeElement> children = new ArrayList<>(root.getNumChildren());
+        for (int i = 0; i < root.getNumChildren(); i++) {
+            children.add(root.getChildAt(i));
+        }
+        for (TreeElement child : children) {
+            indexed.addChild(child);
+        }
+        return indexed;
+    }
+
+    @Override
+    public Collection<TreeReference> tryBatchChildFetch(String name, int mult,
+            Vector<XPathExpression> predicates, EvaluationContext evalContext) {
+        if (mult != TreeReference.INDEX_UNBOUND || predicates == null || predicates.isEmpty()
+                || !(predicates.firstElement() instanceof XPathEqExpr)) {
+            return super.tryBatchChildFetch(name, mult, predicates, evalContext);
+        }
+        XPathEqExpr predicate = (XPathEqExpr)predicates.firstElement();
+        String indexKey = getIndexKey(predicate.a);
+        XPathExpression valueExpr = predicate.b;
+        if (indexKey == null) {
+            indexKey = getIndexKey(predicate.b);
+            valueExpr = predicate.a;
+        }
+        if (predicate.op != XPathEqExpr.EQ || indexKey == null || !isContextFree(valueExpr)) {
+            return super.tryBatchChildFetch(name, mult, predicates, evalContext);
+        }
+
+        Map<String, List<TreeElement>> index = getIndex(name, indexKey);
+        if (index == UNINDEXABLE) {
+            return super.tryBatchChildFetch(name, mult, predicates, evalContext);
+        }
+
+        Object value = valueExpr.eval(evalContext);
+        if (value instanceof XPathNodeset) {
+            if (((XPathNodeset)value).size() > 1) {
+                // the scan raises the type mismatch
+                return super.tryBatchChildFetch(name, mult, predicates, evalContext);
+            }
+            // an empty nodeset compares as the empty string
+            value = FunctionUtils.unpack(value);
+        }
+        if (!(value instanceof String)) {
+            // numeric and boolean comparisons don't compare the string values
+            return super.tryBatchChildFetch(name, mult, predicates, evalContext);
+        }
+
+        List<TreeElement> matches = index.getOrDefault(value, Collections.emptyList());
+        predicates.removeElementAt(0);
+        indexedLookups.incrementAndGet();
+        List<TreeReference> references = new ArrayList<>(matches.size());
+        for (TreeElement match : matches) {
+            references.add(match.getRef());
+        }
+        return references;
+    }
+
+    /**
+     * @return the number of lookups answered from an index rather than left to the scan
+     */
+    int getIndexedLookups() {
+        return indexedLookups.get();
+    }
+
+    /**
+     * @return the index key for a relative path to an attribute or child element of the
+     * children, or null if the expression isn't one
+     */
+    private static String getIndexKey(XPathExpression expr) {
+        if (!(expr instanceof XPathPathExpr)) {
+            return null;
+        }
+        XPathPathExpr path = (XPathPathExpr)expr;
+        if (path.init_context != XPathPathExpr.INIT_CONTEXT_RELATIVE || path.steps.length != 1) {
+            return null;
+        }
+        XPathStep step = path.steps[0];
+        if (step.test != XPathStep.TEST_NAME || step.name.namespace != null
+                || (step.predicates != null && step.predicates.length > 0)) {
+            return null;
+        }
+        if (step.axis == XPathStep.AXIS_ATTRIBUTE) {
+            return "@" + step.name.name;
+        } else if (step.axis == XPathStep.AXIS_CHILD) {
+            return step.name.name;
+        }
+        return null;
+    }
+
+    /**
+     * Only values that don't depend on the child being tested can be looked up
+     */
+    private static boolean isContextFree(XPathExpression expr) {
+        if (expr instanceof XPathStringLiteral) {
+            return true;
+        } else if (!(expr instanceof XPathPathExpr)) {
+            return false;
+        }
+        XPathPathExpr path = (XPathPathExpr)expr;
+        if (path.init_context == XPathPathExpr.INIT_CONTEXT_ROOT) {
+            return true;
+        } else if (path.init_context == XPathPathExpr.INIT_CONTEXT_EXPR) {
+            try {
+                // paths from current() or from instance(), e.g. into the session or another instance
+                int contextType = path.getReference().getContextType();
+                return contextType == TreeReference.CONTEXT_ORIGINAL
+                        || contextType == TreeReference.CONTEXT_INSTANCE;
+            } catch (XPathException e) {
+                // other filter expressions
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private Map<String, List<TreeElement>> getIndex(String childName, String indexKey) {
+        return indexes.computeIfAbsent(childName, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(indexKey, k -> buildIndex(childName, indexKey));
+    }
+
+    private Map<String, List<TreeElement>> buildIndex(String childName, String indexKey) {
+        Map<String, List<TreeElement>> index = new HashMap<>();
+        for (TreeElement child : getChildrenWithName(childName)) {
+            String key;
+            if (indexKey.startsWith("@")) {
+                key = child.getAttributeValue(null, indexKey.substring(1));
+            } else {
+                Vector<TreeElement> elements = child.getChildrenWithName(indexKey);
+                if (elements.size() > 1) {
+                    return UNINDEXABLE;
+                }
+                IAnswerData value = elements.isEmpty() ? null : elements.get(0).getValue();
+                key = value == null ? null : value.uncast().getString();
+            }
+            index.computeIfAbsent(key == null ? "" : key, k -> new ArrayList<>()).add(child);
+        }
+        return index;
+    }
+}
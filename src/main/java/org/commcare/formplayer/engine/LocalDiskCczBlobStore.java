@@ -0,0 +1,155 @@
+package org.commcare.formplayer.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * {@link CczBlobStore} backed by a directory on the local disk
+ */
+public class LocalDiskCczBlobStore implements CczBlobStore {
+
+    static final String CCZ_EXTENSION = ".ccz";
+    private static final String PINS_FILE = "pins.properties";
+
+    protected final File rootDir;
+
+    public LocalDiskCczBlobStore(File rootDir) {
+        this.rootDir = rootDir.getAbsoluteFile();
+        if (!this.rootDir.exists() && !this.rootDir.mkdirs()) {
+            throw new RuntimeException("Unable to create CCZ directory " + this.rootDir.getPath());
+        }
+    }
+
+    @Override
+    public String getTierName() {
+        return "local";
+    }
+
+    public File getFile(String key) {
+        return new File(rootDir, key);
+    }
+
+    /**
+     * @return the key for a file inside this store or null if the file is stored elsewhere
+     */
+    public String getKey(File file) {
+        String path = file.getAbsolutePath();
+        String root = rootDir.getPath() + File.separator;
+        if (!path.startsWith(root)) {
+            return null;
+        }
+        return path.substring(root.length()).replace(File.separatorChar, '/');
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return getFile(key).isFile();
+    }
+
+    @Override
+    public boolean copyTo(String key, File target) throws IOException {
+        File file = getFile(key);
+        if (!file.isFile()) {
+            return false;
+        }
+        Files.copy(file.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return true;
+    }
+
+    @Override
+    public void put(String key, File source) throws IOException {
+        File target = prepareTarget(key);
+        Files.copy(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Move the source file into the store rather than copying it
+     */
+    public File moveIn(String key, File source) throws IOException {
+        File target = prepareTarget(key);
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            // source is on a different file system
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return target;
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(getFile(key).toPath());
+    }
+
+    /**
+     * @return the keys of all archives in the store
+     */
+    public List<String> listKeys() {
+        List<String> keys = new ArrayList<>();
+        File[] appDirs = rootDir.listFiles(File::isDirectory);
+        if (appDirs == null) {
+            return keys;
+        }
+        for (File appDir : appDirs) {
+            File[] archives = appDir.listFiles((dir, name) -> name.endsWith(CCZ_EXTENSION));
+            if (archives == null) {
+                continue;
+            }
+            for (File archive : archives) {
+                keys.add(getKey(archive));
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * @return the pins recorded by {@link #writePins(Map)}, empty if none have been
+     */
+    public Map<String, String> readPins() throws IOException {
+        Map<String, String> pins = new HashMap<>();
+        File file = new File(rootDir, PINS_FILE);
+        if (!file.isFile()) {
+            return pins;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            properties.load(in);
+        }
+        for (String owner : properties.stringPropertyNames()) {
+            pins.put(owner, properties.getProperty(owner));
+        }
+        return pins;
+    }
+
+    /**
+     * Record which archive each owner pins so that the pins survive a restart
+     */
+    public void writePins(Map<String, String> pins) throws IOException {
+        Properties properties = new Properties();
+        properties.putAll(pins);
+        File temp = File.createTempFile("pins", ".tmp", rootDir);
+        try (OutputStream out = Files.newOutputStream(temp.toPath())) {
+            properties.store(out, null);
+        }
+        Files.move(temp.toPath(), new File(rootDir, PINS_FILE).toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    protected File prepareTarget(String key) throws IOException {
+        File target = getFile(key);
+        File parent = target.getParentFile();
+        if (!parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create directory " + parent.getAbsolutePath());
+        }
+        return target;
+    }
+}
@@ -0,0 +1,52 @@
+package org.commcare.formplayer.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+
+/**
+ * {@link CczBlobStore} backed by a file system shared between nodes, such as an NFS mount.
+ *
+ * Several nodes may publish the same key at once so blobs are written to a temporary file and
+ * renamed into place, ensuring readers never observe a partially written archive.
+ */
+public class SharedFileSystemCczBlobStore extends LocalDiskCczBlobStore {
+
+    public SharedFileSystemCczBlobStore(File rootDir) {
+        super(rootDir);
+    }
+
+    @Override
+    public String getTierName() {
+        return "shared";
+    }
+
+    @Override
+    public void put(String key, File source) throws IOException {
+        File target = prepareTarget(key);
+        File temp = new File(target.getParentFile(), "." + target.getName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            Files.copy(source.toPath(), temp.toPath());
+            Files.move(temp.toPath(), target.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    @Override
+    public boolean copyTo(String key, File target) throws IOException {
+        File temp = new File(target.getParentFile(), "." + target.getName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            if (!super.copyTo(key, temp)) {
+                return false;
+            }
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+}
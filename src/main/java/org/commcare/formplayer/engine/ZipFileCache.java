@@ -0,0 +1,130 @@
+package org.commcare.formplayer.engine;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.zip.ZipFile;
+
+/**
+ * Cache of open {@link ZipFile} handles keyed by archive path.
+ *
+ * Opening a ZipFile reads the archive's central directory, which is wasteful when resolving the
+ * hundreds of references a large app makes into the same archive. Handles are reference counted
+ * while callers are reading from them; a handle is closed once it has been idle for longer than
+ * the idle timeout, or as soon as it is released after its archive has been invalidated.
+ */
+public class ZipFileCache {
+
+    private final Log log = LogFactory.getLog(ZipFileCache.class);
+
+    private final long idleTimeoutMs;
+    private final LongSupplier clock;
+    private final Map<String, Handle> handles = new HashMap<>();
+
+    public ZipFileCache(long idleTimeoutMs) {
+        this(idleTimeoutMs, System::currentTimeMillis);
+    }
+
+    ZipFileCache(long idleTimeoutMs, LongSupplier clock) {
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.clock = clock;
+    }
+
+    /**
+     * Return a handle on the archive at the given path, opening it if it is not already open.
+     * Callers must close the handle once they have finished reading from it.
+     */
+    public synchronized Handle acquire(String path) throws IOException {
+        Handle handle = handles.get(path);
+        if (handle == null) {
+            handle = new Handle(path, new ZipFile(path));
+            handles.put(path, handle);
+        }
+        handle.refCount++;
+        handle.lastAccess = clock.getAsLong();
+        return handle;
+    }
+
+    /**
+     * Stop handing out the handle for the given path, e.g. because the archive has been deleted.
+     * The handle is closed once every caller still reading from it has released it.
+     */
+    public synchronized void invalidate(String path) {
+        Handle handle = handles.remove(path);
+        if (handle != null) {
+            handle.invalidated = true;
+            if (handle.refCount == 0) {
+                handle.closeQuietly();
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${formplayer.zipCache.evictionIntervalMs:60000}")
+    public synchronized void closeIdle() {
+        long now = clock.getAsLong();
+        Iterator<Handle> iterator = handles.values().iterator();
+        while (iterator.hasNext()) {
+            Handle handle = iterator.next();
+            if (handle.refCount == 0 && now - handle.lastAccess > idleTimeoutMs) {
+                iterator.remove();
+                handle.closeQuietly();
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return handles.size();
+    }
+
+    private synchronized void release(Handle handle) {
+        handle.refCount--;
+        handle.lastAccess = clock.getAsLong();
+        if (handle.invalidated && handle.refCount == 0) {
+            handle.closeQuietly();
+        }
+    }
+
+    /**
+     * Reference counted handle on an open archive
+     */
+    public class Handle implements AutoCloseable {
+        private final String path;
+        private final ZipFile zipFile;
+        private int refCount = 0;
+        private long lastAccess;
+        private boolean invalidated = false;
+        private boolean closed = false;
+
+        private Handle(String path, ZipFile zipFile) {
+            this.path = path;
+            this.zipFile = zipFile;
+        }
+
+        public ZipFile getZipFile() {
+            return zipFile;
+        }
+
+        @Override
+        public void close() {
+            release(this);
+        }
+
+        private void closeQuietly() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                zipFile.close();
+            } catch (IOException e) {
+                log.warn("Error closing archive " + path, e);
+            }
+        }
+    }
+}
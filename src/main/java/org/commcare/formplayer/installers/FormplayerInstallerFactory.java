@@ -22,13 +22,22 @@ public class FormplayerInstallerFactory extends InstallerFactory {
     @Autowired
     FormplayerStorageFactory storageFactory;
 
+    private XFormPreparser.PreparsedXForms preparsedForms;
+
     public ResourceInstaller getProfileInstaller(boolean forceInstall) {
         return new FormplayerProfileInstaller(forceInstall);
     }
 
     @Override
     public ResourceInstaller getXFormInstaller() {
-        return new FormplayerXFormInstaller();
+        return new FormplayerXFormInstaller(preparsedForms);
+    }
+
+    /**
+     * Set the forms parsed ahead of install for XForm installers created by this factory to use
+     */
+    public void setPreparsedForms(XFormPreparser.PreparsedXForms preparsedForms) {
+        this.preparsedForms = preparsedForms;
     }
 
     public ResourceInstaller getUserRestoreInstaller() {
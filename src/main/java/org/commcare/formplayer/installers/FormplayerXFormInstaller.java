@@ -1,17 +1,30 @@
 package org.commcare.formplayer.installers;
 
+import org.commcare.resources.model.Resource;
+import org.commcare.resources.model.ResourceLocation;
+import org.commcare.resources.model.ResourceTable;
+import org.commcare.resources.model.UnresolvedResourceException;
 import org.commcare.resources.model.installers.XFormInstaller;
 import org.commcare.util.CommCarePlatform;
 import org.javarosa.core.model.FormDef;
+import org.javarosa.core.reference.Reference;
 import org.javarosa.core.services.storage.IStorageUtilityIndexed;
+import org.javarosa.xml.util.UnfullfilledRequirementsException;
 
 /**
  * Created by willpride on 12/1/16.
  */
 public class FormplayerXFormInstaller extends XFormInstaller {
 
+    // not serialized with the installer, only present while the app is being installed
+    private transient XFormPreparser.PreparsedXForms preparsedForms;
+
     public FormplayerXFormInstaller(){}
 
+    public FormplayerXFormInstaller(XFormPreparser.PreparsedXForms preparsedForms) {
+        this.preparsedForms = preparsedForms;
+    }
+
     @Override
     protected IStorageUtilityIndexed<FormDef> storage(CommCarePlatform platform) {
         if (cacheStorage == null) {
@@ -19,4 +32,26 @@ public class FormplayerXFormInstaller extends XFormInstaller {
         }
         return cacheStorage;
     }
+
+    /**
+     * Write the form parsed ahead of install by the {@link XFormPreparser} if there is one,
+     * otherwise parse it here as usual.
+     */
+    @Override
+    public boolean install(Resource r, ResourceLocation location, Reference ref,
+            ResourceTable table, CommCarePlatform platform, boolean upgrade, boolean recovery)
+            throws UnresolvedResourceException, UnfullfilledRequirementsException {
+        FormDef formDef = null;
+        if (preparsedForms != null && !upgrade
+                && location.getAuthority() != ResourceLocation.AUTHORITY_CACHE) {
+            formDef = preparsedForms.take(ref.getURI());
+        }
+        if (formDef == null) {
+            return super.install(r, location, ref, table, platform, upgrade, recovery);
+        }
+        storage(platform).write(formDef);
+        cacheLocation = formDef.getID();
+        table.commit(r, Resource.RESOURCE_STATUS_INSTALLED);
+        return true;
+    }
 }
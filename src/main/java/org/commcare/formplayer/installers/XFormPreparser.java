@@ -0,0 +1,224 @@
+package org.commcare.formplayer.installers;
+
+import com.timgroup.statsd.StatsDClient;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.commcare.formplayer.util.Constants;
+import org.javarosa.core.model.FormDef;
+import org.javarosa.xform.util.XFormUtils;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.annotation.PreDestroy;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+/**
+ * Parses the XForms of an application archive on a bounded, shared pool ahead of the resource
+ * table install.
+ *
+ * XForm parsing is CPU bound and independent per form, whereas the resource table installs
+ * resources one after another. The parsed forms are handed to {@link FormplayerXFormInstaller}
+ * which writes them to app storage as the resource table reaches them, so storage writes stay on
+ * the request thread and in the resource table's order. If any form fails to parse the whole
+ * install fails before anything has been written.
+ */
+public class XFormPreparser {
+
+    private static final String PROFILE_ENTRY = "profile.ccpr";
+    private static final String DEFAULT_SUITE_ENTRY = "suite.xml";
+
+    private final Log log = LogFactory.getLog(XFormPreparser.class);
+
+    private final ExecutorService executor;
+    private final StatsDClient datadogStatsDClient;
+
+    public XFormPreparser(int threads, StatsDClient datadogStatsDClient) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "xform-parse-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.datadogStatsDClient = datadogStatsDClient;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Parse every XForm referenced by the archive's suites
+     *
+     * @param zip         the application archive
+     * @param archiveRoot the reference root the archive is registered under, e.g. jr://archive/GUID/
+     * @return the parsed forms keyed by normalized reference URI, in the order the suites list them
+     */
+    public PreparsedXForms parse(ZipFile zip, String archiveRoot) {
+        List<String> formEntries = findFormEntries(zip);
+        long start = System.currentTimeMillis();
+        Map<String, Future<FormDef>> futures = new HashMap<>();
+        for (String entryName : formEntries) {
+            futures.put(entryName, executor.submit(() -> parseEntry(zip, entryName)));
+        }
+        Map<String, FormDef> forms = new LinkedHashMap<>();
+        try {
+            for (String entryName : formEntries) {
+                forms.put(normalize(archiveRoot + entryName), futures.get(entryName).get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while parsing forms", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            for (Future<FormDef> future : futures.values()) {
+                future.cancel(true);
+            }
+        }
+        log.info(String.format("Parsed %d forms in %d ms", forms.size(), System.currentTimeMillis() - start));
+        return new PreparsedXForms(forms, datadogStatsDClient);
+    }
+
+    /**
+     * Parse a single form from the archive on the calling thread
+     */
+    public FormDef parseEntry(ZipFile zip, String entryName) throws Exception {
+        long start = System.currentTimeMillis();
+        ZipEntry entry = zip.getEntry(entryName);
+        if (entry == null) {
+            throw new RuntimeException("Form " + entryName + " is missing from the application archive");
+        }
+        FormDef formDef;
+        try (InputStream in = zip.getInputStream(entry)) {
+            formDef = XFormUtils.getFormRaw(new InputStreamReader(in, StandardCharsets.UTF_8));
+        }
+        long elapsed = System.currentTimeMillis() - start;
+        log.debug(String.format("Parsed form %s in %d ms", entryName, elapsed));
+        datadogStatsDClient.recordExecutionTime(Constants.DATADOG_INSTALL_XFORM_PARSE, elapsed);
+        return formDef;
+    }
+
+    /**
+     * @return the archive entries of all XForms with a local location in the archive's suites
+     */
+    public List<String> findFormEntries(ZipFile zip) {
+        Set<String> suites = new LinkedHashSet<>(
+                getLocalLocations(zip, PROFILE_ENTRY, "suite"));
+        if (suites.isEmpty()) {
+            suites.add(DEFAULT_SUITE_ENTRY);
+        }
+        Set<String> forms = new LinkedHashSet<>();
+        for (String suite : suites) {
+            forms.addAll(getLocalLocations(zip, suite, "xform"));
+        }
+        return new ArrayList<>(forms);
+    }
+
+    private List<String> getLocalLocations(ZipFile zip, String entryName, String resourceType) {
+        List<String> locations = new ArrayList<>();
+        ZipEntry entry = zip.getEntry(entryName);
+        if (entry == null) {
+            return locations;
+        }
+        try (InputStream in = zip.getInputStream(entry)) {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setExpandEntityReferences(false);
+            Document document = factory.newDocumentBuilder().parse(in);
+            NodeList resources = document.getDocumentElement().getElementsByTagName(resourceType);
+            for (int i = 0; i < resources.getLength(); i++) {
+                NodeList locationNodes = ((Element)resources.item(i)).getElementsByTagName("location");
+                for (int j = 0; j < locationNodes.getLength(); j++) {
+                    Element location = (Element)locationNodes.item(j);
+                    if ("local".equals(location.getAttribute("authority"))) {
+                        locations.add(normalize(location.getTextContent().trim()));
+                        break;
+                    }
+                }
+            }
+        } catch (Exception e) {
+            // the resource table will surface any problem with the file during install
+            log.warn("Unable to read resource locations from " + entryName, e);
+        }
+        return locations;
+    }
+
+    static String normalize(String location) {
+        String normalized = location.replace("/./", "/");
+        while (normalized.startsWith("./")) {
+            normalized = normalized.substring(2);
+        }
+        return normalized;
+    }
+
+    /**
+     * Forms parsed ahead of install, keyed by normalized reference URI
+     */
+    public static class PreparsedXForms {
+        private final Log log = LogFactory.getLog(PreparsedXForms.class);
+
+        private final Map<String, FormDef> forms;
+        private final List<FormDef> allForms;
+        private final StatsDClient datadogStatsDClient;
+
+        PreparsedXForms(Map<String, FormDef> forms, StatsDClient datadogStatsDClient) {
+            this.forms = forms;
+            this.allForms = Collections.unmodifiableList(new ArrayList<>(forms.values()));
+            this.datadogStatsDClient = datadogStatsDClient;
+        }
+
+        /**
+         * Remove and return the parsed form for the reference, if there is one. A miss means the
+         * reference didn't normalize to the location the suite lists, and the installer falls
+         * back to parsing the form itself.
+         */
+        public FormDef take(String referenceUri) {
+            FormDef formDef;
+            synchronized (this) {
+                formDef = forms.remove(normalize(referenceUri));
+            }
+            datadogStatsDClient.increment(Constants.DATADOG_INSTALL_XFORM_PREPARSED_LOOKUPS,
+                    "result:" + (formDef == null ? "miss" : "hit"));
+            if (formDef == null) {
+                log.warn(String.format("No form parsed ahead of install for %s, parsing it during install",
+                        referenceUri));
+            }
+            return formDef;
+        }
+
+        public synchronized int size() {
+            return forms.size();
+        }
+
+        /**
+         * @return every form that was parsed, including those already taken by the install
+         */
+        public List<FormDef> getAllForms() {
+            return allForms;
+        }
+    }
+}
@@ -41,15 +41,15 @@ public class SerializableFormDefinition {
     private String formVersion;
 
     @Column(name = "formdef")
-    private String serializedFormDef;
+    private byte[] serializedFormDef;
 
-    public void setSerializedFormDef(String serializedFormDef) {
+    public void setSerializedFormDef(byte[] serializedFormDef) {
         this.serializedFormDef = serializedFormDef;
     }
 
     protected SerializableFormDefinition() {}
 
-    public SerializableFormDefinition(String appId, String formXmlns, String formVersion, String formDef) {
+    public SerializableFormDefinition(String appId, String formXmlns, String formVersion, byte[] formDef) {
         this.appId = appId;
         this.formXmlns = formXmlns;
         this.formVersion = formVersion;
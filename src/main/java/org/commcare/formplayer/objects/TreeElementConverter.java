@@ -1,25 +1,66 @@
 package org.commcare.formplayer.objects;
 
+import org.apache.commons.io.IOUtils;
 import org.commcare.formplayer.util.SerializationUtil;
+import org.commcare.formplayer.util.serializer.SelectionInstanceSerializer;
 import org.javarosa.core.model.instance.TreeElement;
 import org.javarosa.core.util.externalizable.ExtUtil;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
 import javax.persistence.AttributeConverter;
 import javax.persistence.Converter;
 
 /**
  * Serialization converter for {@link TreeElement}
+ *
+ * Flat lists of values, like multi-select case selections, are stored in a compact form. Other
+ * trees are serialized and deflated. Rows written before compression was added hold the plain
+ * serialized tree and are still read as such.
  */
 @Converter
 public class TreeElementConverter implements AttributeConverter<TreeElement, byte[]> {
 
+    // a serialized tree starts with its nullable name marker, 0 or 1, so can't start with this
+    private static final byte DEFLATED_TREE_MARKER = (byte)0xDE;
+
     @Override
     public byte[] convertToDatabaseColumn(TreeElement attribute) {
-        return ExtUtil.serialize(attribute);
+        byte[] compact = SelectionInstanceSerializer.serialize(attribute);
+        if (compact != null) {
+            return compact;
+        }
+        try {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            baos.write(DEFLATED_TREE_MARKER);
+            try (DeflaterOutputStream out = new DeflaterOutputStream(baos, new Deflater(Deflater.BEST_SPEED))) {
+                out.write(ExtUtil.serialize(attribute));
+            }
+            return baos.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to compress instance", e);
+        }
     }
 
     @Override
     public TreeElement convertToEntityAttribute(byte[] dbData) {
+        if (SelectionInstanceSerializer.isSerializedSelection(dbData)) {
+            return SelectionInstanceSerializer.deserialize(dbData);
+        }
+        if (dbData.length > 0 && dbData[0] == DEFLATED_TREE_MARKER) {
+            try (InputStream in = new InflaterInputStream(
+                    new ByteArrayInputStream(dbData, 1, dbData.length - 1))) {
+                return SerializationUtil.deserialize(IOUtils.toByteArray(in), TreeElement.class);
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to inflate instance", e);
+            }
+        }
         return SerializationUtil.deserialize(dbData, TreeElement.class);
     }
 }
@@ -1,6 +1,7 @@
 package org.commcare.formplayer.repo;
 
 import org.commcare.formplayer.objects.SerializableDataInstance;
+import org.commcare.formplayer.util.Constants;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -19,8 +20,14 @@ public interface VirtualDataInstanceRepo extends JpaRepository<SerializableDataI
 
     boolean existsByNamespacedKey(String key);
 
+    /**
+     * Delete up to {@code limit} instances created before the cutoff, so that purging a large
+     * backlog doesn't run as a single long statement
+     */
     @Modifying
     @Transactional
-    @Query("DELETE from SerializableDataInstance WHERE dateCreated < :cutoff")
-    int deleteSessionsOlderThan(@Param("cutoff") Instant cutoff);
+    @Query(value = "DELETE FROM " + Constants.POSTGRES_VIRTUAL_DATA_INSTANCE_TABLE_NAME + " WHERE id IN ("
+            + "SELECT id FROM " + Constants.POSTGRES_VIRTUAL_DATA_INSTANCE_TABLE_NAME
+            + " WHERE datecreated < :cutoff LIMIT :limit)", nativeQuery = true)
+    int deleteBatchOlderThan(@Param("cutoff") Instant cutoff, @Param("limit") int limit);
 }
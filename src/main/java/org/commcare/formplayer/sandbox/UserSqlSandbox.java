@@ -14,6 +14,7 @@ import org.javarosa.core.model.instance.FormInstance;
 import org.javarosa.core.model.instance.TreeElement;
 import org.javarosa.core.services.storage.IStorageUtilityIndexed;
 import org.commcare.formplayer.services.ConnectionHandler;
+import org.commcare.formplayer.sqlitedb.SQLiteDB;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -188,6 +189,24 @@ public class UserSqlSandbox extends UserSandbox implements ConnectionHandler {
         return handler.getConnection();
     }
 
+    /**
+     * Use the connection of the given handler for the same database, see {@link SQLiteDB#bindTo}
+     *
+     * @return false if the sandbox couldn't be bound to the handler
+     */
+    public boolean bindConnection(SQLiteDB current) {
+        return handler instanceof SQLiteDB && ((SQLiteDB)handler).bindTo(current);
+    }
+
+    /**
+     * Close the connection to the user's database, it is reopened when next needed
+     */
+    public void closeConnection() {
+        if (handler instanceof SQLiteDB) {
+            ((SQLiteDB)handler).closeConnection();
+        }
+    }
+
     @Trace
     public void writeSyncToken() {
         User user = getLoggedInUser();
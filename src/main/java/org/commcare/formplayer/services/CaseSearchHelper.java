@@ -1,10 +1,14 @@
 package org.commcare.formplayer.services;
 
 import com.google.common.collect.Multimap;
+import com.timgroup.statsd.StatsDClient;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.commcare.formplayer.engine.IndexedExternalTreeElement;
+import org.commcare.formplayer.util.Constants;
 import org.commcare.formplayer.util.SerializationUtil;
+import org.commcare.formplayer.util.SizeLimitedInputStream;
 import org.commcare.formplayer.web.client.WebClient;
 import org.javarosa.core.model.instance.ExternalDataInstance;
 import org.javarosa.core.model.instance.ExternalDataInstanceSource;
@@ -13,18 +17,18 @@ import org.javarosa.core.util.externalizable.ExtUtil;
 import org.javarosa.xml.util.InvalidStructureException;
 import org.javarosa.xml.util.UnfullfilledRequirementsException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheConfig;
+import org.springframework.cache.caffeine.CaffeineCache;
 import org.springframework.stereotype.Component;
 import org.xmlpull.v1.XmlPullParserException;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.nio.charset.StandardCharsets;
 
 @CacheConfig(cacheNames = "case_search")
 @Component
@@ -39,42 +43,108 @@ public class CaseSearchHelper {
     @Autowired
     private WebClient webClient;
 
+    @Autowired
+    private CaseSearchRedisCache caseSearchRedisCache;
+
+    @Autowired
+    private StatsDClient datadogStatsDClient;
+
+    @Value("${formplayer.caseSearch.maxResponseBytes:104857600}")
+    private long maxResponseBytes;
+
     private final Log log = LogFactory.getLog(CaseSearchHelper.class);
 
     public TreeElement getExternalRoot(String instanceId, ExternalDataInstanceSource source, boolean skipCache)
             throws UnfullfilledRequirementsException, XmlPullParserException, InvalidStructureException, IOException {
+        // index the results so per row lookups into them don't scan every case
+        return IndexedExternalTreeElement.index(loadExternalRoot(instanceId, source, skipCache));
+    }
+
+    private TreeElement loadExternalRoot(String instanceId, ExternalDataInstanceSource source, boolean skipCache)
+            throws UnfullfilledRequirementsException, XmlPullParserException, InvalidStructureException, IOException {
 
         Multimap<String, String> requestData = source.getRequestData();
         String url = source.getSourceUri();
 
         Cache cache = cacheManager.getCache("case_search");
+        String userKey = getUserCacheKey();
         String cacheKey = getCacheKey(source.getSourceUri(), requestData);
-        TreeElement cachedRoot = null;
+        byte[] cachedRoot = null;
         if (skipCache) {
             log.info("Skipping cache check for case search results");
         } else {
-            cachedRoot = cache.get(cacheKey, TreeElement.class);
+            cachedRoot = cache.get(cacheKey, byte[].class);
+            if (cachedRoot != null) {
+                recordLookup("l1");
+            } else {
+                cachedRoot = caseSearchRedisCache.get(userKey, cacheKey);
+                if (cachedRoot != null) {
+                    recordLookup("l2");
+                    cache.put(cacheKey, cachedRoot);
+                }
+            }
         }
         if (cachedRoot != null) {
             log.info(String.format("Using cached case search results for %s", url));
-            // Deep copy to avoid concurrency issues
-            TreeElement copyOfRoot = SerializationUtil.deserialize(ExtUtil.serialize(cachedRoot),
-                    TreeElement.class);
-            return copyOfRoot;
+            // results are cached serialized so each request inflates its own copy of the tree
+            return SerializationUtil.deserialize(cachedRoot, TreeElement.class);
         }
+        recordLookup("origin");
+        // Identical searches aren't coalesced while in flight. Results are per user, so only the
+        // same user's searches could be shared, and requests that search hold the node's lock for
+        // that user, so a repeated search waits for the first one and is answered from the cache.
+        return searchAndCache(instanceId, url, requestData, cache, userKey, cacheKey);
+    }
 
-        String responseString = webClient.postFormData(url, requestData);
+    /**
+     * Run the search against HQ and cache the results
+     */
+    private TreeElement searchAndCache(String instanceId, String url, Multimap<String, String> requestData,
+            Cache cache, String userKey, String cacheKey)
+            throws UnfullfilledRequirementsException, XmlPullParserException, InvalidStructureException, IOException {
+        TreeElement root;
+        try {
+            // parse the response as it arrives so it is never held in memory alongside the tree
+            root = webClient.postFormData(url, requestData, (body, contentLength) -> {
+                if (contentLength > maxResponseBytes) {
+                    throw new IOException(String.format(
+                            "Case search response of %d bytes exceeded the maximum size of %d bytes",
+                            contentLength, maxResponseBytes));
+                }
+                return ExternalDataInstance.parseExternalTree(
+                        new SizeLimitedInputStream(body, maxResponseBytes, "Case search response"), instanceId);
+            });
+        } catch (WebClient.ResponseReadException e) {
+            throw rethrowSearchFailure(e.getCause());
+        }
 
-        if (responseString != null) {
-            TreeElement root = ExternalDataInstance.parseExternalTree(
-                    new ByteArrayInputStream(responseString.getBytes(StandardCharsets.UTF_8)), instanceId);
-            if (root != null) {
-                cache.put(cacheKey, root);
-            }
-            return root;
+        if (root != null) {
+            byte[] serialized = ExtUtil.serialize(root);
+            cache.put(cacheKey, serialized);
+            caseSearchRedisCache.put(userKey, cacheKey, serialized);
         }
+        return root;
+    }
 
-        throw new IOException("No response from server for case search query");
+    /**
+     * Surface the failure to read the search response with its original exception type
+     */
+    private static IOException rethrowSearchFailure(Throwable cause)
+            throws UnfullfilledRequirementsException, XmlPullParserException, InvalidStructureException, IOException {
+        if (cause instanceof UnfullfilledRequirementsException) {
+            throw (UnfullfilledRequirementsException)cause;
+        } else if (cause instanceof XmlPullParserException) {
+            throw (XmlPullParserException)cause;
+        } else if (cause instanceof InvalidStructureException) {
+            throw (InvalidStructureException)cause;
+        } else if (cause instanceof IOException) {
+            throw (IOException)cause;
+        } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException)cause;
+        } else if (cause instanceof Error) {
+            throw (Error)cause;
+        }
+        return new IOException("Case search failed", cause);
     }
 
     public ExternalDataInstance getRemoteDataInstance(String instanceId, boolean useCaseTemplate, URL url,
@@ -97,6 +167,37 @@ public class CaseSearchHelper {
         String cacheKey = getCacheKey(source.getSourceUri(), source.getRequestData());
         Cache cache = cacheManager.getCache("case_search");
         cache.evict(cacheKey);
+        caseSearchRedisCache.evict(getUserCacheKey(), cacheKey);
+    }
+
+    /**
+     * Drop all of the current user's cached search results, e.g. after a sync or case claim
+     * changes what their searches would return
+     */
+    public void clearCacheForUser() {
+        String userKey = getUserCacheKey();
+        Cache cache = cacheManager.getCache("case_search");
+        if (cache instanceof CaffeineCache) {
+            ((CaffeineCache)cache).getNativeCache().asMap().keySet()
+                    .removeIf(key -> key.toString().startsWith(userKey + "_"));
+        } else {
+            cache.clear();
+        }
+        caseSearchRedisCache.clear(userKey);
+    }
+
+    private void recordLookup(String tier) {
+        datadogStatsDClient.increment(Constants.DATADOG_CASE_SEARCH_CACHE_LOOKUPS, "tier:" + tier);
+    }
+
+    private String getUserCacheKey() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(restoreFactory.getDomain());
+        builder.append("_").append(restoreFactory.getScrubbedUsername());
+        if (restoreFactory.getAsUsername() != null) {
+            builder.append("_").append(restoreFactory.getAsUsername());
+        }
+        return builder.toString();
     }
 
     private String getCacheKey(String url, Multimap<String, String> queryParams) throws InvalidStructureException {
@@ -108,11 +209,7 @@ public class CaseSearchHelper {
         }
 
         StringBuilder builder = new StringBuilder();
-        builder.append(restoreFactory.getDomain());
-        builder.append("_").append(restoreFactory.getScrubbedUsername());
-        if (restoreFactory.getAsUsername() != null) {
-            builder.append("_").append(restoreFactory.getAsUsername());
-        }
+        builder.append(getUserCacheKey());
         builder.append("_").append(uri);
         for (String key : queryParams.keySet()) {
             builder.append("_").append(key);
@@ -0,0 +1,132 @@
+package org.commcare.formplayer.services;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Shared second tier of the case search cache, so that a search repeated by a user on another
+ * node doesn't go back to HQ.
+ *
+ * Each user's results are kept in one Redis hash keyed by the normalized query, which lets all
+ * of a user's results be dropped at once. Payloads are the serialized result trees, deflated and
+ * prefixed with the time they were written so entries expire individually even though the hash
+ * only has a single TTL. Results larger than the configured limit are not shared.
+ *
+ * Redis errors are logged and treated as misses, the cache never fails a search.
+ */
+public class CaseSearchRedisCache {
+
+    private static final String KEY_PREFIX = "case_search:";
+
+    private final Log log = LogFactory.getLog(CaseSearchRedisCache.class);
+
+    private final RedisTemplate<String, byte[]> redisTemplate;
+    private final long ttlSeconds;
+    private final int maxPayloadBytes;
+
+    public CaseSearchRedisCache(RedisTemplate<String, byte[]> redisTemplate, long ttlSeconds,
+            int maxPayloadBytes) {
+        this.redisTemplate = redisTemplate;
+        this.ttlSeconds = ttlSeconds;
+        this.maxPayloadBytes = maxPayloadBytes;
+    }
+
+    /**
+     * @return the serialized results, or null if they are not cached
+     */
+    public byte[] get(String userKey, String queryKey) {
+        if (ttlSeconds <= 0) {
+            return null;
+        }
+        byte[] payload;
+        try {
+            payload = redisTemplate.<String, byte[]>opsForHash().get(KEY_PREFIX + userKey, queryKey);
+        } catch (DataAccessException e) {
+            log.warn("Unable to read case search results from Redis", e);
+            return null;
+        }
+        if (payload == null) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            long writtenAt = in.readLong();
+            if (System.currentTimeMillis() - writtenAt > TimeUnit.SECONDS.toMillis(ttlSeconds)) {
+                return null;
+            }
+            return IOUtils.toByteArray(new InflaterInputStream(in));
+        } catch (IOException e) {
+            log.warn("Unable to read cached case search results", e);
+            return null;
+        }
+    }
+
+    public void put(String userKey, String queryKey, byte[] serialized) {
+        if (ttlSeconds <= 0) {
+            return;
+        }
+        byte[] payload;
+        try {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            DataOutputStream header = new DataOutputStream(baos);
+            header.writeLong(System.currentTimeMillis());
+            header.flush();
+            try (DeflaterOutputStream out = new DeflaterOutputStream(baos, new Deflater(Deflater.BEST_SPEED))) {
+                out.write(serialized);
+            }
+            payload = baos.toByteArray();
+        } catch (IOException e) {
+            log.warn("Unable to compress case search results", e);
+            return;
+        }
+        if (payload.length > maxPayloadBytes) {
+            return;
+        }
+        try {
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public Object execute(RedisOperations operations) throws DataAccessException {
+                    operations.opsForHash().put(KEY_PREFIX + userKey, queryKey, payload);
+                    operations.expire(KEY_PREFIX + userKey, ttlSeconds, TimeUnit.SECONDS);
+                    return null;
+                }
+            });
+        } catch (DataAccessException e) {
+            log.warn("Unable to write case search results to Redis", e);
+        }
+    }
+
+    public void evict(String userKey, String queryKey) {
+        try {
+            redisTemplate.opsForHash().delete(KEY_PREFIX + userKey, queryKey);
+        } catch (DataAccessException e) {
+            log.warn("Unable to evict case search results from Redis", e);
+        }
+    }
+
+    /**
+     * Drop all of a user's cached results
+     */
+    public void clear(String userKey) {
+        try {
+            redisTemplate.delete(KEY_PREFIX + userKey);
+        } catch (DataAccessException e) {
+            log.warn("Unable to clear case search results from Redis", e);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package org.commcare.formplayer.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import org.commcare.formplayer.beans.menus.EntityDetailListResponse;
+import org.commcare.formplayer.session.MenuSession;
+import org.commcare.session.SessionFrame;
+import org.commcare.suite.model.StackFrameStep;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Node local cache of rendered persistent case tiles, inline case details and the case details
+ * shown from the case list.
+ *
+ * The persistent tile of the selected case is evaluated for every menu and form entry response
+ * while the case stays selected, and a case's detail tabs on every get_details request, although
+ * neither the case nor the detail usually change between requests. Keys include the navigation version, which covers the app build and the contents of
+ * the user's sandbox, so writing to the case or syncing moves requests onto new keys.
+ */
+public class DetailResponseCache {
+
+    private final Cache<Key, EntityDetailListResponse> cache;
+
+    public DetailResponseCache(long maxEntries, long expireAfterAccessSeconds) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterAccess(expireAfterAccessSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * @return the rendered detail for the key, or null if it is not cached
+     */
+    public EntityDetailListResponse get(Key key) {
+        return cache.getIfPresent(key);
+    }
+
+    public void put(Key key, EntityDetailListResponse response) {
+        cache.put(key, response);
+    }
+
+    /**
+     * Return the cached detail for the key or render and cache it.
+     *
+     * @param key         the key of the detail, or null if it can't be cached
+     * @param menuSession the session the detail is rendered in. Details rendered after the
+     *                    session evaluated here() aren't cached, a cached response wouldn't flag
+     *                    that the location is needed.
+     */
+    public EntityDetailListResponse getOrRender(Key key, MenuSession menuSession,
+            Supplier<EntityDetailListResponse> renderer) {
+        if (key == null) {
+            return renderer.get();
+        }
+        EntityDetailListResponse cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        EntityDetailListResponse response = renderer.get();
+        if (!menuSession.hereFunctionEvaluated()) {
+            cache.put(key, response);
+        }
+        return response;
+    }
+
+    public long size() {
+        cache.cleanUp();
+        return cache.estimatedSize();
+    }
+
+    /**
+     * Describe the steps of a session frame for use in a cache key
+     */
+    static String describeFrame(SessionFrame frame) {
+        StringBuilder builder = new StringBuilder();
+        for (StackFrameStep step : frame.getSteps()) {
+            builder.append(step.getType()).append(':')
+                    .append(step.getId()).append('=')
+                    .append(step.getValue()).append('\n');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Identifies a rendered detail
+     */
+    public static class Key {
+        private final String navigationVersion;
+        private final String detailId;
+        private final String frame;
+        private final String selection;
+        private final String locale;
+        private final boolean inline;
+        private final boolean fuzzySearch;
+
+        /**
+         * @param navigationVersion identifies the app build and the contents of the user's sandbox
+         * @param frame             the session frame the detail is rendered in, which holds the
+         *                          selected case and any other session data the detail refers to
+         * @param selection         the case on the case list the detail is rendered for, null for
+         *                          details of the case selected in the frame
+         */
+        public Key(String navigationVersion, String detailId, SessionFrame frame, String selection,
+                String locale, boolean inline, boolean fuzzySearch) {
+            this.navigationVersion = navigationVersion;
+            this.detailId = detailId;
+            this.frame = describeFrame(frame);
+            this.selection = selection;
+            this.locale = locale;
+            this.inline = inline;
+            this.fuzzySearch = fuzzySearch;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key)o;
+            return inline == key.inline
+                    && fuzzySearch == key.fuzzySearch
+                    && navigationVersion.equals(key.navigationVersion)
+                    && detailId.equals(key.detailId)
+                    && frame.equals(key.frame)
+                    && Objects.equals(selection, key.selection)
+                    && Objects.equals(locale, key.locale);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(navigationVersion, detailId, frame, selection, locale, inline, fuzzySearch);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package org.commcare.formplayer.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import org.commcare.formplayer.util.EntitySearchIndex;
+import org.commcare.session.SessionFrame;
+import org.commcare.suite.model.Detail;
+import org.javarosa.core.model.condition.EvaluationContext;
+import org.javarosa.core.model.instance.DataInstance;
+import org.javarosa.core.model.instance.ExternalDataInstance;
+import org.javarosa.core.model.instance.TreeReference;
+import org.javarosa.core.model.utils.DateUtils;
+import org.javarosa.core.util.externalizable.ExtUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Node local cache of sorted and filtered case lists.
+ *
+ * Each entry holds the positions of the matching rows, in display order, within the references
+ * produced by the case list's nodeset. Only the rows up to the furthest page requested so far
+ * are sorted, so an entry may hold a prefix of the list along with the total number of matches.
+ * The list's {@link EntitySearchIndex} is cached alongside so that successive searches only need
+ * to build the entities that can match.
+ *
+ * Keys include the sandbox version, so any restore or other write to the user's sandbox moves
+ * requests onto new keys and stale entries are left to expire. Sort and search fields may also
+ * refer to the session, such as the parent case selected in the frame, and to the current date,
+ * both of which are part of the key as well. Lists drawn from instances outside the sandbox
+ * aren't cached, see {@link #isSandboxReference}, nor are details that refer to now(), see
+ * {@link #refersToNow}.
+ * The cache is bounded by the approximate memory used by the entries and their keys.
+ */
+public class EntityListCache {
+
+    // rough per entry overhead of the key strings and cache bookkeeping
+    private static final int ENTRY_OVERHEAD_BYTES = 512;
+
+    private static final String CASEDB_REFERENCE = "jr://instance/casedb";
+    private static final String LEDGERDB_REFERENCE = "jr://instance/ledgerdb";
+    private static final String FIXTURE_REFERENCE = "jr://fixture/";
+
+    private static final Pattern NOW_FUNCTION = Pattern.compile("\\bnow\\s*\\(");
+
+    private final Cache<Key, Object> cache;
+
+    public EntityListCache(long maxWeightBytes, long expireAfterAccessSeconds) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeightBytes)
+                .weigher((Key key, Object value) -> (int)Math.min(Integer.MAX_VALUE,
+                        ENTRY_OVERHEAD_BYTES + key.getWeightBytes() + (value instanceof SortedRows
+                                ? (long)((SortedRows)value).rows.length * Integer.BYTES
+                                : ((EntitySearchIndex)value).getWeightBytes())))
+                .expireAfterAccess(expireAfterAccessSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * @return the ordered row positions for the key, or null if they are not cached
+     */
+    public SortedRows get(Key key) {
+        return (SortedRows)cache.getIfPresent(key);
+    }
+
+    /**
+     * @param rows  the positions of the first rows of the list in display order
+     * @param total the number of rows matching the list's search
+     */
+    public void put(Key key, int[] rows, int total) {
+        cache.put(key, new SortedRows(rows, total));
+    }
+
+    /**
+     * @param key a key from {@link Key#forSearchIndex}
+     * @return the search index over the list's references, or null if it is not cached
+     */
+    public EntitySearchIndex getSearchIndex(Key key) {
+        return (EntitySearchIndex)cache.getIfPresent(key);
+    }
+
+    public void putSearchIndex(Key key, EntitySearchIndex searchIndex) {
+        cache.put(key, searchIndex);
+    }
+
+    public long size() {
+        cache.cleanUp();
+        return cache.estimatedSize();
+    }
+
+    /**
+     * Whether rows built against the reference can be cached under the sandbox version. The
+     * contents of remote and virtual instances, such as case search results, are not part of the
+     * sandbox and their references are positional, so lists from two different searches with the
+     * same number of results would share a key.
+     */
+    public static boolean isSandboxReference(EvaluationContext ec, TreeReference reference) {
+        String instanceName = reference.getInstanceName();
+        if (instanceName == null) {
+            return true;
+        }
+        DataInstance instance = ec.getInstance(instanceName);
+        if (!(instance instanceof ExternalDataInstance)) {
+            return false;
+        }
+        String source = ((ExternalDataInstance)instance).getReference();
+        return source != null && (source.startsWith(CASEDB_REFERENCE)
+                || source.startsWith(LEDGERDB_REFERENCE) || source.startsWith(FIXTURE_REFERENCE));
+    }
+
+    /**
+     * Whether the detail refers to now(), which changes from one request to the next so lists
+     * sorted or searched on it can't be reused. The detail's expressions aren't exposed, so its
+     * serialized form is searched instead, which also counts display only fields.
+     */
+    public static boolean refersToNow(Detail detail) {
+        String serialized = new String(ExtUtil.serialize(detail), StandardCharsets.UTF_8);
+        return NOW_FUNCTION.matcher(serialized).find();
+    }
+
+    /**
+     * @return the current date as today() evaluates it, for use in keys
+     */
+    public static String today() {
+        return DateUtils.formatDate(new Date(), DateUtils.FORMAT_ISO8601);
+    }
+
+    /**
+     * Hash the references a case list was built from so lists with different nodeset results,
+     * for example because of a different parent selection, do not share entries
+     */
+    public static String hashReferences(List<TreeReference> references) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        for (TreeReference reference : references) {
+            digest.update(reference.toString().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte)'\n');
+        }
+        return Base64.getEncoder().encodeToString(digest.digest());
+    }
+
+    /**
+     * The leading rows of a sorted and filtered case list
+     */
+    public static class SortedRows {
+        private final int[] rows;
+        private final int total;
+
+        SortedRows(int[] rows, int total) {
+            this.rows = rows;
+            this.total = total;
+        }
+
+        public int[] getRows() {
+            return rows;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        /**
+         * @return true if the first {@code limit} rows of the list are held
+         */
+        public boolean covers(int limit) {
+            return rows.length >= Math.min(limit, total);
+        }
+    }
+
+    /**
+     * Identifies a sorted and filtered case list
+     */
+    public static class Key {
+        private final String sandboxVersion;
+        private final String detailId;
+        private final String referencesHash;
+        private final String frame;
+        private final String date;
+        private final int sortIndex;
+        private final String searchText;
+        private final boolean fuzzySearch;
+        private final String locale;
+        private final boolean searchIndex;
+
+        /**
+         * @param sandboxVersion identifies the app and the contents of the user's sandbox
+         * @param frame          the session frame the list is shown in
+         * @param date           the current date, see {@link EntityListCache#today()}
+         */
+        public Key(String sandboxVersion, String detailId, String referencesHash, SessionFrame frame,
+                String date, int sortIndex, String searchText, boolean fuzzySearch, String locale) {
+            this.sandboxVersion = sandboxVersion;
+            this.detailId = detailId;
+            this.referencesHash = referencesHash;
+            this.frame = DetailResponseCache.describeFrame(frame);
+            this.date = date;
+            this.sortIndex = sortIndex;
+            this.searchText = searchText == null ? "" : searchText;
+            this.fuzzySearch = fuzzySearch;
+            this.locale = locale;
+            this.searchIndex = false;
+        }
+
+        private Key(Key listKey) {
+            this.sandboxVersion = listKey.sandboxVersion;
+            this.detailId = listKey.detailId;
+            this.referencesHash = listKey.referencesHash;
+            this.frame = listKey.frame;
+            this.date = listKey.date;
+            this.sortIndex = 0;
+            this.searchText = "";
+            this.fuzzySearch = false;
+            this.locale = listKey.locale;
+            this.searchIndex = true;
+        }
+
+        /**
+         * @return the key for the search index of the list, which does not depend on the sort
+         * or the search itself
+         */
+        public static Key forSearchIndex(Key listKey) {
+            return new Key(listKey);
+        }
+
+        int getWeightBytes() {
+            return Character.BYTES * (frame.length() + searchText.length());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key)o;
+            return sortIndex == key.sortIndex
+                    && fuzzySearch == key.fuzzySearch
+                    && searchIndex == key.searchIndex
+                    && sandboxVersion.equals(key.sandboxVersion)
+                    && Objects.equals(detailId, key.detailId)
+                    && referencesHash.equals(key.referencesHash)
+                    && frame.equals(key.frame)
+                    && date.equals(key.date)
+                    && searchText.equals(key.searchText)
+                    && Objects.equals(locale, key.locale);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(sandboxVersion, detailId, referencesHash, frame, date, sortIndex, searchText,
+                    fuzzySearch, locale, searchIndex);
+        }
+    }
+}
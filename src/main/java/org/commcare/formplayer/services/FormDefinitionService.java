@@ -4,11 +4,12 @@ import org.commcare.formplayer.objects.SerializableFormDefinition;
 import org.commcare.formplayer.objects.SerializableFormSession;
 import org.commcare.formplayer.repo.FormDefinitionRepo;
 import org.commcare.formplayer.session.FormSession;
-import org.commcare.formplayer.util.serializer.FormDefStringSerializer;
+import org.commcare.formplayer.util.serializer.FormDefSerializer;
 import org.javarosa.core.log.WrappedException;
 import org.javarosa.core.model.FormDef;
 import org.javarosa.core.services.storage.IStorageUtilityIndexed;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheConfig;
@@ -36,6 +37,9 @@ public class FormDefinitionService {
     @Autowired
     private CacheManager caches;
 
+    @Value("${formplayer.formDefinition.compress:true}")
+    private boolean compressFormDefinitions;
+
     /**
      * Checks if an entry for this (appId, formXmlns, formVersion) combination already exists, and returns if so
      * Otherwise creates a new entry which entails serializing the formDef object (costly operation)
@@ -55,14 +59,8 @@ public class FormDefinitionService {
         Optional<SerializableFormDefinition> optFormDef = this.formDefinitionRepo
                 .findByAppIdAndFormXmlnsAndFormVersion(appId, formXmlns, formVersion);
         return optFormDef.orElseGet(() -> {
-            String serializedFormDef;
-            try {
-                serializedFormDef = FormDefStringSerializer.serialize(formDef);
-            } catch (IOException e) {
-                throw new WrappedException("Error serializing form def", e);
-            }
             SerializableFormDefinition newFormDef = new SerializableFormDefinition(
-                    appId, formXmlns, formVersion, serializedFormDef
+                    appId, formXmlns, formVersion, serialize(formDef)
             );
             return this.formDefinitionRepo.save(newFormDef);
         });
@@ -72,14 +70,16 @@ public class FormDefinitionService {
     private SerializableFormDefinition updateFormDefinition(
             SerializableFormDefinition formDefinition,
             FormDef formDef) {
-        String serializedFormDef;
+        formDefinition.setSerializedFormDef(serialize(formDef));
+        return formDefinitionRepo.save(formDefinition);
+    }
+
+    private byte[] serialize(FormDef formDef) {
         try {
-            serializedFormDef = FormDefStringSerializer.serialize(formDef);
+            return FormDefSerializer.serialize(formDef, compressFormDefinitions);
         } catch (IOException e) {
             throw new WrappedException("Error serializing form def", e);
         }
-        formDefinition.setSerializedFormDef(serializedFormDef);
-        return formDefinitionRepo.save(formDefinition);
     }
 
     /**
@@ -125,7 +125,7 @@ public class FormDefinitionService {
     private FormDef getFormDefFromSession(SerializableFormSession session) {
         SerializableFormDefinition formDefinition = session.getFormDefinition();
         try {
-            return FormDefStringSerializer.deserialize(formDefinition.getSerializedFormDef());
+            return FormDefSerializer.deserialize(formDefinition.getSerializedFormDef());
         } catch (Exception e) {
             String xmlns = formDefinition.getFormXmlns();
             FormDef formDef = getFormDefFromStorage(xmlns).orElseThrow(() -> {
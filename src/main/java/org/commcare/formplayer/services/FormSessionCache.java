@@ -0,0 +1,111 @@
+package org.commcare.formplayer.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.timgroup.statsd.StatsDClient;
+
+import org.commcare.formplayer.objects.SerializableFormSession;
+import org.commcare.formplayer.session.FormSession;
+import org.commcare.formplayer.util.Constants;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Node local cache of live form entry sessions, so that a request for a form that was in use on
+ * this node doesn't rebuild the session from its instance XML.
+ *
+ * Postgres remains the source of truth. A live session is only used when it was kept at the
+ * version of the persisted session the request loaded and against the same sandbox contents,
+ * otherwise it is dropped and the session is rebuilt. Sessions are taken out of the cache while a
+ * request uses them and are put back after they have been saved, so a session that failed part
+ * way through a request is never reused and no session is used by two requests at once.
+ */
+public class FormSessionCache {
+
+    private final Cache<String, Entry> cache;
+    private final StatsDClient datadogStatsDClient;
+
+    /**
+     * @param maxEntries the maximum number of live sessions, 0 disables the cache
+     */
+    public FormSessionCache(long maxEntries, long expireAfterAccessSeconds, StatsDClient datadogStatsDClient) {
+        this.cache = maxEntries <= 0 ? null : Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterAccess(expireAfterAccessSeconds, TimeUnit.SECONDS)
+                .build();
+        this.datadogStatsDClient = datadogStatsDClient;
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    /**
+     * Take the live session for a persisted session out of the cache
+     *
+     * @param sandboxVersion the current version of the user's sandbox
+     * @return the live session, or null if there is none or it is out of date
+     */
+    public FormSession take(SerializableFormSession session, String sandboxVersion) {
+        if (cache == null) {
+            return null;
+        }
+        Entry entry = cache.asMap().remove(session.getId());
+        String result;
+        if (entry == null) {
+            result = "miss";
+        } else if (entry.version == session.getVersion() && entry.sandboxVersion.equals(sandboxVersion)) {
+            result = "hit";
+        } else {
+            result = "stale";
+        }
+        datadogStatsDClient.increment(Constants.DATADOG_FORM_SESSION_CACHE_LOOKUPS, "result:" + result);
+        return "hit".equals(result) ? entry.formSession : null;
+    }
+
+    /**
+     * Keep a live session once it has been saved. Its database connections are closed here, so
+     * cached sessions don't hold any open, and are reopened when it is next used.
+     *
+     * @param savedSession   the persisted session returned by saving the live session
+     * @param sandboxVersion the current version of the user's sandbox
+     */
+    public void put(FormSession formSession, SerializableFormSession savedSession, String sandboxVersion) {
+        if (cache == null || sandboxVersion == null) {
+            return;
+        }
+        formSession.closeConnections();
+        cache.put(savedSession.getId(), new Entry(formSession, savedSession.getVersion(), sandboxVersion));
+        datadogStatsDClient.gauge(Constants.DATADOG_FORM_SESSION_CACHE_SIZE, cache.estimatedSize());
+    }
+
+    /**
+     * Drop the live session, e.g. because the session is being rebuilt from Postgres
+     */
+    public void evict(String sessionId) {
+        if (cache == null) {
+            return;
+        }
+        cache.invalidate(sessionId);
+    }
+
+    public long size() {
+        if (cache == null) {
+            return 0;
+        }
+        cache.cleanUp();
+        return cache.estimatedSize();
+    }
+
+    private static class Entry {
+        private final FormSession formSession;
+        private final int version;
+        private final String sandboxVersion;
+
+        private Entry(FormSession formSession, int version, String sandboxVersion) {
+            this.formSession = formSession;
+            this.version = version;
+            this.sandboxVersion = sandboxVersion;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package org.commcare.formplayer.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.timgroup.statsd.StatsDClient;
+
+import org.commcare.formplayer.util.Constants;
+import org.commcare.session.SessionFrame;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Node local cache of the HTML documents rendered for graph fields of case lists and details.
+ *
+ * A graph depends on its template in the app, the case it is evaluated against and whatever else
+ * its expressions read: the rest of the user's sandbox, the session, such as the selected parent
+ * case, and the current date. Entries are keyed on all of these, the sandbox through its version.
+ * A hit skips both evaluating the graph's series and building its HTML. Only graphs for cases in
+ * the user's sandbox are cached, rows of case search results and other external instances can't
+ * be identified by their reference. Graphs of details that refer to now() aren't cached either,
+ * see {@link EntityListCache#refersToNow}. The cache is bounded by the approximate memory used by
+ * the documents and their keys.
+ */
+public class GraphHtmlCache {
+
+    // rough per entry overhead of the key strings and cache bookkeeping
+    private static final int ENTRY_OVERHEAD_BYTES = 512;
+
+    private final Cache<Key, String> cache;
+    private final StatsDClient datadogStatsDClient;
+
+    public GraphHtmlCache(long maxWeightBytes, long expireAfterAccessSeconds, StatsDClient datadogStatsDClient) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeightBytes)
+                .weigher((Key key, String html) -> ENTRY_OVERHEAD_BYTES
+                        + (key.frame.length() + html.length()) * Character.BYTES)
+                .expireAfterAccess(expireAfterAccessSeconds, TimeUnit.SECONDS)
+                .build();
+        this.datadogStatsDClient = datadogStatsDClient;
+    }
+
+    /**
+     * @return the rendered graph, or null if it is not cached
+     */
+    public String get(Key key) {
+        String html = cache.getIfPresent(key);
+        datadogStatsDClient.increment(Constants.DATADOG_GRAPH_CACHE_LOOKUPS,
+                "result:" + (html == null ? "miss" : "hit"));
+        return html;
+    }
+
+    public void put(Key key, String html) {
+        cache.put(key, html);
+        datadogStatsDClient.gauge(Constants.DATADOG_GRAPH_CACHE_SIZE, cache.estimatedSize());
+    }
+
+    public long size() {
+        cache.cleanUp();
+        return cache.estimatedSize();
+    }
+
+    /**
+     * Identifies a graph field evaluated for one case
+     */
+    public static class Key {
+        private final String sandboxVersion;
+        private final String detailId;
+        private final int column;
+        private final String reference;
+        private final String frame;
+        private final String date;
+        private final String locale;
+
+        /**
+         * @param sandboxVersion identifies the app and the contents of the user's sandbox
+         * @param reference      the case the graph is evaluated against
+         * @param frame          the session frame the graph is shown in
+         * @param date           the current date, see {@link EntityListCache#today()}
+         */
+        public Key(String sandboxVersion, String detailId, int column, String reference, SessionFrame frame,
+                String date, String locale) {
+            this.sandboxVersion = sandboxVersion;
+            this.detailId = detailId;
+            this.column = column;
+            this.reference = reference;
+            this.frame = DetailResponseCache.describeFrame(frame);
+            this.date = date;
+            this.locale = locale;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key)o;
+            return column == key.column
+                    && sandboxVersion.equals(key.sandboxVersion)
+                    && Objects.equals(detailId, key.detailId)
+                    && reference.equals(key.reference)
+                    && frame.equals(key.frame)
+                    && date.equals(key.date)
+                    && Objects.equals(locale, key.locale);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(sandboxVersion, detailId, column, reference, frame, date, locale);
+        }
+    }
+}
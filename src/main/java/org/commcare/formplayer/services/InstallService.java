@@ -1,8 +1,10 @@
 package org.commcare.formplayer.services;
 
+import org.commcare.formplayer.engine.CczStore;
 import org.commcare.formplayer.engine.FormplayerConfigEngine;
 import org.commcare.formplayer.exceptions.UnresolvedResourceRuntimeException;
 import org.commcare.formplayer.installers.FormplayerInstallerFactory;
+import org.commcare.formplayer.installers.XFormPreparser;
 
 import datadog.trace.api.Trace;
 import org.apache.commons.logging.Log;
@@ -10,6 +12,7 @@ import org.apache.commons.logging.LogFactory;
 import org.commcare.modern.reference.ArchiveFileRoot;
 import org.commcare.modern.util.Pair;
 import org.commcare.resources.model.UnresolvedResourceException;
+import org.javarosa.core.model.FormDef;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Scope;
 import org.springframework.context.annotation.ScopedProxyMode;
@@ -44,6 +47,15 @@ public class InstallService {
     @Autowired
     private RestTemplate restTemplate;
 
+    @Autowired
+    private CczStore cczStore;
+
+    @Autowired
+    private XFormPreparser xFormPreparser;
+
+    @Autowired
+    private FormDefinitionService formDefinitionService;
+
     private final Log log = LogFactory.getLog(InstallService.class);
 
     CategoryTimingHelper.RecordingTimer installTimer;
@@ -62,7 +74,8 @@ public class InstallService {
                 // Try reusing old install, fail quietly
                 try {
                     FormplayerConfigEngine engine = new FormplayerConfigEngine(
-                            storageFactory, formplayerInstallerFactory, formplayerArchiveFileRoot, restTemplate
+                            storageFactory, formplayerInstallerFactory, formplayerArchiveFileRoot, restTemplate,
+                            cczStore, xFormPreparser
                     );
                     engine.initEnvironment();
                     return new Pair<>(engine, false);
@@ -81,7 +94,8 @@ public class InstallService {
                 throw new RuntimeException("Error instantiating folder " + sqliteDB.getDatabaseFileForDebugPurposes());
             }
             FormplayerConfigEngine engine = new FormplayerConfigEngine(
-                    storageFactory, formplayerInstallerFactory, formplayerArchiveFileRoot, restTemplate
+                    storageFactory, formplayerInstallerFactory, formplayerArchiveFileRoot, restTemplate,
+                    cczStore, xFormPreparser
             );
             if (reference.endsWith(".ccpr")) {
                 engine.initFromLocalFileResource(reference);
@@ -89,6 +103,9 @@ public class InstallService {
                 engine.initFromArchive(reference, preview);
             }
             engine.initEnvironment();
+            if (!preview) {
+                storeFormDefinitions(engine);
+            }
             installTimer.end();
             installTimer.record();
             return new Pair<>(engine, newInstall);
@@ -100,6 +117,23 @@ public class InstallService {
         }
     }
 
+    /**
+     * Serialize the forms parsed during install so that starting a form only has to load the
+     * stored definition. Failures are not fatal since definitions are also created on demand.
+     */
+    private void storeFormDefinitions(FormplayerConfigEngine engine) {
+        String appVersion = "" + engine.getPlatform().getCurrentProfile().getVersion();
+        for (FormDef formDef : engine.getInstalledForms()) {
+            String xmlns = formDef.getMainInstance().schema;
+            try {
+                formDefinitionService.getOrCreateFormDefinition(
+                        storageFactory.getAppId(), xmlns, appVersion, formDef);
+            } catch (Exception e) {
+                log.warn("Unable to store form definition for " + xmlns, e);
+            }
+        }
+    }
+
     public SimpleTimer getInstallTimer() {
         return installTimer;
     }
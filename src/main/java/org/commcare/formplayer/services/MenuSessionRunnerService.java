@@ -26,6 +26,7 @@ import org.commcare.formplayer.session.FormSession;
 import org.commcare.formplayer.session.MenuSession;
 import org.commcare.formplayer.util.Constants;
 import org.commcare.formplayer.util.FormplayerDatadog;
+import org.commcare.formplayer.util.ParallelEntityEvaluator;
 import org.commcare.formplayer.util.FormplayerHereFunctionHandler;
 import org.commcare.formplayer.web.client.WebClient;
 import org.commcare.modern.session.SessionWrapper;
@@ -34,6 +35,7 @@ import org.commcare.session.StackObserver;
 import org.commcare.suite.model.Detail;
 import org.commcare.suite.model.Endpoint;
 import org.commcare.suite.model.EntityDatum;
+import org.commcare.suite.model.SessionDatum;
 import org.commcare.suite.model.StackFrameStep;
 import org.commcare.suite.model.StackOperation;
 import org.commcare.suite.model.Text;
@@ -52,6 +54,7 @@ import org.javarosa.core.model.instance.TreeReference;
 import org.javarosa.xml.util.InvalidStructureException;
 import org.javarosa.xml.util.UnfullfilledRequirementsException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.ValueOperations;
 import org.springframework.lang.Nullable;
@@ -119,6 +122,24 @@ public class MenuSessionRunnerService {
     @Autowired
     protected NewFormResponseFactory newFormResponseFactory;
 
+    @Autowired
+    private EntityListCache entityListCache;
+
+    @Autowired
+    private ParallelEntityEvaluator parallelEntityEvaluator;
+
+    @Autowired
+    private GraphHtmlCache graphHtmlCache;
+
+    @Autowired
+    private NavigationSnapshotCache navigationSnapshotCache;
+
+    @Autowired
+    private DetailResponseCache detailResponseCache;
+
+    @Value("${formplayer.caseList.sortNextPage:false}")
+    private boolean sortNextPage;
+
     @Resource(name = "redisVolatilityDict")
     private ValueOperations<String, FormVolatilityRecord> volatilityCache;
 
@@ -177,7 +198,12 @@ public class MenuSessionRunnerService {
                     searchText,
                     sortIndex,
                     storageFactory.getPropertyManager().isFuzzySearchEnabled(),
-                    casesPerPage
+                    casesPerPage,
+                    entityListCache,
+                    graphHtmlCache,
+                    getEntityListVersion(menuSession),
+                    parallelEntityEvaluator,
+                    sortNextPage
             );
             datadog.addRequestScopedTag(Constants.MODULE_TAG, "case_list");
             Sentry.setTag(Constants.MODULE_TAG, "case_list");
@@ -210,6 +236,25 @@ public class MenuSessionRunnerService {
         return menuResponseBean;
     }
 
+    /**
+     * Identifies everything outside the case list request that its sorting and filtering depends
+     * on, or null if the result should not be cached. Navigation state and case details depend
+     * on the same things so this also versions navigation snapshots and rendered details.
+     */
+    private String getEntityListVersion(MenuSession menuSession) {
+        if (menuSession.isPreview()) {
+            // preview apps change without a new version
+            return null;
+        }
+        String sandboxVersion = restoreFactory.getSandboxVersion();
+        if (sandboxVersion == null) {
+            return null;
+        }
+        // here() is relative to the browser location
+        return String.join("|", sandboxVersion, menuSession.getAppId(), menuSession.getAppVersion(),
+                String.valueOf(menuSession.getCurrentBrowserLocation()));
+    }
+
     private void addHereFuncHandler(EntityScreen nextScreen, MenuSession menuSession) {
         EvaluationContext ec = nextScreen.getEvalContext();
         ec.addFunctionHandler(
@@ -264,10 +309,16 @@ public class MenuSessionRunnerService {
             );
         }
         NotificationMessage notificationMessage = null;
-        for (int i = 1; i <= selections.length; i++) {
+        String navigationVersion = getEntityListVersion(menuSession);
+        int replayed = resumeFromSnapshot(menuSession, navigationVersion, selections, detailSelection != null,
+                forceManualAction, queryData, selectedValues);
+        // a remote request during replay has side effects so later state isn't reused
+        boolean snapshotsEnabled = navigationVersion != null;
+        boolean[] confirmedSelections = restoreFactory.getConfirmedSelectionPrefixes(selections);
+        for (int i = replayed + 1; i <= selections.length; i++) {
             String selection = selections[i - 1];
 
-            boolean inputValidated = restoreFactory.isConfirmedSelection(Arrays.copyOfRange(selections, 0, i));
+            boolean inputValidated = confirmedSelections[i - 1];
             boolean isDetailScreen = detailSelection != null;
 
             // minimal entity screens are only safe if there will be no further selection
@@ -298,6 +349,7 @@ public class MenuSessionRunnerService {
                 if (nextInput != NO_SELECTION) {
                     // still more nav to do so rebuild the session and continue
                     executeAndRebuildSession(menuSession);
+                    snapshotsEnabled = false;
                 } else {
                     // no more nav, we're done
                     BaseResponseBean postSyncResponse = resolveFormGetNext(menuSession);
@@ -315,6 +367,13 @@ public class MenuSessionRunnerService {
                     menuSession.addSelection(selection);
                 }
             }
+            if (snapshotsEnabled && i < selections.length && menuSession.getSmartLinkRedirect() == null) {
+                navigationSnapshotCache.put(
+                        new NavigationSnapshotCache.Key(navigationVersion, menuSession.getLocale(),
+                                Arrays.copyOfRange(selections, 0, i + 1), detailSelection != null,
+                                forceManualAction, queryData, selectedValues),
+                        menuSession.createSnapshot());
+            }
         }
 
         BaseResponseBean nextResponse = getNextMenu(
@@ -344,6 +403,34 @@ public class MenuSessionRunnerService {
         }
     }
 
+    /**
+     * Restore the state reached by an earlier request that replayed the same leading selections
+     *
+     * @return the number of selections that no longer need to be replayed
+     */
+    private int resumeFromSnapshot(MenuSession menuSession, String navigationVersion, String[] selections,
+            boolean isDetailScreen, boolean forceManualAction, QueryData queryData, String[] selectedValues)
+            throws Exception {
+        if (navigationVersion == null) {
+            return 0;
+        }
+        // snapshots are keyed on the selection after the replayed ones, so the last selection
+        // is always replayed
+        for (int replayed = selections.length - 1; replayed > 0; replayed--) {
+            NavigationSnapshotCache.Snapshot snapshot = navigationSnapshotCache.get(
+                    new NavigationSnapshotCache.Key(navigationVersion, menuSession.getLocale(),
+                            Arrays.copyOfRange(selections, 0, replayed + 1), isDetailScreen, forceManualAction,
+                            queryData, selectedValues));
+            if (snapshot != null) {
+                log.info(String.format("Resuming navigation after %d of %d selections", replayed,
+                        selections.length));
+                menuSession.restoreSnapshot(snapshot);
+                return replayed;
+            }
+        }
+        return 0;
+    }
+
     /**
      * Apply an actions to the menu session that do not require user input e.g.
      * - auto launch
@@ -492,6 +579,8 @@ public class MenuSessionRunnerService {
         try {
             shouldSync = webClient.caseClaimPost(screen.getUrl(), screen.getQueryParams());
             screen.updateSessionOnSuccess();
+            // the claim changes the results of the user's searches
+            caseSearchHelper.clearCacheForUser();
         } catch (RestClientResponseException e) {
             throw new SyncRestoreException(
                     String.format("Case claim failed. Message: %s", e.getResponseBodyAsString()), e);
@@ -603,11 +692,11 @@ public class MenuSessionRunnerService {
         return reference;
     }
 
-    public static EntityDetailListResponse getInlineDetail(MenuSession menuSession, boolean isFuzzySearchEnabled) {
+    public EntityDetailListResponse getInlineDetail(MenuSession menuSession, boolean isFuzzySearchEnabled) {
         return getDetail(menuSession, true, isFuzzySearchEnabled);
     }
 
-    public static EntityDetailResponse getPersistentDetail(MenuSession menuSession, boolean isFuzzySearchEnabled) {
+    public EntityDetailResponse getPersistentDetail(MenuSession menuSession, boolean isFuzzySearchEnabled) {
         EntityDetailListResponse detailListResponse = getDetail(menuSession, false, isFuzzySearchEnabled);
         if (detailListResponse == null) {
             return null;
@@ -619,7 +708,11 @@ public class MenuSessionRunnerService {
         return detailList[0];
     }
 
-    private static EntityDetailListResponse getDetail(MenuSession menuSession, boolean inline,
+    /**
+     * Render the detail of the selected case, reusing the rendering of an earlier request when
+     * neither the session nor the user's sandbox has changed since
+     */
+    private EntityDetailListResponse getDetail(MenuSession menuSession, boolean inline,
             boolean isFuzzySearchEnabled) {
         SessionWrapper session = menuSession.getSessionWrapper();
         StackFrameStep stepToFrame = getStepToFrame(session);
@@ -639,6 +732,42 @@ public class MenuSessionRunnerService {
         if (detailId == null) {
             return null;
         }
+
+        DetailResponseCache.Key key = null;
+        String navigationVersion = getEntityListVersion(menuSession);
+        if (navigationVersion != null) {
+            key = new DetailResponseCache.Key(navigationVersion, detailId, session.getFrame(), null,
+                    menuSession.getLocale(), inline, isFuzzySearchEnabled);
+        }
+        return detailResponseCache.getOrRender(key, menuSession,
+                () -> renderDetail(menuSession, entityDatum, detailId, inline, isFuzzySearchEnabled));
+    }
+
+    /**
+     * Render the long detail of a case on the case list, reusing the rendering of an earlier
+     * request when neither the session nor the user's sandbox has changed since
+     *
+     * @param detailSelection the id of the case the detail is shown for
+     */
+    public EntityDetailListResponse getCaseListDetail(MenuSession menuSession, EntityScreen entityScreen,
+            TreeReference reference, String detailSelection, boolean isFuzzySearchEnabled) {
+        SessionWrapper session = menuSession.getSessionWrapper();
+        SessionDatum datum = session.getNeededDatum();
+        DetailResponseCache.Key key = null;
+        String navigationVersion = getEntityListVersion(menuSession);
+        if (navigationVersion != null && datum instanceof EntityDatum
+                && ((EntityDatum)datum).getLongDetail() != null) {
+            key = new DetailResponseCache.Key(navigationVersion, ((EntityDatum)datum).getLongDetail(),
+                    session.getFrame(), detailSelection, menuSession.getLocale(), false, isFuzzySearchEnabled);
+        }
+        return detailResponseCache.getOrRender(key, menuSession,
+                () -> new EntityDetailListResponse(entityScreen, menuSession.getEvalContextWithHereFuncHandler(),
+                        reference, isFuzzySearchEnabled));
+    }
+
+    private static EntityDetailListResponse renderDetail(MenuSession menuSession, EntityDatum entityDatum,
+            String detailId, boolean inline, boolean isFuzzySearchEnabled) {
+        SessionWrapper session = menuSession.getSessionWrapper();
         Detail persistentDetail = session.getDetail(detailId);
         TreeReference reference = getReference(session, entityDatum);
 
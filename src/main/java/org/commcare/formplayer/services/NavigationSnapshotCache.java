@@ -0,0 +1,169 @@
+package org.commcare.formplayer.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Node local cache of menu session state part way through replaying a request's selections.
+ *
+ * Every menu request replays the user's selections from the root of the app. Storing the state
+ * reached after each selection lets the next request, which usually shares all but its last
+ * selection with the previous one, resume from the longest cached prefix and only replay the
+ * selections that are new.
+ *
+ * Keys include the navigation version, which covers the app build and the contents of the
+ * user's sandbox, so a sync or form submission moves requests onto new keys. Entries expire a
+ * fixed time after they are written so remote state captured in them, such as case search
+ * results, is not reused indefinitely.
+ */
+public class NavigationSnapshotCache {
+
+    // rough per entry overhead of the key and the breadcrumb and selection strings
+    private static final int ENTRY_OVERHEAD_BYTES = 1024;
+
+    private final Cache<Key, Snapshot> cache;
+
+    public NavigationSnapshotCache(long maxWeightBytes, long expireAfterWriteSeconds) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeightBytes)
+                .weigher((Key key, Snapshot snapshot) -> ENTRY_OVERHEAD_BYTES + snapshot.session.length)
+                .expireAfterWrite(expireAfterWriteSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * @return the state reached after replaying the key's selections, or null if it is not cached
+     */
+    public Snapshot get(Key key) {
+        return cache.getIfPresent(key);
+    }
+
+    public void put(Key key, Snapshot snapshot) {
+        cache.put(key, snapshot);
+    }
+
+    public long size() {
+        cache.cleanUp();
+        return cache.estimatedSize();
+    }
+
+    /**
+     * Menu session state after a number of selections have been replayed
+     */
+    public static class Snapshot {
+        private final byte[] session;
+        private final String[] breadcrumbs;
+        private final String[] selections;
+        private final boolean hereFunctionEvaluated;
+
+        /**
+         * @param session the serialized CommCare session
+         */
+        public Snapshot(byte[] session, String[] breadcrumbs, String[] selections,
+                boolean hereFunctionEvaluated) {
+            this.session = session;
+            this.breadcrumbs = breadcrumbs;
+            this.selections = selections;
+            this.hereFunctionEvaluated = hereFunctionEvaluated;
+        }
+
+        public byte[] getSession() {
+            return session;
+        }
+
+        public String[] getBreadcrumbs() {
+            return breadcrumbs;
+        }
+
+        public String[] getSelections() {
+            return selections;
+        }
+
+        public boolean isHereFunctionEvaluated() {
+            return hereFunctionEvaluated;
+        }
+    }
+
+    /**
+     * Identifies the state reached by replaying a prefix of a request's selections. Along with
+     * the selections themselves this covers every request parameter that affects the replay.
+     */
+    public static class Key {
+        private final String navigationVersion;
+        private final String locale;
+        private final List<String> selections;
+        private final boolean detailScreen;
+        private final boolean forceManualAction;
+        private final String queryData;
+        private final List<String> selectedValues;
+
+        /**
+         * @param navigationVersion identifies the app build and the contents of the user's sandbox
+         * @param selections        the selections replayed, followed by the selection after them
+         *                          since auto launch depends on the next selection
+         */
+        public Key(String navigationVersion, String locale, String[] selections, boolean detailScreen,
+                boolean forceManualAction, Map<String, Object> queryData, String[] selectedValues) {
+            this.navigationVersion = navigationVersion;
+            this.locale = locale;
+            this.selections = Arrays.asList(selections);
+            this.detailScreen = detailScreen;
+            this.forceManualAction = forceManualAction;
+            this.queryData = queryData == null ? null : canonicalize(queryData);
+            this.selectedValues = selectedValues == null ? null : Arrays.asList(selectedValues.clone());
+        }
+
+        /**
+         * Render nested maps with their keys in a stable order so equal query data always
+         * produces the same string
+         */
+        private static String canonicalize(Object value) {
+            if (value instanceof Map) {
+                Map<String, String> sorted = new TreeMap<>();
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>)value).entrySet()) {
+                    sorted.put(String.valueOf(entry.getKey()), canonicalize(entry.getValue()));
+                }
+                return sorted.toString();
+            } else if (value instanceof Collection) {
+                StringBuilder builder = new StringBuilder("[");
+                for (Object item : (Collection<?>)value) {
+                    builder.append(canonicalize(item)).append(',');
+                }
+                return builder.append(']').toString();
+            }
+            return String.valueOf(value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key)o;
+            return detailScreen == key.detailScreen
+                    && forceManualAction == key.forceManualAction
+                    && navigationVersion.equals(key.navigationVersion)
+                    && Objects.equals(locale, key.locale)
+                    && selections.equals(key.selections)
+                    && Objects.equals(queryData, key.queryData)
+                    && Objects.equals(selectedValues, key.selectedValues);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(navigationVersion, locale, selections, detailScreen, forceManualAction,
+                    queryData, selectedValues);
+        }
+    }
+}
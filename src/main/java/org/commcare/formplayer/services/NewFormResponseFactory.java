@@ -54,6 +54,9 @@ public class NewFormResponseFactory {
     @Autowired
     private VirtualDataInstanceService virtualDataInstanceService;
 
+    @Autowired
+    private FormSessionCache formSessionCache;
+
     public NewFormResponse getResponse(NewSessionRequestBean bean, String postUrl) throws Exception {
 
         String formXml = null;
@@ -124,9 +127,10 @@ public class NewFormResponseFactory {
         String formTreeJson = formEntrySession.getFormTree().toString();
 
         SerializableFormSession serializedSession = formEntrySession.serialize();
-        formSessionService.saveSession(serializedSession);
+        SerializableFormSession savedSession = formSessionService.saveSession(serializedSession);
         // cannot cache until session is saved
         formDefinitionService.cacheFormDef(formEntrySession);
+        formSessionCache.put(formEntrySession, savedSession, restoreFactory.getSandboxVersion());
         NewFormResponse response = new NewFormResponse(
                 formTreeJson, formEntrySession.getLanguages(), serializedSession.getTitle(),
                 serializedSession.getId(), serializedSession.getVersion(),
@@ -155,6 +159,8 @@ public class NewFormResponseFactory {
     }
 
     public FormSession getFormSession(SerializableFormSession serializableFormSession, CommCareSession commCareSession) throws Exception {
+        // the rebuilt session shares its form definition with any live one
+        formSessionCache.evict(serializableFormSession.getId());
         FormplayerRemoteInstanceFetcher formplayerRemoteInstanceFetcher =
                 new FormplayerRemoteInstanceFetcher(caseSearchHelper, virtualDataInstanceService);
         return new FormSession(serializableFormSession,
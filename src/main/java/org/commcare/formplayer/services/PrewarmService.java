@@ -0,0 +1,226 @@
+package org.commcare.formplayer.services;
+
+import com.timgroup.statsd.StatsDClient;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.commcare.formplayer.beans.PrewarmStatusBean;
+import org.commcare.formplayer.engine.CczDownloader;
+import org.commcare.formplayer.engine.CczStore;
+import org.commcare.formplayer.installers.XFormPreparser;
+import org.commcare.formplayer.session.MenuSession;
+import org.commcare.formplayer.util.Constants;
+import org.commcare.formplayer.util.SessionUtils;
+import org.javarosa.core.model.FormDef;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipFile;
+
+import javax.annotation.PreDestroy;
+
+/**
+ * Prewarms the node-local caches for a newly released app build so that the first user to open
+ * it on this node does not pay for the download and form parsing.
+ *
+ * Prewarming downloads the build into the {@link CczStore} and parses every form, storing the
+ * serialized FormDefs through the {@link FormDefinitionService}. The build is downloaded from the
+ * same URL and keyed by the same app id as a live install of it. Since that URL always serves the
+ * latest version, live installs still download it and use the prewarmed archive and forms only
+ * when they turn out to be the same build. Requesting a prewarm again, e.g. after another release,
+ * prewarms the latest version again.
+ *
+ * Requested builds are recorded in Redis with the time they were requested so that every node
+ * picks them up, and any later request for them, through {@link #prewarmRequestedBuilds()}. Work is done
+ * one build at a time on a single low priority thread, pausing between forms, so that it does not
+ * compete with live traffic.
+ */
+@Service
+public class PrewarmService {
+
+    private static final String REQUESTED_BUILDS_KEY = "formplayer:prewarm:builds";
+    private static final String KEY_SEPARATOR = "|";
+
+    private final Log log = LogFactory.getLog(PrewarmService.class);
+
+    @Autowired
+    private CczStore cczStore;
+
+    @Autowired
+    private XFormPreparser xFormPreparser;
+
+    @Autowired
+    private FormDefinitionService formDefinitionService;
+
+    @Autowired
+    private RestTemplate restTemplate;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private StatsDClient datadogStatsDClient;
+
+    @Value("${commcarehq.host}")
+    private String host;
+
+    @Value("${formplayer.prewarm.formPauseMs:50}")
+    private long formPauseMs;
+
+    @Value("${formplayer.prewarm.maxAgeHours:24}")
+    private long maxAgeHours;
+
+    private final Map<String, PrewarmStatusBean> statuses = new ConcurrentHashMap<>();
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "build-prewarm");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Prewarm the build on this node and record the request so other nodes prewarm it too
+     *
+     * @param buildId id of the build to prewarm, or null for the latest saved version of the app
+     */
+    public PrewarmStatusBean prewarm(String domain, String appId, String buildId) {
+        String key = getKey(domain, appId, buildId);
+        long requestedAt = System.currentTimeMillis();
+        redisTemplate.opsForHash().put(REQUESTED_BUILDS_KEY, key, String.valueOf(requestedAt));
+        return schedule(domain, appId, buildId, requestedAt);
+    }
+
+    /**
+     * @return the progress of prewarming the build on this node
+     */
+    public PrewarmStatusBean getStatus(String domain, String appId, String buildId) {
+        PrewarmStatusBean status = statuses.get(getKey(domain, appId, buildId));
+        if (status == null) {
+            status = new PrewarmStatusBean(domain, appId, buildId);
+            status.setState(PrewarmStatusBean.State.unknown);
+        }
+        return status;
+    }
+
+    /**
+     * Pick up builds requested, or requested again, through other nodes and forget requests that
+     * have expired
+     */
+    @Scheduled(fixedDelayString = "${formplayer.prewarm.pollIntervalMs:60000}")
+    public void prewarmRequestedBuilds() {
+        long cutoff = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(maxAgeHours);
+        Map<Object, Object> requested = redisTemplate.opsForHash().entries(REQUESTED_BUILDS_KEY);
+        for (Map.Entry<Object, Object> entry : requested.entrySet()) {
+            String key = (String)entry.getKey();
+            String[] parts = key.split("\\" + KEY_SEPARATOR, -1);
+            String domain = parts[0];
+            String appId = parts[1];
+            String buildId = parts[2].isEmpty() ? null : parts[2];
+            long requestedAt = Long.parseLong((String)entry.getValue());
+            if (requestedAt < cutoff) {
+                redisTemplate.opsForHash().delete(REQUESTED_BUILDS_KEY, key);
+                statuses.remove(key);
+                continue;
+            }
+            schedule(domain, appId, buildId, requestedAt);
+        }
+    }
+
+    /**
+     * Prewarm the build unless it is already being prewarmed or was prewarmed for this request.
+     * Builds that failed are retried.
+     */
+    private PrewarmStatusBean schedule(String domain, String appId, String buildId, long requestedAt) {
+        PrewarmStatusBean newStatus = new PrewarmStatusBean(domain, appId, buildId);
+        newStatus.setRequestedAt(requestedAt);
+        PrewarmStatusBean status = statuses.compute(getKey(domain, appId, buildId), (key, existing) -> {
+            if (existing == null || existing.getState() == PrewarmStatusBean.State.failed
+                    || (existing.isFinished() && existing.getRequestedAt() < requestedAt)) {
+                return newStatus;
+            }
+            // a request made while the build is being prewarmed is picked up once it finishes
+            return existing;
+        });
+        if (status == newStatus) {
+            executor.submit(() -> run(newStatus));
+        }
+        return status;
+    }
+
+    private void run(PrewarmStatusBean status) {
+        long start = System.currentTimeMillis();
+        String installAppId = getInstallAppId(status.getAppId(), status.getBuildId());
+        try {
+            String url = getDownloadUrl(status.getDomain(), installAppId);
+            CczDownloader downloader = new CczDownloader(restTemplate);
+            status.setState(PrewarmStatusBean.State.downloading);
+            try (CczStore.Lease lease = cczStore.acquireForPrewarm(
+                    installAppId, url, () -> downloader.download(url))) {
+                File archive = new File(lease.getPath());
+                String version = CczStore.verify(archive);
+                status.setState(PrewarmStatusBean.State.parsing);
+                try (ZipFile zip = new ZipFile(archive)) {
+                    List<String> formEntries = xFormPreparser.findFormEntries(zip);
+                    status.setFormsTotal(formEntries.size());
+                    for (String entryName : formEntries) {
+                        FormDef formDef = xFormPreparser.parseEntry(zip, entryName);
+                        formDefinitionService.getOrCreateFormDefinition(
+                                installAppId, formDef.getMainInstance().schema, version, formDef);
+                        status.setFormsProcessed(status.getFormsProcessed() + 1);
+                        Thread.sleep(formPauseMs);
+                    }
+                }
+            }
+            status.setState(PrewarmStatusBean.State.complete);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            status.setError("Interrupted");
+            status.setState(PrewarmStatusBean.State.failed);
+        } catch (Exception e) {
+            log.error(String.format("Error prewarming app %s build %s",
+                    status.getAppId(), status.getBuildId()), e);
+            status.setError(e.getMessage());
+            status.setState(PrewarmStatusBean.State.failed);
+        }
+        long elapsed = System.currentTimeMillis() - start;
+        log.info(String.format("Prewarm of app %s build %s finished as %s in %d ms",
+                status.getAppId(), status.getBuildId(), status.getState(), elapsed));
+        datadogStatsDClient.recordExecutionTime(
+                Constants.DATADOG_PREWARM_BUILDS, elapsed, "state:" + status.getState());
+    }
+
+    /**
+     * Installs identify the app by the id in the download URL, so key caches the same way
+     */
+    private static String getInstallAppId(String appId, String buildId) {
+        return buildId != null ? buildId : appId;
+    }
+
+    /**
+     * @return the URL a live install of the app downloads it from, see {@link MenuSession}
+     */
+    private String getDownloadUrl(String domain, String installAppId) {
+        return SessionUtils.resolveInstallReference(installAppId, host, domain);
+    }
+
+    private static String getKey(String domain, String appId, String buildId) {
+        return domain + KEY_SEPARATOR + appId + KEY_SEPARATOR + (buildId == null ? "" : buildId);
+    }
+}
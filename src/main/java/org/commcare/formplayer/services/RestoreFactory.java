@@ -34,7 +34,6 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Scope;
 import org.springframework.context.annotation.ScopedProxyMode;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.SetOperations;
 import org.springframework.data.redis.core.ValueOperations;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
@@ -61,11 +60,15 @@ import java.net.URI;
 import java.net.URLEncoder;
 import java.sql.SQLException;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
@@ -90,6 +93,11 @@ public class RestoreFactory {
 
     private boolean permitAggressiveSyncs = true;
 
+    private Long lastSyncTime;
+    private boolean lastSyncTimeLoaded;
+    // Redis calls made on behalf of this request
+    private final AtomicInteger redisRoundTrips = new AtomicInteger();
+
     public static final String FREQ_DAILY = "freq-daily";
     public static final String FREQ_WEEKLY = "freq-weekly";
     public static final String FREQ_NEVER = "freq-never";
@@ -127,10 +135,7 @@ public class RestoreFactory {
     private ValueOperations<String, String> originTokens;
 
     @Autowired
-    private RedisTemplate redisSetTemplate;
-
-    @Resource(name = "redisSetTemplate")
-    private SetOperations<String, String> redisSessionCache;
+    private SessionSelectionCache sessionSelectionCache;
 
     @Value("${commcarehq.formplayerAuthKey}")
     private String formplayerAuthKey;
@@ -335,8 +340,7 @@ public class RestoreFactory {
     }
 
     public void commit() {
-        String cacheKey = getSessionCacheKey();
-        redisSessionCache.getOperations().delete(cacheKey);
+        sessionSelectionCache.clear(getSessionCacheKey(), redisRoundTrips);
         try {
             sqLiteDB.getConnection().commit();
         } catch (SQLException e) {
@@ -461,7 +465,10 @@ public class RestoreFactory {
     }
 
     private void setLastSyncTime() {
-        valueOperations.set(lastSyncKey(), System.currentTimeMillis(), 10, TimeUnit.DAYS);
+        lastSyncTime = System.currentTimeMillis();
+        lastSyncTimeLoaded = true;
+        valueOperations.set(lastSyncKey(), lastSyncTime, 10, TimeUnit.DAYS);
+        redisRoundTrips.incrementAndGet();
     }
 
     public Long getLastSyncTime() {
@@ -470,7 +477,13 @@ public class RestoreFactory {
         if (valueOperations == null) {
             return null;
         }
-        return valueOperations.get(lastSyncKey());
+        // only this request's syncs change the value while the user lock is held
+        if (!lastSyncTimeLoaded) {
+            lastSyncTime = valueOperations.get(lastSyncKey());
+            lastSyncTimeLoaded = true;
+            redisRoundTrips.incrementAndGet();
+        }
+        return lastSyncTime;
     }
 
     private String lastSyncKey() {
@@ -585,6 +598,20 @@ public class RestoreFactory {
         }
     }
 
+    /**
+     * Identifies the current contents of the user's sandbox. This changes with every restore and
+     * with any other write to the sandbox, such as processing a submitted form.
+     *
+     * @return the sandbox version or null if the sandbox does not exist yet
+     */
+    public String getSandboxVersion() {
+        long changeCounter = getSQLiteDB().getChangeCounter();
+        if (changeCounter < 0) {
+            return null;
+        }
+        return getSQLiteDB().getDatabaseFileForDebugPurposes() + ":" + changeCounter + ":" + getSyncToken();
+    }
+
     // Device ID for tracking usage in the same way Android uses IMEI
     private String getSyncDeviceId() {
         if (asUsername == null) {
@@ -612,6 +639,7 @@ public class RestoreFactory {
         String originToken = PropertyUtils.genUUID();
         String redisKey = String.format("%s%s", ORIGIN_TOKEN_SLUG, originToken);
         originTokens.set(redisKey, "valid", Duration.ofSeconds(60));
+        redisRoundTrips.incrementAndGet();
         return Collections.singletonMap("X-CommCareHQ-Origin-Token", originToken);
     }
 
@@ -717,10 +745,7 @@ public class RestoreFactory {
      * @param selections - Array of menu selections (e.g. ["1", "1", <case_id>])
      */
     public void cacheSessionSelections(String[] selections) {
-        String cacheKey = getSessionCacheKey();
-        String cacheValue = getSessionCacheValue(selections);
-        redisSessionCache.add(cacheKey, cacheValue);
-        redisSetTemplate.expire(cacheKey, 1, TimeUnit.HOURS);
+        sessionSelectionCache.add(getSessionCacheKey(), getSessionCacheValue(selections), redisRoundTrips);
     }
 
     /**
@@ -730,13 +755,28 @@ public class RestoreFactory {
      * @param selections - Array of menu selections (e.g. ["1", "1", <case_id>])
      */
     public boolean isConfirmedSelection(String[] selections) {
-        String cacheKey = getSessionCacheKey();
-        String cacheValue = getSessionCacheValue(selections);
-        return redisSessionCache.isMember(cacheKey, cacheValue);
+        return sessionSelectionCache.getConfirmed(getSessionCacheKey(),
+                Collections.singletonList(getSessionCacheValue(selections)), redisRoundTrips)[0];
+    }
+
+    /**
+     * Checks which leading sequences of the menu selections have already been validated for a
+     * given user session, with a single lookup
+     *
+     * @param selections - Array of menu selections (e.g. ["1", "1", <case_id>])
+     * @return for each index i whether the first i + 1 selections have been validated
+     */
+    public boolean[] getConfirmedSelectionPrefixes(String[] selections) {
+        List<String> values = new ArrayList<>(selections.length);
+        for (int i = 1; i <= selections.length; i++) {
+            values.add(getSessionCacheValue(Arrays.copyOfRange(selections, 0, i)));
+        }
+        return sessionSelectionCache.getConfirmed(getSessionCacheKey(), values, redisRoundTrips);
     }
 
     @PreDestroy
     public void preDestroy() {
+        datadogStatsDClient.histogram(Constants.DATADOG_REDIS_ROUND_TRIPS, redisRoundTrips.get());
         if (sqLiteDB != null) {
             sqLiteDB.closeConnection();
         }
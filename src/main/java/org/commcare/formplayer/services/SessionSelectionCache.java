@@ -0,0 +1,116 @@
+package org.commcare.formplayer.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stores the menu selections each user has already navigated through successfully, so that
+ * replaying them can skip validation.
+ *
+ * Selections are kept in a Redis set per user and app. Lookups for all the selection prefixes of
+ * a request are pipelined into a single round trip and confirmed selections are remembered in a
+ * short lived near-cache. Clearing a user's selections removes them from the near-cache on this
+ * node straight away, other nodes see the change once their near-cache entry expires.
+ */
+public class SessionSelectionCache {
+
+    private static final long REDIS_TTL_HOURS = 1;
+
+    private final RedisTemplate<String, String> redisSetTemplate;
+    private final Cache<String, Set<String>> nearCache;
+
+    public SessionSelectionCache(RedisTemplate<String, String> redisSetTemplate, long nearCacheTtlSeconds,
+            long nearCacheMaxUsers) {
+        this.redisSetTemplate = redisSetTemplate;
+        this.nearCache = Caffeine.newBuilder()
+                .maximumSize(nearCacheMaxUsers)
+                .expireAfterWrite(nearCacheTtlSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * @param key        the user's selection set
+     * @param values     the selections to check
+     * @param roundTrips incremented for each call made to Redis
+     * @return whether each of the values has been confirmed
+     */
+    public boolean[] getConfirmed(String key, List<String> values, AtomicInteger roundTrips) {
+        boolean[] confirmed = new boolean[values.size()];
+        Set<String> known = nearCache.getIfPresent(key);
+        boolean allKnown = true;
+        for (int i = 0; i < confirmed.length; i++) {
+            confirmed[i] = known != null && known.contains(values.get(i));
+            allKnown &= confirmed[i];
+        }
+        if (allKnown) {
+            return confirmed;
+        }
+
+        List<Object> results = redisSetTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) throws DataAccessException {
+                for (int i = 0; i < confirmed.length; i++) {
+                    if (!confirmed[i]) {
+                        operations.opsForSet().isMember(key, values.get(i));
+                    }
+                }
+                return null;
+            }
+        });
+        roundTrips.incrementAndGet();
+
+        int result = 0;
+        for (int i = 0; i < confirmed.length; i++) {
+            if (!confirmed[i]) {
+                confirmed[i] = Boolean.TRUE.equals(results.get(result++));
+                if (confirmed[i]) {
+                    remember(key, values.get(i));
+                }
+            }
+        }
+        return confirmed;
+    }
+
+    /**
+     * Record a sequence of selections as confirmed
+     */
+    public void add(String key, String value, AtomicInteger roundTrips) {
+        redisSetTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) throws DataAccessException {
+                operations.opsForSet().add(key, value);
+                operations.expire(key, REDIS_TTL_HOURS, TimeUnit.HOURS);
+                return null;
+            }
+        });
+        roundTrips.incrementAndGet();
+        remember(key, value);
+    }
+
+    /**
+     * Forget all confirmed selections for the user, e.g. after a form submission changes their
+     * cases
+     */
+    public void clear(String key, AtomicInteger roundTrips) {
+        nearCache.invalidate(key);
+        redisSetTemplate.delete(key);
+        roundTrips.incrementAndGet();
+    }
+
+    private void remember(String key, String value) {
+        nearCache.get(key, k -> ConcurrentHashMap.newKeySet()).add(value);
+    }
+}
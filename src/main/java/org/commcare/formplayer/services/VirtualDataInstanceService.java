@@ -2,6 +2,8 @@ package org.commcare.formplayer.services;
 
 import static org.commcare.formplayer.util.Constants.VIRTUAL_DATA_INSTANCES_CACHE;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.commcare.core.interfaces.VirtualDataInstanceStorage;
 import org.commcare.formplayer.exceptions.InstanceNotFoundException;
 import org.commcare.formplayer.objects.SerializableDataInstance;
@@ -10,18 +12,34 @@ import org.commcare.modern.database.TableBuilder;
 import org.javarosa.core.model.instance.ExternalDataInstance;
 import org.javarosa.core.model.instance.TreeElement;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheConfig;
 import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nonnull;
-
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+/**
+ * Stores virtual instances, such as the cases selected from multi-select case lists.
+ *
+ * Instances are cached on the node and written to Postgres behind the request. Writes for the
+ * same key always go to the same writer thread so they are applied in order, and instances stay
+ * readable from memory until they are stored. A failed write is retried with a growing delay
+ * before it is given up, and shutdown waits until every queued write has been stored or given up.
+ */
 @Service
 @CacheConfig(cacheNames = {VIRTUAL_DATA_INSTANCES_CACHE})
 public class VirtualDataInstanceService implements VirtualDataInstanceStorage {
@@ -35,6 +53,57 @@ public class VirtualDataInstanceService implements VirtualDataInstanceStorage {
     @Autowired
     CacheManager cacheManager;
 
+    @Value("${formplayer.virtualDataInstances.writeBehindThreads:2}")
+    private int writeBehindThreads;
+
+    @Value("${formplayer.virtualDataInstances.writeAttempts:5}")
+    private int writeAttempts;
+
+    @Value("${formplayer.virtualDataInstances.retryDelayMs:500}")
+    private long retryDelayMs;
+
+    @Value("${formplayer.virtualDataInstances.purgeBatchSize:10000}")
+    private int purgeBatchSize;
+
+    private final Log log = LogFactory.getLog(VirtualDataInstanceService.class);
+
+    // instances queued for writing, by namespaced key
+    private final ConcurrentHashMap<String, SerializableDataInstance> pendingWrites = new ConcurrentHashMap<>();
+
+    // single threaded so that writes for a key are ordered, null when writing on the request thread
+    private ExecutorService[] writers;
+
+    @PostConstruct
+    public void startWriters() {
+        if (writeBehindThreads <= 0) {
+            return;
+        }
+        writers = new ExecutorService[writeBehindThreads];
+        for (int i = 0; i < writers.length; i++) {
+            String name = "virtual-instance-writer-" + i;
+            writers[i] = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, name));
+        }
+    }
+
+    /**
+     * Store the queued instances before the node stops, blocking until every write has been stored
+     * or has used up its retries
+     */
+    @PreDestroy
+    public void flush() throws InterruptedException {
+        if (writers == null) {
+            return;
+        }
+        for (ExecutorService writer : writers) {
+            writer.shutdown();
+        }
+        for (ExecutorService writer : writers) {
+            while (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.info(String.format("Waiting to store %d virtual instances before shutdown", pendingWrites.size()));
+            }
+        }
+    }
+
     @Override
     public String write(ExternalDataInstance dataInstance) {
         return write(UUID.randomUUID().toString(), dataInstance);
@@ -51,10 +120,14 @@ public class VirtualDataInstanceService implements VirtualDataInstanceStorage {
         String namespaceKey = namespaceKey(key);
         Cache cache = cacheManager.getCache(VIRTUAL_DATA_INSTANCES_CACHE);
         SerializableDataInstance savedInstance = cache.get(namespaceKey, SerializableDataInstance.class);
+        if (savedInstance == null) {
+            savedInstance = pendingWrites.get(namespaceKey);
+        }
         if (savedInstance == null) {
             Optional<SerializableDataInstance> optionalSerializableDataInstance = dataInstanceRepo.findByNamespacedKey(namespaceKey);
             if (optionalSerializableDataInstance.isPresent()) {
                 savedInstance = optionalSerializableDataInstance.get();
+                cache.put(namespaceKey, savedInstance);
             }
         }
         if (validateInstance(savedInstance, key)) {
@@ -65,19 +138,68 @@ public class VirtualDataInstanceService implements VirtualDataInstanceStorage {
 
     @Override
     public boolean contains(String key) {
-        return dataInstanceRepo.existsByNamespacedKey(namespaceKey(key));
+        String namespaceKey = namespaceKey(key);
+        Cache cache = cacheManager.getCache(VIRTUAL_DATA_INSTANCES_CACHE);
+        // instances are immutable so any cached copy is still stored
+        if (cache.get(namespaceKey) != null || pendingWrites.containsKey(namespaceKey)) {
+            return true;
+        }
+        return dataInstanceRepo.existsByNamespacedKey(namespaceKey);
     }
 
 
     @CacheEvict(allEntries = true)
     public int purge(Instant cutoff) {
-        return dataInstanceRepo.deleteSessionsOlderThan(cutoff);
+        int deleted = 0;
+        int batch;
+        do {
+            batch = dataInstanceRepo.deleteBatchOlderThan(cutoff, purgeBatchSize);
+            deleted += batch;
+        } while (batch >= purgeBatchSize);
+        return deleted;
     }
 
     private void saveAndCacheInstance(SerializableDataInstance serializableDataInstance) {
-        SerializableDataInstance savedDataInstance = dataInstanceRepo.save(serializableDataInstance);
-        Cache cache = cacheManager.getCache(VIRTUAL_DATA_INSTANCES_CACHE);
-        cache.put(savedDataInstance.getNamespacedKey(), savedDataInstance);
+        String namespaceKey = serializableDataInstance.getNamespacedKey();
+        if (writers == null) {
+            SerializableDataInstance savedDataInstance = dataInstanceRepo.save(serializableDataInstance);
+            cacheManager.getCache(VIRTUAL_DATA_INSTANCES_CACHE).put(namespaceKey, savedDataInstance);
+            return;
+        }
+        pendingWrites.put(namespaceKey, serializableDataInstance);
+        cacheManager.getCache(VIRTUAL_DATA_INSTANCES_CACHE).put(namespaceKey, serializableDataInstance);
+        writers[Math.floorMod(namespaceKey.hashCode(), writers.length)].execute(
+                () -> store(serializableDataInstance));
+    }
+
+    /**
+     * Write the instance to Postgres, retrying on the writer thread so that later writes for the
+     * same key are still applied after it
+     */
+    private void store(SerializableDataInstance serializableDataInstance) {
+        String namespaceKey = serializableDataInstance.getNamespacedKey();
+        try {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    dataInstanceRepo.save(serializableDataInstance);
+                    return;
+                } catch (RuntimeException e) {
+                    // a key that is already stored won't succeed on a retry
+                    if (attempt >= writeAttempts || e instanceof DataIntegrityViolationException) {
+                        log.error(String.format("Unable to store virtual instance %s after %d attempts",
+                                namespaceKey, attempt), e);
+                        return;
+                    }
+                    log.warn(String.format("Unable to store virtual instance %s, retrying", namespaceKey), e);
+                }
+                Thread.sleep(retryDelayMs << (attempt - 1));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Interrupted storing virtual instance " + namespaceKey);
+        } finally {
+            pendingWrites.remove(namespaceKey, serializableDataInstance);
+        }
     }
 
     @Nonnull
@@ -20,8 +20,8 @@ import org.commcare.formplayer.sandbox.UserSqlSandbox;
 import org.commcare.formplayer.services.FormDefinitionService;
 import org.commcare.formplayer.services.FormplayerStorageFactory;
 import org.commcare.formplayer.services.RestoreFactory;
+import org.commcare.formplayer.sqlitedb.SQLiteDB;
 import org.commcare.formplayer.util.Constants;
-import org.commcare.formplayer.util.serializer.FormDefStringSerializer;
 import org.commcare.modern.database.TableBuilder;
 import org.commcare.session.CommCareSession;
 import org.commcare.session.SessionFrame;
@@ -67,7 +67,7 @@ import datadog.trace.api.Trace;
  */
 public class FormSession {
 
-    private final SerializableFormSession session;
+    private SerializableFormSession session;
     Log log = LogFactory.getLog(FormSession.class);
 
     private FormDef formDef;
@@ -75,6 +75,7 @@ public class FormSession {
     private FormEntryController formEntryController;
     private FormController formController;
     private UserSqlSandbox sandbox;
+    private SQLiteDB applicationDb;
     private String[] langs;
     private boolean isAtLastIndex = false;
     private boolean isAtFirstIndex;
@@ -108,6 +109,7 @@ public class FormSession {
         restoreFactory.setPermitAggressiveSyncs(false);
 
         this.sandbox = restoreFactory.getSandbox();
+        this.applicationDb = storageFactory.getSQLiteDB();
 
         this.formDef = formDefinitionService.getFormDef(this.session);
 
@@ -161,6 +163,7 @@ public class FormSession {
 
         this.formDef.setSendCalloutHandler(formSendCalloutHandler);
         this.sandbox = sandbox;
+        this.applicationDb = storageFactory.getSQLiteDB();
         setupJavaRosaObjects();
         setupFunctionContext();
 
@@ -181,6 +184,48 @@ public class FormSession {
         }
     }
 
+    /**
+     * Continue a session that was kept in memory after an earlier request instead of rebuilding it.
+     * The session's storage is bound to the current request's databases, so it reads through the
+     * request's connections and never opens its own.
+     *
+     * @param session the persisted session this session was verified against, which replaces the
+     *                one it was saved from
+     * @return false if the session can't use the request's databases and has to be rebuilt
+     */
+    public boolean resume(SerializableFormSession session, RestoreFactory restoreFactory,
+            FormplayerStorageFactory storageFactory) {
+        if (!sandbox.bindConnection(restoreFactory.getSQLiteDB())
+                || (applicationDb != null && !applicationDb.bindTo(storageFactory.getSQLiteDB()))) {
+            closeConnections();
+            return false;
+        }
+        this.session = session;
+        restoreFactory.setPermitAggressiveSyncs(false);
+        // start from the same position as a rebuilt session
+        FormIndex formIndex = session.isOneQuestionPerScreen() || session.isInPromptMode()
+                ? JsonActionUtils.indexFromString(session.getCurrentIndex(), formDef)
+                : FormIndex.createBeginningOfFormIndex();
+        formController.jumpToIndex(formIndex);
+        formEntryModel.setQuestionIndex(formIndex);
+        isAtLastIndex = false;
+        isAtFirstIndex = false;
+        return true;
+    }
+
+    /**
+     * Close the database connections the session reads from and release the request's
+     * connections it was bound to, they are reopened when next needed
+     */
+    public void closeConnections() {
+        if (sandbox != null) {
+            sandbox.closeConnection();
+        }
+        if (applicationDb != null) {
+            applicationDb.closeConnection();
+        }
+    }
+
     private SessionFrame createSessionFrame(Map<String, String> sessionData) {
         SessionFrame sessionFrame = new SessionFrame();
         if (sessionData != null) {
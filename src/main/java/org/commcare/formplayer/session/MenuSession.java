@@ -17,6 +17,7 @@ import org.commcare.formplayer.services.FormDefinitionService;
 import org.commcare.formplayer.services.FormplayerRemoteInstanceFetcher;
 import org.commcare.formplayer.services.FormplayerStorageFactory;
 import org.commcare.formplayer.services.InstallService;
+import org.commcare.formplayer.services.NavigationSnapshotCache;
 import org.commcare.formplayer.services.RestoreFactory;
 import org.commcare.formplayer.util.FormplayerHereFunctionHandler;
 import org.commcare.formplayer.util.SessionUtils;
@@ -51,6 +52,7 @@ import org.javarosa.xpath.expr.XPathExpression;
 import org.javarosa.xpath.parser.XPathSyntaxException;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -369,6 +371,10 @@ public class MenuSession implements HereFunctionHandlerListener {
         return sessionWrapper.getIIF().getVersionString();
     }
 
+    public boolean isPreview() {
+        return session.isPreview();
+    }
+
     public String getAppVersion() {
         return "" + this.engine.getPlatform().getCurrentProfile().getVersion();
     }
@@ -433,6 +439,33 @@ public class MenuSession implements HereFunctionHandlerListener {
         return ec;
     }
 
+    public String getLocale() {
+        return session.getLocale();
+    }
+
+    /**
+     * @return the navigation state reached so far, for resuming a later request from
+     */
+    public NavigationSnapshotCache.Snapshot createSnapshot() {
+        return new NavigationSnapshotCache.Snapshot(SessionSerializer.serialize(sessionWrapper),
+                getBreadcrumbs(), getSelections(), hereFunctionEvaluated);
+    }
+
+    /**
+     * Replace the navigation state with one reached by an earlier request
+     */
+    public void restoreSnapshot(NavigationSnapshotCache.Snapshot snapshot) throws Exception {
+        CommCareSession commCareSession = SessionSerializer.deserialize(engine.getPlatform(),
+                snapshot.getSession());
+        this.sessionWrapper = new FormplayerSessionWrapper(commCareSession, engine.getPlatform(), sandbox,
+                instanceFetcher);
+        sessionWrapper.syncState();
+        clearEntityScreenCache();
+        this.breadcrumbs = new ArrayList<>(Arrays.asList(snapshot.getBreadcrumbs()));
+        this.selections = new ArrayList<>(Arrays.asList(snapshot.getSelections()));
+        this.hereFunctionEvaluated |= snapshot.isHereFunctionEvaluated();
+    }
+
     public SerializableMenuSession serialize() {
         session.setCommcareSession(SessionSerializer.serialize(sessionWrapper));
         return session;
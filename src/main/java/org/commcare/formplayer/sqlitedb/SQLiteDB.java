@@ -10,14 +10,19 @@ import org.commcare.formplayer.services.ConnectionHandler;
 
 import javax.sql.DataSource;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.sql.Connection;
 import java.sql.SQLException;
 
 public class SQLiteDB implements ConnectionHandler {
+    private static final int CHANGE_COUNTER_OFFSET = 24;
+
     private DBPath dbPath;
     private ArchivableFile dbArchivableFile;
     private final Log log = LogFactory.getLog(SQLiteDB.class);
     private Connection connection;
+    // handler for the same database whose connection this one uses, see bindTo
+    private SQLiteDB boundTo;
 
     public SQLiteDB(DBPath dbPath) {
         this.dbPath = dbPath;
@@ -45,8 +50,31 @@ public class SQLiteDB implements ConnectionHandler {
         return sqLiteConnection.getUrl().contains(dbPath.getDatabasePath());
     }
 
+    /**
+     * Use the connection of another handler for the same database instead of opening one, so that
+     * objects kept across requests use, and are closed with, the connection of the current request.
+     * The binding is dropped by {@link #closeConnection()}.
+     *
+     * @return false if the handler is for a different database and was not bound
+     */
+    public boolean bindTo(SQLiteDB current) {
+        if (current == this) {
+            return true;
+        }
+        if (dbPath == null || current == null || current.dbPath == null
+                || !dbPath.getDatabaseFile().equals(current.dbPath.getDatabaseFile())) {
+            return false;
+        }
+        closeConnection();
+        boundTo = current;
+        return true;
+    }
+
     @Override
     public Connection getConnection() {
+        if (boundTo != null) {
+            return boundTo.getConnection();
+        }
         try {
             if (connection == null || connection.isClosed()) {
                 connection = getNewConnection();
@@ -66,7 +94,12 @@ public class SQLiteDB implements ConnectionHandler {
         return connection;
     }
 
+    /**
+     * Close this handler's own connection and stop using the connection of any handler it is
+     * bound to, which is left open
+     */
     public void closeConnection() {
+        boundTo = null;
         try {
             if(connection != null && !connection.isClosed()) {
                 connection.close();
@@ -99,6 +132,28 @@ public class SQLiteDB implements ConnectionHandler {
         return dbArchivableFile.getParentFile().exists();
     }
 
+    /**
+     * Read the file change counter from the database header. SQLite increments it on every
+     * committed write transaction, so it identifies the current contents of the database.
+     *
+     * @return the change counter or -1 if the database file does not exist or is archived
+     */
+    public long getChangeCounter() {
+        if (dbArchivableFile == null || !dbArchivableFile.exists()) {
+            return -1;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(dbArchivableFile, "r")) {
+            if (file.length() < CHANGE_COUNTER_OFFSET + 4) {
+                return -1;
+            }
+            file.seek(CHANGE_COUNTER_OFFSET);
+            return file.readInt() & 0xFFFFFFFFL;
+        } catch (IOException e) {
+            log.warn("Unable to read change counter for " + dbArchivableFile, e);
+            return -1;
+        }
+    }
+
     public String getDatabaseFileForDebugPurposes() {
         return dbPath.getDatabaseFile();
     }
@@ -35,6 +35,8 @@ public class Constants {
     public static final String URL_CHANGE_LANGUAGE = "change_locale";
     public static final String URL_BREAK_LOCKS = "break_locks";
     public static final String URL_CHECK_LOCKS = "check_locks";
+    public static final String URL_PREWARM_BUILD = "prewarm_build";
+    public static final String URL_PREWARM_STATUS = "prewarm_status";
 
     // Alternative namings used by SMS
     public static final String URL_NEXT = "next";
@@ -111,6 +113,17 @@ public class Constants {
     public static final String DATADOG_TIMINGS = "timings";
     public static final String DATADOG_GRANULAR_TIMINGS = "granular.timings";
     public static final String DATADOG_RESTORE_COUNT = "restore.count";
+    public static final String DATADOG_CCZ_STORE_LOOKUPS = "ccz_store.lookups";
+    public static final String DATADOG_INSTALL_XFORM_PARSE = "install.xform_parse";
+    public static final String DATADOG_INSTALL_XFORM_PREPARSED_LOOKUPS = "install.xform_preparsed_lookups";
+    public static final String DATADOG_PREWARM_COLD_STARTS_AVOIDED = "prewarm.cold_starts_avoided";
+    public static final String DATADOG_PREWARM_BUILDS = "prewarm.builds";
+    public static final String DATADOG_REDIS_ROUND_TRIPS = "redis.round_trips";
+    public static final String DATADOG_GRAPH_CACHE_LOOKUPS = "graph_cache.lookups";
+    public static final String DATADOG_GRAPH_CACHE_SIZE = "graph_cache.size";
+    public static final String DATADOG_CASE_SEARCH_CACHE_LOOKUPS = "case_search_cache.lookups";
+    public static final String DATADOG_FORM_SESSION_CACHE_LOOKUPS = "form_session_cache.lookups";
+    public static final String DATADOG_FORM_SESSION_CACHE_SIZE = "form_session_cache.size";
 
     // Datadog/Sentry tags
     public static final String DOMAIN_TAG = "domain";
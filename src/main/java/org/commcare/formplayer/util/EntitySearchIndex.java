@@ -0,0 +1,149 @@
+package org.commcare.formplayer.util;
+
+import org.commcare.cases.entity.Entity;
+import org.javarosa.core.model.instance.TreeReference;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Trigram index over the searchable fields of a case list.
+ *
+ * The index narrows a search down to the entities that could contain every search term, which
+ * are then matched exactly by {@link EntityStringFilterer}. Every field the filter matches against
+ * is indexed, and both fields and search terms are lower cased the same way as the filter does,
+ * so every entity the filter would match is always a candidate. Terms shorter than a trigram
+ * can't narrow the search and are left to the filter.
+ */
+public class EntitySearchIndex {
+
+    private static final int GRAM_LENGTH = 3;
+
+    private final int size;
+    private final Locale locale;
+    private final Map<Long, int[]> postings;
+    private final long weightBytes;
+
+    private EntitySearchIndex(int size, Locale locale, Map<Long, int[]> postings, long weightBytes) {
+        this.size = size;
+        this.locale = locale;
+        this.postings = postings;
+        this.weightBytes = weightBytes;
+    }
+
+    /**
+     * Index the entities' fields by their position in the list
+     */
+    public static EntitySearchIndex build(List<Entity<TreeReference>> entities, Locale locale) {
+        Map<Long, PostingList> building = new HashMap<>();
+        for (int position = 0; position < entities.size(); position++) {
+            Entity<TreeReference> entity = entities.get(position);
+            for (int i = 0; i < entity.getNumFields(); i++) {
+                // index every form of the field so the candidates cover any of them being searched
+                addField(building, entity.getNormalizedField(i), position, locale);
+                addField(building, entity.getFieldString(i), position, locale);
+                addField(building, entity.getSortField(i), position, locale);
+            }
+        }
+        Map<Long, int[]> postings = new HashMap<>(building.size() * 4 / 3 + 1);
+        long weightBytes = 0;
+        for (Map.Entry<Long, PostingList> entry : building.entrySet()) {
+            int[] ids = entry.getValue().toArray();
+            postings.put(entry.getKey(), ids);
+            // key, map entry and array headers plus the ids
+            weightBytes += 64 + ids.length * Integer.BYTES;
+        }
+        return new EntitySearchIndex(entities.size(), locale, postings, weightBytes);
+    }
+
+    private static void addField(Map<Long, PostingList> building, String field, int position, Locale locale) {
+        if (field == null || field.length() < GRAM_LENGTH) {
+            return;
+        }
+        String lowerField = field.toLowerCase(locale);
+        for (int start = 0; start + GRAM_LENGTH <= lowerField.length(); start++) {
+            building.computeIfAbsent(gram(lowerField, start), k -> new PostingList()).add(position);
+        }
+    }
+
+    /**
+     * @return the sorted positions of the entities that may match all the terms, or null if the
+     * terms are too short to narrow the search
+     */
+    public int[] getCandidates(String[] searchTerms) {
+        int[] candidates = null;
+        for (String term : searchTerms) {
+            String lowerTerm = term.toLowerCase(locale);
+            for (int start = 0; start + GRAM_LENGTH <= lowerTerm.length(); start++) {
+                int[] ids = postings.get(gram(lowerTerm, start));
+                if (ids == null) {
+                    return new int[0];
+                }
+                candidates = candidates == null ? ids : intersect(candidates, ids);
+                if (candidates.length == 0) {
+                    return candidates;
+                }
+            }
+        }
+        return candidates;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getWeightBytes() {
+        return weightBytes;
+    }
+
+    private static long gram(String text, int start) {
+        return ((long)text.charAt(start) << 32)
+                | ((long)text.charAt(start + 1) << 16)
+                | text.charAt(start + 2);
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int i = 0;
+        int j = 0;
+        int count = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Sorted, de-duplicated entity positions for a single trigram
+     */
+    private static class PostingList {
+        private int[] ids = new int[4];
+        private int count;
+
+        void add(int id) {
+            // positions are added in order so duplicates are always adjacent
+            if (count > 0 && ids[count - 1] == id) {
+                return;
+            }
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+            }
+            ids[count++] = id;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(ids, count);
+        }
+    }
+}
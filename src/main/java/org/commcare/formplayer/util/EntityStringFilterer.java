@@ -37,15 +37,12 @@ public class EntityStringFilterer {
     }
 
     public List<Entity<TreeReference>> buildMatchList() {
-
-        while (!nodeFactory.isEntitySetReady()) {
-            try {
-                Thread.sleep(100);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
+        // entities are prepared synchronously before filtering, there is nothing to wait for
+        if (!nodeFactory.isEntitySetReady()) {
+            throw new IllegalStateException("Entity set must be prepared before it is filtered");
         }
 
+        // EntitySearchIndex lower cases fields with the same locale, keep them in step
         Locale currentLocale = Locale.getDefault();
         EntitySortUtil.sortEntities(fullEntityList,
                 searchTerms,
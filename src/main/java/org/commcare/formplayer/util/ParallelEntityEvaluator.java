@@ -0,0 +1,110 @@
+package org.commcare.formplayer.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.PreDestroy;
+
+/**
+ * Runs independent per-entity work for a request on a shared pool, bounded per node and per
+ * request.
+ *
+ * The calling thread always takes part in the work and each call uses at most
+ * {@code maxPerRequest - 1} pool threads, so a single large list cannot occupy the whole pool
+ * and a request never waits on the pool to make progress. Results are returned in task order,
+ * matching serial evaluation.
+ *
+ * Tasks run off the request thread, so they must not touch the user's sandbox or the request's
+ * thread local state (localization, references and prototypes).
+ */
+public class ParallelEntityEvaluator {
+
+    private final ExecutorService executor;
+    private final int maxPerRequest;
+
+    public ParallelEntityEvaluator(int threads, int maxPerRequest) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "entity-eval-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.maxPerRequest = Math.max(1, maxPerRequest);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Run the tasks and return their results in the same order
+     */
+    public <T> List<T> evaluate(List<Callable<T>> tasks) throws ExecutionException {
+        Object[] results = new Object[tasks.size()];
+        AtomicInteger next = new AtomicInteger();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Runnable worker = () -> {
+            int index;
+            while (failure.get() == null && (index = next.getAndIncrement()) < tasks.size()) {
+                try {
+                    results[index] = tasks.get(index).call();
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }
+        };
+
+        int helpers = Math.min(maxPerRequest, tasks.size()) - 1;
+        // Each helper is claimed exactly once, either by a pool thread that runs it or by the
+        // caller if it is still queued once the caller has run out of work. Claimed helpers count
+        // down when they finish, so awaiting the latch publishes every result slot.
+        AtomicBoolean[] claimed = new AtomicBoolean[helpers];
+        CountDownLatch finished = new CountDownLatch(helpers);
+        List<Future<?>> futures = new ArrayList<>(helpers);
+        for (int i = 0; i < helpers; i++) {
+            AtomicBoolean helperClaimed = new AtomicBoolean();
+            claimed[i] = helperClaimed;
+            futures.add(executor.submit(() -> {
+                if (!helperClaimed.compareAndSet(false, true)) {
+                    return;
+                }
+                try {
+                    worker.run();
+                } finally {
+                    finished.countDown();
+                }
+            }));
+        }
+        worker.run();
+        for (int i = 0; i < helpers; i++) {
+            // helpers that haven't started have nothing left to do
+            if (claimed[i].compareAndSet(false, true)) {
+                futures.get(i).cancel(false);
+                finished.countDown();
+            }
+        }
+        try {
+            finished.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExecutionException(e);
+        }
+        if (failure.get() != null) {
+            throw new ExecutionException(failure.get());
+        }
+        @SuppressWarnings("unchecked")
+        List<T> ordered = (List<T>)Arrays.asList(results);
+        return ordered;
+    }
+}
@@ -0,0 +1,78 @@
+package org.commcare.formplayer.util;
+
+import org.commcare.cases.entity.Entity;
+import org.commcare.cases.entity.NodeEntityFactory;
+import org.commcare.suite.model.Detail;
+import org.commcare.suite.model.DetailField;
+import org.commcare.suite.model.Text;
+import org.commcare.suite.model.graph.Graph;
+import org.javarosa.core.model.condition.EvaluationContext;
+import org.javarosa.core.model.instance.TreeReference;
+import org.javarosa.xpath.parser.XPathSyntaxException;
+
+/**
+ * Builds the entities a case list is sorted and filtered on, evaluating only the detail fields
+ * that the sort or the search reads.
+ *
+ * The full list of cases goes through this factory, while the fields displayed for a row are
+ * evaluated separately for the rows on the requested page. Fields that aren't needed are left
+ * empty and are never relevant, graphs are never evaluated as they have no text to sort or
+ * search on.
+ */
+public class SortAndSearchEntityFactory extends NodeEntityFactory {
+
+    private final Detail detail;
+    private final EvaluationContext ec;
+    private final boolean[] evaluated;
+
+    /**
+     * @param sortFields indices of the fields the list is sorted on
+     * @param searching  whether the list is filtered by search text, which matches every field
+     */
+    public SortAndSearchEntityFactory(Detail detail, EvaluationContext ec, int[] sortFields,
+            boolean searching) {
+        super(detail, ec);
+        this.detail = detail;
+        this.ec = ec;
+        DetailField[] fields = detail.getFields();
+        this.evaluated = new boolean[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            evaluated[i] = searching && !(fields[i].getTemplate() instanceof Graph);
+        }
+        for (int sortField : sortFields) {
+            if (sortField >= 0 && sortField < fields.length) {
+                evaluated[sortField] = true;
+            }
+        }
+    }
+
+    @Override
+    public Entity<TreeReference> getEntity(TreeReference data) {
+        EvaluationContext nodeContext = new EvaluationContext(ec, data);
+        detail.populateEvaluationContextVariables(nodeContext);
+
+        DetailField[] fields = detail.getFields();
+        Object[] fieldData = new Object[fields.length];
+        String[] sortData = new String[fields.length];
+        boolean[] relevancyData = new boolean[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            if (!evaluated[i]) {
+                fieldData[i] = "";
+                continue;
+            }
+            DetailField field = fields[i];
+            try {
+                fieldData[i] = field.getTemplate().evaluate(nodeContext);
+                Text sortText = field.getSort();
+                sortData[i] = sortText == null ? null : sortText.evaluate(nodeContext);
+                relevancyData[i] = field.isRelevant(nodeContext);
+            } catch (XPathSyntaxException e) {
+                fieldData[i] = "<invalid xpath: " + e.getMessage() + ">";
+                // so the error shows up in the filter
+                relevancyData[i] = true;
+            }
+        }
+        return new Entity<>(fieldData, sortData, relevancyData, data, null,
+                detail.evaluateFocusFunction(nodeContext));
+    }
+}
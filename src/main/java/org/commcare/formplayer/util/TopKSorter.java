@@ -0,0 +1,63 @@
+package org.commcare.formplayer.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Returns the first rows of a sorted list without sorting the whole list.
+ *
+ * A paginated case list only displays the rows up to the end of the requested page, so rather than
+ * sorting every matching entity the first k are selected with a bounded heap, which takes
+ * O(n log k) comparisons instead of O(n log n). Ties are broken by the original position so the
+ * result is identical to the prefix of a stable sort. When k covers most of the list, for example
+ * for the last pages, a full sort is cheaper and is used instead.
+ */
+public class TopKSorter {
+
+    private TopKSorter() {
+    }
+
+    /**
+     * @param items      the items to sort, not modified
+     * @param comparator the sort order
+     * @param k          the number of leading items needed
+     * @return the first k items, or all items when there are fewer, in the order a stable sort
+     * of the items would produce
+     */
+    public static <T> List<T> sort(List<T> items, Comparator<? super T> comparator, int k) {
+        int n = items.size();
+        if (k <= 0) {
+            return new ArrayList<>();
+        }
+        if ((long)k * 2 >= n) {
+            List<T> sorted = new ArrayList<>(items);
+            Collections.sort(sorted, comparator);
+            return k < n ? new ArrayList<>(sorted.subList(0, k)) : sorted;
+        }
+
+        Comparator<Integer> byPosition = (a, b) -> {
+            int cmp = comparator.compare(items.get(a), items.get(b));
+            return cmp != 0 ? cmp : Integer.compare(a, b);
+        };
+        // max heap holding the k smallest items seen so far
+        PriorityQueue<Integer> heap = new PriorityQueue<>(k, byPosition.reversed());
+        for (int i = 0; i < n; i++) {
+            if (heap.size() < k) {
+                heap.add(i);
+            } else if (byPosition.compare(i, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(i);
+            }
+        }
+        List<Integer> selected = new ArrayList<>(heap);
+        Collections.sort(selected, byPosition);
+        List<T> result = new ArrayList<>(k);
+        for (int position : selected) {
+            result.add(items.get(position));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,62 @@
+package org.commcare.formplayer.util.serializer;
+
+import org.javarosa.core.model.FormDef;
+import org.javarosa.core.services.PrototypeManager;
+import org.javarosa.core.util.externalizable.DeserializationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Binary serialization of FormDef objects for the form_definition table.
+ *
+ * The first byte records the encoding of the remainder so that rows written with and without
+ * compression can be read back regardless of the current setting.
+ */
+public class FormDefSerializer {
+
+    public static final byte FORMAT_RAW = 0;
+    public static final byte FORMAT_DEFLATE = 1;
+
+    public static byte[] serialize(FormDef formDef, boolean compress) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        baos.write(compress ? FORMAT_DEFLATE : FORMAT_RAW);
+        OutputStream out = compress
+                ? new DeflaterOutputStream(baos, new Deflater(Deflater.BEST_SPEED))
+                : baos;
+        try (DataOutputStream serializedStream = new DataOutputStream(out)) {
+            formDef.writeExternal(serializedStream);
+        }
+        return baos.toByteArray();
+    }
+
+    public static FormDef deserialize(byte[] serializedFormDef)
+            throws IOException, DeserializationException {
+        if (serializedFormDef == null || serializedFormDef.length == 0) {
+            throw new DeserializationException("Empty serialized form def");
+        }
+        InputStream in = new ByteArrayInputStream(serializedFormDef, 1, serializedFormDef.length - 1);
+        switch (serializedFormDef[0]) {
+            case FORMAT_RAW:
+                break;
+            case FORMAT_DEFLATE:
+                in = new InflaterInputStream(in);
+                break;
+            default:
+                throw new DeserializationException("Unknown form def format " + serializedFormDef[0]);
+        }
+        try (DataInputStream inputStream = new DataInputStream(in)) {
+            FormDef formDef = new FormDef();
+            formDef.readExternal(inputStream, PrototypeManager.getDefault());
+            return formDef;
+        }
+    }
+}
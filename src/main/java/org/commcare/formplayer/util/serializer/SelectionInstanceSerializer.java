@@ -0,0 +1,111 @@
+package org.commcare.formplayer.util.serializer;
+
+import org.commcare.data.xml.SimpleNode;
+import org.commcare.data.xml.TreeBuilder;
+import org.javarosa.core.model.data.IAnswerData;
+import org.javarosa.core.model.instance.TreeElement;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compact binary serialization of virtual instances that are a flat list of values, such as the
+ * case ids selected from a multi-select case list.
+ *
+ * Serializing the tree node by node stores each value's name, multiplicity, attributes and
+ * bookkeeping, which dominates the size of large selections. Here only the root and child names
+ * and the values are stored, deflated. The data starts with a marker that serialized trees can't
+ * start with so that both formats can be read from the same column.
+ */
+public class SelectionInstanceSerializer {
+
+    private static final byte[] MARKER = new byte[]{(byte)0xC5, (byte)0x1E};
+    private static final byte FORMAT_DEFLATE = 1;
+
+    /**
+     * @return the serialized instance, or null if the tree isn't a flat list of values
+     */
+    public static byte[] serialize(TreeElement root) {
+        String childName = null;
+        List<String> values = new ArrayList<>(root.getNumChildren());
+        for (int i = 0; i < root.getNumChildren(); i++) {
+            TreeElement child = root.getChildAt(i);
+            IAnswerData value = child.getValue();
+            if (child.getNumChildren() != 0 || child.getAttributeCount() != 0 || value == null
+                    || (childName != null && !childName.equals(child.getName()))) {
+                return null;
+            }
+            childName = child.getName();
+            values.add(value.uncast().getString());
+        }
+
+        byte[] serialized;
+        try {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            baos.write(MARKER);
+            baos.write(FORMAT_DEFLATE);
+            try (DataOutputStream out = new DataOutputStream(
+                    new DeflaterOutputStream(baos, new Deflater(Deflater.BEST_SPEED)))) {
+                writeNullable(out, root.getInstanceName());
+                out.writeUTF(root.getName());
+                writeNullable(out, childName);
+                out.writeInt(values.size());
+                for (String value : values) {
+                    out.writeUTF(value);
+                }
+            }
+            serialized = baos.toByteArray();
+        } catch (IOException e) {
+            // values too long for the format
+            return null;
+        }
+        // only use the compact form when it reads back as the same tree
+        return root.equals(deserialize(serialized)) ? serialized : null;
+    }
+
+    public static boolean isSerializedSelection(byte[] data) {
+        return data != null && data.length > MARKER.length
+                && data[0] == MARKER[0] && data[1] == MARKER[1];
+    }
+
+    public static TreeElement deserialize(byte[] data) {
+        if (data[MARKER.length] != FORMAT_DEFLATE) {
+            throw new RuntimeException("Unknown selection instance format " + data[MARKER.length]);
+        }
+        int offset = MARKER.length + 1;
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(
+                new ByteArrayInputStream(data, offset, data.length - offset)))) {
+            String instanceName = readNullable(in);
+            String rootName = in.readUTF();
+            String childName = readNullable(in);
+            int count = in.readInt();
+            List<SimpleNode> nodes = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                nodes.add(SimpleNode.textNode(childName, Collections.emptyMap(), in.readUTF()));
+            }
+            return TreeBuilder.buildTree(instanceName, rootName, nodes);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read selection instance", e);
+        }
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -5,15 +5,20 @@ import com.google.common.collect.Multimap;
 import org.commcare.formplayer.services.RestoreFactory;
 import org.commcare.formplayer.util.RequestUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.RequestEntity;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.InputStream;
 import java.net.URI;
 
 import lombok.extern.apachecommons.CommonsLog;
@@ -70,6 +75,39 @@ public class WebClient {
         return postRaw(uri, headers, postData, String.class).getBody();
     }
 
+    /**
+     * Post form data and hand the response body to the reader as it arrives, rather than
+     * buffering the whole response in memory first
+     *
+     * @throws ResponseReadException wrapping any exception thrown by the reader
+     */
+    public <R> R postFormData(String url, Multimap<String, String> data, ResponseReader<R> reader) {
+        checkHmac();
+        URI uri = URI.create(url);
+        LinkedMultiValueMap<String, String> postData = new LinkedMultiValueMap<>();
+        data.forEach(postData::add);
+
+        HttpHeaders headers = restoreFactory.getRequestHeaders(uri);
+        headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
+        RequestCallback requestCallback = restTemplate.httpEntityCallback(new HttpEntity<>(postData, headers));
+        HttpStatus[] status = new HttpStatus[1];
+        ResponseExtractor<R> responseExtractor = response -> {
+            status[0] = response.getStatusCode();
+            try {
+                return reader.read(response.getBody(), response.getHeaders().getContentLength());
+            } catch (Exception e) {
+                // keep the reader's exception rather than the rest template's I/O error wrapping
+                throw new ResponseReadException(e);
+            }
+        };
+        try {
+            return restTemplate.execute(uri, HttpMethod.POST, requestCallback, responseExtractor);
+        } finally {
+            log.info(String.format("HTTP POST to '%s'. Response %s. Request body '%s'", uri, status[0],
+                    postData));
+        }
+    }
+
     public <T> Boolean caseClaimPost(String url, T body) {
         checkHmac();
         URI uri = URI.create(url);
@@ -107,6 +145,31 @@ public class WebClient {
         }
     }
 
+    /**
+     * Consumes a streamed response body
+     */
+    @FunctionalInterface
+    public interface ResponseReader<R> {
+        /**
+         * @param contentLength the length of the body in bytes, or -1 if it is not known
+         */
+        R read(InputStream body, long contentLength) throws Exception;
+    }
+
+    /**
+     * Thrown when a {@link ResponseReader} fails to read a response
+     */
+    public static class ResponseReadException extends RuntimeException {
+        public ResponseReadException(Exception cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized Exception getCause() {
+            return (Exception)super.getCause();
+        }
+    }
+
     @Autowired
     public void setRestoreFactory(RestoreFactory restoreFactory) {
         this.restoreFactory = restoreFactory;
@@ -0,0 +1,275 @@
+package org.commcare.formplayer.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.timgroup.statsd.StatsDClient;
+
+import org.commcare.formplayer.exceptions.ApplicationConfigException;
+import org.commcare.formplayer.mocks.InMemoryCczBlobStore;
+import org.commcare.formplayer.util.Constants;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Tests for {@link CczStore}
+ */
+public class CczStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final StatsDClient datadogStatsDClient = Mockito.mock(StatsDClient.class);
+
+    @Test
+    public void testIdenticalDownloadsShareOneFile() throws Exception {
+        CczStore store = newStore(tempDir.resolve("store").toFile(), null, 10);
+        String first;
+        try (CczStore.Lease lease = store.acquire("app", "url1", () -> writeCcz("12"))) {
+            first = lease.getPath();
+        }
+        try (CczStore.Lease lease = store.acquire("app", "url2", () -> writeCcz("12"))) {
+            assertEquals(first, lease.getPath());
+        }
+        assertEquals(1, store.size());
+        assertTrue(first.endsWith(".ccz"));
+        assertTrue(new File(first).getName().startsWith("12-"));
+    }
+
+    @Test
+    public void testConcurrentRequestsShareDownload() throws Exception {
+        CczStore store = newStore(tempDir.resolve("store").toFile(), null, 10);
+        AtomicInteger downloads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<String> leader = executor.submit(() -> {
+                try (CczStore.Lease lease = store.acquire("app", "url", () -> {
+                    downloads.incrementAndGet();
+                    started.countDown();
+                    awaitQuietly(release);
+                    return writeCcz("3");
+                })) {
+                    return lease.getPath();
+                }
+            });
+            started.await(5, TimeUnit.SECONDS);
+            Future<String> follower = executor.submit(() -> {
+                try (CczStore.Lease lease = store.acquire("app", "url", () -> {
+                    downloads.incrementAndGet();
+                    return writeCcz("3");
+                })) {
+                    return lease.getPath();
+                }
+            });
+            // give the follower time to join the in-flight download before it completes
+            Thread.sleep(200);
+            release.countDown();
+            assertEquals(leader.get(5, TimeUnit.SECONDS), follower.get(5, TimeUnit.SECONDS));
+            assertEquals(1, downloads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testLeastRecentlyUsedUnreferencedArchiveEvicted() throws Exception {
+        CczStore store = newStore(tempDir.resolve("store").toFile(), null, 1);
+        CczStore.Lease held = store.acquire("app", "url", () -> writeCcz("1"));
+        String second;
+        try (CczStore.Lease lease = store.acquire("app", "url", () -> writeCcz("2"))) {
+            second = lease.getPath();
+            // both archives are in use so neither may be evicted
+            assertEquals(2, store.size());
+        }
+        assertFalse(new File(second).exists());
+        assertTrue(new File(held.getPath()).exists());
+        held.close();
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    public void testPinnedArchiveNotEvicted() throws Exception {
+        CczStore store = newStore(tempDir.resolve("store").toFile(), null, 1);
+        String installed;
+        try (CczStore.Lease lease = store.acquire("app", "url", () -> writeCcz("1"))) {
+            installed = lease.getPath();
+            store.pin("guid", lease.getKey());
+        }
+        String unpinned;
+        try (CczStore.Lease lease = store.acquire("app", "url", () -> writeCcz("2"))) {
+            unpinned = lease.getPath();
+        }
+        assertTrue(new File(installed).exists());
+        assertFalse(new File(unpinned).exists());
+        assertEquals(1, store.size());
+
+        // reinstalling from another archive releases the old one
+        String reinstalled;
+        try (CczStore.Lease lease = store.acquire("app", "url", () -> writeCcz("3"))) {
+            reinstalled = lease.getPath();
+            store.pin("guid", lease.getKey());
+        }
+        assertFalse(new File(installed).exists());
+        assertTrue(new File(reinstalled).exists());
+    }
+
+    @Test
+    public void testPinsSurviveRestart() throws Exception {
+        File root = tempDir.resolve("store").toFile();
+        CczStore store = newStore(root, null, 1);
+        String key;
+        try (CczStore.Lease lease = store.acquire("app", "url", () -> writeCcz("1"))) {
+            key = lease.getKey();
+            store.pin("guid", key);
+        }
+
+        CczStore reloaded = newStore(root, null, 1);
+        assertTrue(reloaded.isPinned(key));
+        reloaded.acquire("app", "url", () -> writeCcz("2")).close();
+        assertNotNull(reloaded.resolve(key));
+    }
+
+    @Test
+    public void testInvalidDownloadRejected() throws Exception {
+        CczStore store = newStore(tempDir.resolve("store").toFile(), null, 10);
+        File bogus = Files.createTempFile(tempDir, "bogus", ".ccz").toFile();
+        Files.write(bogus.toPath(), "not a zip".getBytes(StandardCharsets.UTF_8));
+        assertThrows(ApplicationConfigException.class,
+                () -> store.acquire("app", "url", bogus::getAbsolutePath));
+        assertFalse(bogus.exists());
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void testExistingArchivesLoadedOnStartup() throws Exception {
+        File root = tempDir.resolve("store").toFile();
+        CczStore store = newStore(root, null, 10);
+        String path;
+        String key;
+        try (CczStore.Lease lease = store.acquire("app", "url", () -> writeCcz("7"))) {
+            path = lease.getPath();
+            key = lease.getKey();
+        }
+        CczStore reloaded = newStore(root, null, 10);
+        assertEquals(path, reloaded.resolve(key));
+    }
+
+    @Test
+    public void testArchiveFetchedFromSharedTier() throws Exception {
+        InMemoryCczBlobStore sharedStore = new InMemoryCczBlobStore();
+        CczStore firstNode = newStore(tempDir.resolve("node1").toFile(), sharedStore, 10);
+        CczStore secondNode = newStore(tempDir.resolve("node2").toFile(), sharedStore, 10);
+
+        String location;
+        try (CczStore.Lease lease = firstNode.acquire("app", "url", () -> writeCcz("4"))) {
+            location = firstNode.getLocation(lease.getPath());
+        }
+        assertEquals(1, sharedStore.size());
+
+        String resolved = secondNode.resolve(location);
+        assertNotNull(resolved);
+        assertTrue(new File(resolved).exists());
+        assertTrue(resolved.startsWith(tempDir.resolve("node2").toString()));
+        verify(datadogStatsDClient).increment(Constants.DATADOG_CCZ_STORE_LOOKUPS, "tier:shared");
+    }
+
+    @Test
+    public void testLiveDownloadOfPrewarmedBuildCounted() throws Exception {
+        CczStore store = newStore(tempDir.resolve("store").toFile(), null, 10);
+        String prewarmed;
+        try (CczStore.Lease lease = store.acquireForPrewarm("build", "url", () -> writeCcz("5"))) {
+            prewarmed = lease.getPath();
+        }
+
+        // live installs always download the latest version, which is the prewarmed build here
+        AtomicInteger downloads = new AtomicInteger();
+        for (int i = 0; i < 2; i++) {
+            try (CczStore.Lease lease = store.acquire("build", "url", () -> {
+                downloads.incrementAndGet();
+                return writeCcz("5");
+            })) {
+                assertEquals(prewarmed, lease.getPath());
+            }
+        }
+        assertEquals(2, downloads.get());
+        assertEquals(1, store.size());
+        verify(datadogStatsDClient, times(1)).increment(Constants.DATADOG_PREWARM_COLD_STARTS_AVOIDED);
+    }
+
+    @Test
+    public void testNewerBuildNotServedFromPrewarm() throws Exception {
+        CczStore store = newStore(tempDir.resolve("store").toFile(), null, 10);
+        String prewarmed;
+        try (CczStore.Lease lease = store.acquireForPrewarm("build", "url", () -> writeCcz("5"))) {
+            prewarmed = lease.getPath();
+        }
+
+        // a release after the prewarm
+        try (CczStore.Lease lease = store.acquire("build", "url", () -> writeCcz("6"))) {
+            assertNotEquals(prewarmed, lease.getPath());
+            assertTrue(new File(lease.getPath()).getName().startsWith("6-"));
+        }
+        verify(datadogStatsDClient, never()).increment(Constants.DATADOG_PREWARM_COLD_STARTS_AVOIDED);
+    }
+
+    @Test
+    public void testUnknownArchiveNotResolved() {
+        CczStore store = newStore(tempDir.resolve("store").toFile(), new InMemoryCczBlobStore(), 10);
+        assertNull(store.resolve("app/1-abc.ccz"));
+        verify(datadogStatsDClient).increment(Constants.DATADOG_CCZ_STORE_LOOKUPS, "tier:miss");
+    }
+
+    private CczStore newStore(File root, CczBlobStore sharedStore, int maxEntries) {
+        return new CczStore(new LocalDiskCczBlobStore(root), sharedStore, datadogStatsDClient,
+                maxEntries, Long.MAX_VALUE);
+    }
+
+    private String writeCcz(String version) {
+        try {
+            File file = Files.createTempFile(tempDir, "commcare_", ".ccz").toFile();
+            try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file))) {
+                zip.putNextEntry(new ZipEntry("profile.ccpr"));
+                String profile = String.format("<profile version=\"%s\"/>", version);
+                zip.write(profile.getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+            return file.getAbsolutePath();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package org.commcare.formplayer.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.timgroup.statsd.StatsDClient;
+
+import org.javarosa.core.reference.Reference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.StreamUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Tests for {@link FormplayerArchiveFileRoot}
+ */
+public class FormplayerArchiveFileRootTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final Map<String, String> redis = new HashMap<>();
+    private CczStore cczStore;
+    private FormplayerArchiveFileRoot archiveRoot;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+        doAnswer(invocation -> redis.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(valueOperations).set(anyString(), anyString());
+        when(valueOperations.get(anyString())).thenAnswer(invocation -> redis.get(invocation.getArgument(0)));
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+
+        // the store only has room for a single archive
+        cczStore = new CczStore(new LocalDiskCczBlobStore(tempDir.resolve("store").toFile()), null,
+                mock(StatsDClient.class), 1, Long.MAX_VALUE);
+        archiveRoot = new FormplayerArchiveFileRoot();
+        ReflectionTestUtils.setField(archiveRoot, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(archiveRoot, "cczStore", cczStore);
+        ReflectionTestUtils.setField(archiveRoot, "zipFileCache", new ZipFileCache(1000));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        for (String guid : redis.keySet()) {
+            forgetOpenArchive(guid.substring(guid.lastIndexOf(':') + 1));
+        }
+    }
+
+    @Test
+    public void testDeriveAfterEviction() throws Exception {
+        install("app1", "1");
+        install("app2", "2");
+        // archives downloaded but not installed, e.g. for previews, make room by evicting
+        cczStore.acquire("app3", "url", () -> writeCcz("3")).close();
+        cczStore.acquire("app4", "url", () -> writeCcz("4")).close();
+
+        // as on a later request once the installs' open archives have been released
+        forgetOpenArchive("app1");
+        forgetOpenArchive("app2");
+        assertEquals("1", readProfileVersion("app1"));
+        assertEquals("2", readProfileVersion("app2"));
+    }
+
+    @Test
+    public void testDeriveAfterReinstall() throws Exception {
+        install("app1", "1");
+        install("app1", "2");
+        forgetOpenArchive("app1");
+        assertEquals("2", readProfileVersion("app1"));
+        assertEquals(1, cczStore.size());
+    }
+
+    private void install(String appId, String version) throws IOException {
+        try (CczStore.Lease lease = cczStore.acquire(appId, "url", () -> writeCcz(version))) {
+            archiveRoot.addArchiveFile(new ZipFile(lease.getPath()), appId);
+        }
+    }
+
+    private String readProfileVersion(String guid) throws Exception {
+        Reference reference = archiveRoot.derive("jr://archive/" + guid + "/profile.ccpr");
+        assertTrue(reference.doesBinaryExist());
+        try (InputStream in = reference.getStream()) {
+            String profile = StreamUtils.copyToString(in, StandardCharsets.UTF_8);
+            return profile.replaceAll(".*version=\"([^\"]*)\".*", "$1");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void forgetOpenArchive(String guid) {
+        Map<String, ZipFile> guidToFolderMap =
+                (Map<String, ZipFile>)ReflectionTestUtils.getField(archiveRoot, "guidToFolderMap");
+        ZipFile zipFile = guidToFolderMap.remove(guid);
+        if (zipFile != null) {
+            try {
+                zipFile.close();
+            } catch (IOException e) {
+                // already closed
+            }
+        }
+    }
+
+    private String writeCcz(String version) {
+        try {
+            File file = Files.createTempFile(tempDir, "commcare_", ".ccz").toFile();
+            try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file))) {
+                zip.putNextEntry(new ZipEntry("profile.ccpr"));
+                zip.write(String.format("<profile version=\"%s\"/>", version).getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+            return file.getAbsolutePath();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package org.commcare.formplayer.engine;
+
+import static org.commcare.formplayer.utils.DbTestUtils.evaluate;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.javarosa.core.model.condition.EvaluationContext;
+import org.javarosa.core.model.data.StringData;
+import org.javarosa.core.model.instance.DataInstance;
+import org.javarosa.core.model.instance.ExternalDataInstance;
+import org.javarosa.core.model.instance.TreeElement;
+import org.javarosa.core.model.instance.TreeReference;
+import org.javarosa.xpath.XPathException;
+import org.javarosa.xpath.XPathParseTool;
+import org.javarosa.xpath.expr.XPathExpression;
+import org.javarosa.xpath.parser.XPathSyntaxException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Hashtable;
+
+/**
+ * Tests for {@link IndexedExternalTreeElement}
+ */
+public class IndexedExternalTreeElementTest {
+
+    private static final int CASE_COUNT = 2000;
+
+    @Test
+    public void testAttributeLookup() throws XPathSyntaxException {
+        IndexedExternalTreeElement root = index(buildResults());
+        EvaluationContext ec = buildContext(root);
+        evaluate("instance('results')/results/case[@case_id = 'c42']/name", "n2", ec);
+        evaluate("count(instance('results')/results/case[@case_id = 'missing'])", "0", ec);
+        evaluate("count(instance('results')/results/case['c42' = @case_id])", "1", ec);
+        assertEquals(3, root.getIndexedLookups());
+        // only equality is answered from the index
+        evaluate("count(instance('results')/results/case[@case_id != 'c42'])",
+                String.valueOf(CASE_COUNT - 1), ec);
+        assertEquals(3, root.getIndexedLookups());
+    }
+
+    @Test
+    public void testChildValueLookupWithRemainingPredicates() throws XPathSyntaxException {
+        IndexedExternalTreeElement root = index(buildResults());
+        EvaluationContext ec = buildContext(root);
+        evaluate("count(instance('results')/results/case[name = 'n3'])", String.valueOf(CASE_COUNT / 10), ec);
+        evaluate("count(instance('results')/results/case[name = 'n3'][@case_id = 'c13'])", "1", ec);
+        evaluate("instance('results')/results/case[name = 'n3'][2]/@case_id", "c13", ec);
+        assertEquals(3, root.getIndexedLookups());
+    }
+
+    @Test
+    public void testLookupFromAbsolutePath() throws XPathSyntaxException {
+        IndexedExternalTreeElement root = index(buildResults());
+        EvaluationContext ec = buildContext(root);
+        evaluate("instance('results')/results/case[@case_id = instance('results')/results/@selected]/name",
+                "n7", ec);
+        assertEquals(1, root.getIndexedLookups());
+    }
+
+    @Test
+    public void testMissingValuesMatchEmptyString() throws XPathSyntaxException {
+        TreeElement scannedRoot = buildResults();
+        TreeElement indexedRoot = buildResults();
+        addCase(scannedRoot, null, null);
+        addCase(indexedRoot, null, null);
+        EvaluationContext scanned = buildContext(scannedRoot);
+        IndexedExternalTreeElement indexedElement = index(indexedRoot);
+        EvaluationContext indexed = buildContext(indexedElement);
+
+        for (String expr : new String[]{
+                "count(instance('results')/results/case[@case_id = ''])",
+                "count(instance('results')/results/case[name = ''])",
+                "count(instance('results')/results/case[@case_id = instance('results')/results/@missing])"}) {
+            evaluate(expr, "1", scanned);
+            evaluate(expr, "1", indexed);
+        }
+        assertEquals(3, indexedElement.getIndexedLookups());
+    }
+
+    @Test
+    public void testRepeatedElementsFallBackToScan() throws XPathSyntaxException {
+        TreeElement scannedRoot = buildResults();
+        TreeElement indexedRoot = buildResults();
+        addCase(scannedRoot, "c-dup", "n3").addChild(element("name", 1, "n4"));
+        addCase(indexedRoot, "c-dup", "n3").addChild(element("name", 1, "n4"));
+        XPathExpression expr = XPathParseTool.parseXPath("count(instance('results')/results/case[name = 'n4'])");
+
+        IndexedExternalTreeElement indexed = index(indexedRoot);
+        assertThrows(XPathException.class, () -> expr.eval(buildContext(scannedRoot)));
+        assertThrows(XPathException.class, () -> expr.eval(buildContext(indexed)));
+        assertEquals(0, indexed.getIndexedLookups());
+        // attribute lookups on the same children are still answered
+        evaluate("instance('results')/results/case[@case_id = 'c-dup']/name[2]", "n4", buildContext(indexed));
+        assertEquals(1, indexed.getIndexedLookups());
+    }
+
+    private static IndexedExternalTreeElement index(TreeElement root) {
+        return (IndexedExternalTreeElement)IndexedExternalTreeElement.index(root);
+    }
+
+    private static TreeElement addCase(TreeElement root, String caseId, String name) {
+        TreeElement caseElement = new TreeElement("case", CASE_COUNT);
+        if (caseId != null) {
+            caseElement.setAttribute(null, "case_id", caseId);
+        }
+        if (name != null) {
+            caseElement.addChild(element("name", 0, name));
+        }
+        root.addChild(caseElement);
+        return caseElement;
+    }
+
+    private static TreeElement element(String name, int mult, String value) {
+        TreeElement element = new TreeElement(name, mult);
+        element.setValue(new StringData(value));
+        return element;
+    }
+
+    private static TreeElement buildResults() {
+        TreeElement root = new TreeElement("results");
+        root.setInstanceName("results");
+        root.setAttribute(null, "selected", "c17");
+        for (int i = 0; i < CASE_COUNT; i++) {
+            TreeElement caseElement = new TreeElement("case", i);
+            caseElement.setAttribute(null, "case_id", "c" + i);
+            TreeElement name = new TreeElement("name");
+            name.setValue(new StringData("n" + (i % 10)));
+            caseElement.addChild(name);
+            root.addChild(caseElement);
+        }
+        return root;
+    }
+
+    private static EvaluationContext buildContext(TreeElement root) {
+        Hashtable<String, DataInstance> instances = new Hashtable<>();
+        instances.put("results", new ExternalDataInstance("jr://instance/remote/results", "results", root));
+        return new EvaluationContext(new EvaluationContext(null), instances, TreeReference.rootRef());
+    }
+}
@@ -0,0 +1,115 @@
+package org.commcare.formplayer.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.StreamUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Tests for {@link ZipFileCache}
+ */
+public class ZipFileCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final AtomicLong now = new AtomicLong(0);
+    private ZipFileCache cache;
+    private String archivePath;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        cache = new ZipFileCache(1000, now::get);
+        File archive = tempDir.resolve("app.ccz").toFile();
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archive))) {
+            zip.putNextEntry(new ZipEntry("profile.ccpr"));
+            zip.write("<profile/>".getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+        archivePath = archive.getAbsolutePath();
+    }
+
+    @Test
+    public void testHandleReused() throws Exception {
+        ZipFile first;
+        try (ZipFileCache.Handle handle = cache.acquire(archivePath)) {
+            first = handle.getZipFile();
+        }
+        try (ZipFileCache.Handle handle = cache.acquire(archivePath)) {
+            assertSame(first, handle.getZipFile());
+        }
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testIdleHandleClosed() throws Exception {
+        ZipFile zipFile;
+        try (ZipFileCache.Handle handle = cache.acquire(archivePath)) {
+            zipFile = handle.getZipFile();
+        }
+        now.addAndGet(2000);
+        cache.closeIdle();
+        assertEquals(0, cache.size());
+        assertThrows(IllegalStateException.class, () -> zipFile.getEntry("profile.ccpr"));
+    }
+
+    @Test
+    public void testHandleInUseNotClosed() throws Exception {
+        ZipFileCache.Handle handle = cache.acquire(archivePath);
+        now.addAndGet(2000);
+        cache.closeIdle();
+        assertEquals(1, cache.size());
+        handle.getZipFile().getEntry("profile.ccpr");
+        handle.close();
+    }
+
+    @Test
+    public void testInvalidatedHandleClosedOnRelease() throws Exception {
+        ZipFileCache.Handle handle = cache.acquire(archivePath);
+        cache.invalidate(archivePath);
+        // still readable by the existing holder
+        handle.getZipFile().getEntry("profile.ccpr");
+        handle.close();
+        assertThrows(IllegalStateException.class, () -> handle.getZipFile().getEntry("profile.ccpr"));
+
+        try (ZipFileCache.Handle reopened = cache.acquire(archivePath)) {
+            assertNotSame(handle.getZipFile(), reopened.getZipFile());
+        }
+    }
+
+    @Test
+    public void testReferenceReadsAfterHandlesClosed() throws Exception {
+        CachedArchiveFileReference reference =
+                new CachedArchiveFileReference(cache, archivePath, "guid", "profile.ccpr");
+        assertTrue(reference.doesBinaryExist());
+
+        // the handle the reference used is closed once idle, or when the archive is invalidated
+        now.addAndGet(2000);
+        cache.closeIdle();
+        assertEquals(0, cache.size());
+        assertTrue(reference.doesBinaryExist());
+        assertFalse(new CachedArchiveFileReference(cache, archivePath, "guid", "missing.xml").doesBinaryExist());
+        cache.invalidate(archivePath);
+        try (InputStream in = reference.getStream()) {
+            assertEquals("<profile/>", StreamUtils.copyToString(in, StandardCharsets.UTF_8));
+        }
+        assertEquals(new File(archivePath, "profile.ccpr").getAbsolutePath(), reference.getLocalURI());
+    }
+}
@@ -0,0 +1,172 @@
+package org.commcare.formplayer.installers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.timgroup.statsd.StatsDClient;
+
+import org.commcare.formplayer.util.Constants;
+import org.commcare.formplayer.utils.FileUtils;
+import org.commcare.resources.model.Resource;
+import org.commcare.resources.model.ResourceLocation;
+import org.commcare.resources.model.ResourceTable;
+import org.commcare.util.CommCarePlatform;
+import org.javarosa.core.model.FormDef;
+import org.javarosa.core.reference.Reference;
+import org.javarosa.core.services.storage.IStorageUtilityIndexed;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Tests for {@link XFormPreparser} and the {@link FormplayerXFormInstaller} writing its forms
+ */
+public class XFormPreparserTest {
+
+    private static final String ARCHIVE_ROOT = "jr://archive/guid/";
+    private static final String[] FORMS = {"xforms/basic.xml", "xforms/hidden_value_form.xml",
+            "xforms/question_types.xml"};
+    private static final String[] TITLES = {"Basic Form", "Survey", "Question Types"};
+
+    @TempDir
+    Path tempDir;
+
+    private final StatsDClient datadogStatsDClient = mock(StatsDClient.class);
+    private final List<String> parseThreads = Collections.synchronizedList(new ArrayList<>());
+    private final XFormPreparser preparser = new XFormPreparser(4, datadogStatsDClient) {
+        @Override
+        public FormDef parseEntry(ZipFile zip, String entryName) throws Exception {
+            parseThreads.add(Thread.currentThread().getName());
+            // forms listed first finish parsing last
+            int position = Integer.parseInt(entryName.replaceAll("\\D", ""));
+            Thread.sleep(50L * (FORMS.length - position));
+            return super.parseEntry(zip, entryName);
+        }
+    };
+
+    @AfterEach
+    public void tearDown() {
+        preparser.shutdown();
+    }
+
+    @Test
+    public void testFormsParsedOnPool() throws Exception {
+        try (ZipFile zip = writeArchive(FORMS)) {
+            XFormPreparser.PreparsedXForms preparsed = preparser.parse(zip, ARCHIVE_ROOT);
+
+            assertEquals(FORMS.length, preparsed.size());
+            assertEquals(FORMS.length, parseThreads.size());
+            for (String thread : parseThreads) {
+                assertTrue(thread.startsWith("xform-parse-"), thread);
+            }
+            // in suite order regardless of which form finished parsing first
+            for (int i = 0; i < FORMS.length; i++) {
+                assertEquals(TITLES[i], preparsed.getAllForms().get(i).getTitle());
+            }
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFormsWrittenInResourceTableOrder() throws Exception {
+        IStorageUtilityIndexed<FormDef> storage = mock(IStorageUtilityIndexed.class);
+        CommCarePlatform platform = mock(CommCarePlatform.class, Mockito.RETURNS_DEEP_STUBS);
+        doReturn(storage).when(platform.getStorageManager()).getStorage(FormDef.STORAGE_KEY);
+        ResourceTable table = mock(ResourceTable.class);
+
+        try (ZipFile zip = writeArchive(FORMS)) {
+            XFormPreparser.PreparsedXForms preparsed = preparser.parse(zip, ARCHIVE_ROOT);
+            for (int i = 0; i < FORMS.length; i++) {
+                String location = "./modules-0/forms-" + i + ".xml";
+                Reference reference = mock(Reference.class);
+                when(reference.getURI()).thenReturn(ARCHIVE_ROOT + location);
+                new FormplayerXFormInstaller(preparsed).install(mock(Resource.class),
+                        new ResourceLocation(ResourceLocation.AUTHORITY_LOCAL, location), reference, table,
+                        platform, false, false);
+            }
+            assertEquals(0, preparsed.size());
+        }
+
+        ArgumentCaptor<FormDef> written = ArgumentCaptor.forClass(FormDef.class);
+        verify(storage, times(FORMS.length)).write(written.capture());
+        for (int i = 0; i < FORMS.length; i++) {
+            assertEquals(TITLES[i], written.getAllValues().get(i).getTitle());
+        }
+        verify(datadogStatsDClient, times(FORMS.length)).increment(
+                Constants.DATADOG_INSTALL_XFORM_PREPARSED_LOOKUPS, "result:hit");
+    }
+
+    @Test
+    public void testBadFormFailsParse() throws Exception {
+        try (ZipFile zip = writeArchive(FORMS[0], null, FORMS[2])) {
+            assertThrows(RuntimeException.class, () -> preparser.parse(zip, ARCHIVE_ROOT));
+        }
+    }
+
+    @Test
+    public void testUnmatchedReferenceCounted() throws Exception {
+        try (ZipFile zip = writeArchive(FORMS[0])) {
+            XFormPreparser.PreparsedXForms preparsed = preparser.parse(zip, ARCHIVE_ROOT);
+
+            assertNull(preparsed.take(ARCHIVE_ROOT + "modules-1/forms-0.xml"));
+            verify(datadogStatsDClient).increment(Constants.DATADOG_INSTALL_XFORM_PREPARSED_LOOKUPS,
+                    "result:miss");
+            verify(datadogStatsDClient, never()).increment(Constants.DATADOG_INSTALL_XFORM_PREPARSED_LOOKUPS,
+                    "result:hit");
+            assertNotNull(preparsed.take(ARCHIVE_ROOT + "./modules-0/forms-0.xml"));
+        }
+    }
+
+    /**
+     * Write an archive whose suite lists the forms as modules-0/forms-N.xml, a null form is
+     * written as a file that isn't an XForm
+     */
+    private ZipFile writeArchive(String... forms) throws Exception {
+        File file = tempDir.resolve("app.ccz").toFile();
+        StringBuilder suite = new StringBuilder("<suite>");
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file))) {
+            for (int i = 0; i < forms.length; i++) {
+                String location = "./modules-0/forms-" + i + ".xml";
+                suite.append("<xform><resource id=\"form").append(i).append("\">")
+                        .append("<location authority=\"local\">").append(location).append("</location>")
+                        .append("<location authority=\"remote\">").append(location).append("</location>")
+                        .append("</resource></xform>");
+                String xml = forms[i] == null ? "<h:html>not a form" : FileUtils.getFile(getClass(), forms[i]);
+                write(zip, location.substring(2), xml);
+            }
+            suite.append("</suite>");
+            write(zip, "suite.xml", suite.toString());
+            write(zip, "profile.ccpr", "<profile><suite><resource id=\"suite\">"
+                    + "<location authority=\"local\">./suite.xml</location></resource></suite></profile>");
+        }
+        return new ZipFile(file);
+    }
+
+    private static void write(ZipOutputStream zip, String entryName, String contents) throws Exception {
+        zip.putNextEntry(new ZipEntry(entryName));
+        zip.write(contents.getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+}
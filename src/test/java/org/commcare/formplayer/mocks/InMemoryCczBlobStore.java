@@ -0,0 +1,51 @@
+package org.commcare.formplayer.mocks;
+
+import org.commcare.formplayer.engine.CczBlobStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process {@link CczBlobStore} for tests that need a shared tier without a shared file system
+ */
+public class InMemoryCczBlobStore implements CczBlobStore {
+
+    private final Map<String, byte[]> blobs = new ConcurrentHashMap<>();
+
+    @Override
+    public String getTierName() {
+        return "shared";
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return blobs.containsKey(key);
+    }
+
+    @Override
+    public boolean copyTo(String key, File target) throws IOException {
+        byte[] blob = blobs.get(key);
+        if (blob == null) {
+            return false;
+        }
+        Files.write(target.toPath(), blob);
+        return true;
+    }
+
+    @Override
+    public void put(String key, File source) throws IOException {
+        blobs.put(key, Files.readAllBytes(source.toPath()));
+    }
+
+    @Override
+    public void delete(String key) {
+        blobs.remove(key);
+    }
+
+    public int size() {
+        return blobs.size();
+    }
+}
@@ -46,7 +46,7 @@ public class FormDefinitionRepoTest {
                 "appId",
                 "formXmlns",
                 "formVersion",
-                "formDef"
+                "formDef".getBytes()
         );
         formDefinitionRepo.saveAndFlush(formDef);
         entityManager.clear(); // clear the EM cache to force a re-fetch from DB
@@ -67,7 +67,7 @@ public class FormDefinitionRepoTest {
                 "appId",
                 "formXmlns",
                 "formVersion",
-                "formDef"
+                "formDef".getBytes()
         );
         formDefinitionRepo.save(formDef);
         Optional<SerializableFormDefinition> optFormDef = formDefinitionRepo.findByAppIdAndFormXmlnsAndFormVersion(
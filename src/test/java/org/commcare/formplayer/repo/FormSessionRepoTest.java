@@ -208,7 +208,7 @@ public class FormSessionRepoTest {
                 "appId",
                 "formXmlns",
                 "formVersion",
-                "formXml"
+                "formXml".getBytes()
         );
         this.formDefinitionRepo.save(formDef);
         SerializableFormSession session = getSession();
@@ -223,7 +223,7 @@ public class FormSessionRepoTest {
         assertThat(formDefOnSession.getAppId()).isEqualTo("appId");
         assertThat(formDefOnSession.getFormXmlns()).isEqualTo("formXmlns");
         assertThat(formDefOnSession.getFormVersion()).isEqualTo("formVersion");
-        assertThat(formDefOnSession.getSerializedFormDef()).isEqualTo("formXml");
+        assertThat(formDefOnSession.getSerializedFormDef()).isEqualTo("formXml".getBytes());
     }
 
     private SerializableFormSession getSession() {
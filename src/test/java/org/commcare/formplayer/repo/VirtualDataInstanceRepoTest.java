@@ -98,6 +98,27 @@ public class VirtualDataInstanceRepoTest {
         Assertions.assertTrue(loaded.isPresent());
     }
 
+    @Test
+    public void testLargeSelectionStoredCompactly() {
+        String[] selections = IntStream.range(0, 5000)
+                .mapToObj(i -> UUID.randomUUID().toString())
+                .toArray(String[]::new);
+        SerializableDataInstance savedInstance = virtualDataInstanceRepo.saveAndFlush(
+                getSerializableDataInstance(selections, UUID.randomUUID().toString()));
+
+        Integer storedBytes = jdbcTemplate.queryForObject(
+                "SELECT octet_length(instancexml) FROM " + POSTGRES_VIRTUAL_DATA_INSTANCE_TABLE_NAME
+                        + " WHERE id = ?", Integer.class, savedInstance.getId());
+        // the case ids alone are 180KB
+        assertThat(storedBytes).isLessThan(120 * 1024);
+
+        entityManager.clear(); // clear the EM cache to force a re-fetch from DB
+        Optional<SerializableDataInstance> loaded = virtualDataInstanceRepo.findByNamespacedKey(
+                savedInstance.getNamespacedKey());
+        Assertions.assertTrue(loaded.isPresent());
+        assertInstanceXml(savedInstance, loaded.get());
+    }
+
     @Test
     public void testDuplicateKey() {
         SerializableDataInstance savedInstance = virtualDataInstanceRepo.saveAndFlush(
@@ -111,7 +132,7 @@ public class VirtualDataInstanceRepoTest {
     }
 
     @Test
-    public void testDeleteByDateCreatedLessThan() {
+    public void testDeleteBatchOlderThan() {
         virtualDataInstanceRepo.deleteAll();
         Instant now = Instant.now();
         List<SerializableDataInstance> serializableDataInstances = IntStream.range(0, 5)
@@ -133,14 +154,18 @@ public class VirtualDataInstanceRepoTest {
                 String.class);
         assertThat(allIds.size()).isEqualTo(5);
 
-        int deleted = virtualDataInstanceRepo.deleteSessionsOlderThan(now.minus(2, ChronoUnit.DAYS));
-        assertThat(deleted).isEqualTo(2);
+        // each batch deletes at most the limit
+        Instant cutoff = now.minus(2, ChronoUnit.DAYS);
+        assertThat(virtualDataInstanceRepo.deleteBatchOlderThan(cutoff, 1)).isEqualTo(1);
+        assertThat(virtualDataInstanceRepo.deleteBatchOlderThan(cutoff, 1)).isEqualTo(1);
+        assertThat(virtualDataInstanceRepo.deleteBatchOlderThan(cutoff, 1)).isEqualTo(0);
         entityManager.flush();
 
         List<String> remainingIds = jdbcTemplate.queryForList(
                 "SELECT id FROM " + POSTGRES_VIRTUAL_DATA_INSTANCE_TABLE_NAME,
                 String.class);
-        assertThat(remainingIds.size()).isEqualTo(3);
+        assertThat(remainingIds).containsExactlyInAnyOrder(
+                savedInstances.get(0).getId(), savedInstances.get(1).getId(), savedInstances.get(2).getId());
     }
 
     private SerializableDataInstance getSerializableDataInstance(int i) {
@@ -0,0 +1,75 @@
+package org.commcare.formplayer.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+
+import java.util.Collections;
+import java.util.Random;
+
+/**
+ * Tests for {@link CaseSearchRedisCache}
+ */
+@SuppressWarnings("unchecked")
+public class CaseSearchRedisCacheTest {
+
+    private final RedisTemplate<String, byte[]> redisTemplate = mock(RedisTemplate.class);
+    private final HashOperations<String, Object, Object> hashOperations = mock(HashOperations.class);
+    private final RedisOperations<String, byte[]> pipeline = mock(RedisOperations.class);
+    private final CaseSearchRedisCache cache = new CaseSearchRedisCache(redisTemplate, 300, 64 * 1024);
+
+    @BeforeEach
+    public void setUp() {
+        when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+        when(pipeline.opsForHash()).thenReturn(hashOperations);
+        when(redisTemplate.executePipelined(any(SessionCallback.class))).thenAnswer(invocation -> {
+            ((SessionCallback<Object>)invocation.getArgument(0)).execute(pipeline);
+            return Collections.emptyList();
+        });
+    }
+
+    @Test
+    public void testStoredCompressed() {
+        byte[] serialized = new byte[32 * 1024];
+        cache.put("user", "query", serialized);
+
+        ArgumentCaptor<Object> payload = ArgumentCaptor.forClass(Object.class);
+        verify(hashOperations).put(eq("case_search:user"), eq("query"), payload.capture());
+        assertTrue(((byte[])payload.getValue()).length < serialized.length);
+
+        when(hashOperations.get("case_search:user", "query")).thenReturn(payload.getValue());
+        assertArrayEquals(serialized, cache.get("user", "query"));
+    }
+
+    @Test
+    public void testLargePayloadsNotShared() {
+        byte[] serialized = new byte[128 * 1024];
+        new Random(0).nextBytes(serialized);
+        cache.put("user", "query", serialized);
+
+        verify(redisTemplate, never()).executePipelined(any(SessionCallback.class));
+    }
+
+    @Test
+    public void testRedisErrorsAreMisses() {
+        when(hashOperations.get("case_search:user", "query"))
+                .thenThrow(new RedisConnectionFailureException("down"));
+
+        assertNull(cache.get("user", "query"));
+    }
+}
@@ -0,0 +1,83 @@
+package org.commcare.formplayer.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.commcare.formplayer.beans.menus.EntityDetailListResponse;
+import org.commcare.formplayer.session.MenuSession;
+import org.commcare.session.SessionFrame;
+import org.commcare.suite.model.StackFrameStep;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Tests for {@link DetailResponseCache}
+ */
+public class DetailResponseCacheTest {
+
+    private final DetailResponseCache cache = new DetailResponseCache(100, 600);
+    private final AtomicInteger renders = new AtomicInteger();
+    private final Supplier<EntityDetailListResponse> renderer = () -> {
+        renders.incrementAndGet();
+        return new EntityDetailListResponse();
+    };
+    private MenuSession menuSession;
+
+    @BeforeEach
+    public void setUp() {
+        menuSession = mock(MenuSession.class);
+    }
+
+    @Test
+    public void testHit() {
+        EntityDetailListResponse first = cache.getOrRender(key("db:1:token", "case1"), menuSession, renderer);
+        EntityDetailListResponse second = cache.getOrRender(key("db:1:token", "case1"), menuSession, renderer);
+
+        assertSame(first, second);
+        assertEquals(1, renders.get());
+        // the detail of another case is rendered
+        cache.getOrRender(key("db:1:token", "case2"), menuSession, renderer);
+        assertEquals(2, renders.get());
+    }
+
+    @Test
+    public void testSandboxWriteRendersAgain() {
+        EntityDetailListResponse before = cache.getOrRender(key("db:1:token", "case1"), menuSession, renderer);
+        // writing to the sandbox moves it onto a new version
+        EntityDetailListResponse after = cache.getOrRender(key("db:2:token", "case1"), menuSession, renderer);
+
+        assertNotSame(before, after);
+        assertEquals(2, renders.get());
+    }
+
+    @Test
+    public void testHereFunctionNotCached() {
+        when(menuSession.hereFunctionEvaluated()).thenReturn(true);
+        cache.getOrRender(key("db:1:token", "case1"), menuSession, renderer);
+        cache.getOrRender(key("db:1:token", "case1"), menuSession, renderer);
+
+        assertEquals(2, renders.get());
+        assertEquals(0L, cache.size());
+    }
+
+    @Test
+    public void testUncacheableKeyRendered() {
+        cache.getOrRender(null, menuSession, renderer);
+        cache.getOrRender(null, menuSession, renderer);
+
+        assertEquals(2, renders.get());
+    }
+
+    private static DetailResponseCache.Key key(String sandboxVersion, String selection) {
+        SessionFrame frame = new SessionFrame();
+        frame.pushStep(new StackFrameStep(SessionFrame.STATE_COMMAND_ID, "m0", null));
+        return new DetailResponseCache.Key(sandboxVersion + "|app|1|null", "m0_case_long", frame, selection,
+                "en", false, false);
+    }
+}
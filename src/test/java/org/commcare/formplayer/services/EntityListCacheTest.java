@@ -0,0 +1,133 @@
+package org.commcare.formplayer.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.commcare.session.SessionFrame;
+import org.commcare.suite.model.Detail;
+import org.commcare.suite.model.StackFrameStep;
+import org.javarosa.core.model.condition.EvaluationContext;
+import org.javarosa.core.model.instance.ExternalDataInstance;
+import org.javarosa.core.model.instance.TreeReference;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataOutputStream;
+
+/**
+ * Tests for {@link EntityListCache}
+ */
+public class EntityListCacheTest {
+
+    @Test
+    public void testSandboxWriteMissesCache() {
+        EntityListCache cache = new EntityListCache(1024 * 1024, 600);
+        cache.put(key("db:1:token", 0, null), new int[]{2, 0, 1}, 3);
+
+        assertArrayEquals(new int[]{2, 0, 1}, cache.get(key("db:1:token", 0, null)).getRows());
+        assertArrayEquals(new int[]{2, 0, 1}, cache.get(key("db:1:token", 0, "")).getRows());
+        assertNull(cache.get(key("db:2:token", 0, null)));
+        assertNull(cache.get(key("db:1:token", -1, null)));
+        assertNull(cache.get(key("db:1:token", 0, "bob")));
+    }
+
+    @Test
+    public void testKeyedOnSessionAndDate() {
+        EntityListCache cache = new EntityListCache(1024 * 1024, 600);
+        cache.put(key("db:1:token", 0, null), new int[]{2, 0, 1}, 3);
+
+        // sort fields can refer to the selected parent case and to today()
+        SessionFrame otherParent = frame();
+        otherParent.pushStep(new StackFrameStep(SessionFrame.STATE_DATUM_VAL, "case_id", "parent2"));
+        assertNull(cache.get(new EntityListCache.Key("db:1:token", "m0_case_short", "hash", otherParent,
+                "2024-01-01", 0, null, false, "en")));
+        assertNull(cache.get(new EntityListCache.Key("db:1:token", "m0_case_short", "hash", frame(),
+                "2024-01-02", 0, null, false, "en")));
+    }
+
+    @Test
+    public void testDetailsReferringToNowDetected() throws Exception {
+        assertTrue(EntityListCache.refersToNow(detail("date(now()) - date(today())")));
+        assertTrue(EntityListCache.refersToNow(detail("now ()")));
+        assertFalse(EntityListCache.refersToNow(detail("today() - date(./dob)")));
+        assertFalse(EntityListCache.refersToNow(detail("./known(")));
+    }
+
+    @Test
+    public void testBoundedByWeight() {
+        EntityListCache cache = new EntityListCache(64 * 1024, 600);
+        for (int i = 0; i < 10; i++) {
+            cache.put(key("db:" + i + ":token", 0, null), new int[4096], 4096);
+        }
+        // each entry weighs about 16KB
+        assertTrue(cache.size() <= 3);
+        assertTrue(cache.size() > 0);
+    }
+
+    @Test
+    public void testPartialListCoversEarlierPages() {
+        EntityListCache cache = new EntityListCache(1024 * 1024, 600);
+        cache.put(key("db:1:token", 0, null), new int[]{4, 2, 7}, 50);
+        EntityListCache.SortedRows sortedRows = cache.get(key("db:1:token", 0, null));
+
+        assertEquals(50, sortedRows.getTotal());
+        assertTrue(sortedRows.covers(3));
+        assertFalse(sortedRows.covers(4));
+
+        cache.put(key("db:1:token", 0, "bob"), new int[]{4, 2}, 2);
+        assertTrue(cache.get(key("db:1:token", 0, "bob")).covers(10));
+    }
+
+    @Test
+    public void testOnlySandboxInstancesCached() {
+        EvaluationContext ec = mock(EvaluationContext.class);
+        instance(ec, "casedb", "jr://instance/casedb");
+        instance(ec, "lookup", "jr://fixture/item-list:lookup");
+        instance(ec, "results", "jr://instance/remote/results");
+        instance(ec, "selected_cases", "jr://instance/selected-entities/selected_cases");
+
+        assertTrue(EntityListCache.isSandboxReference(ec, reference("casedb")));
+        assertTrue(EntityListCache.isSandboxReference(ec, reference("lookup")));
+        assertFalse(EntityListCache.isSandboxReference(ec, reference("results")));
+        assertFalse(EntityListCache.isSandboxReference(ec, reference("selected_cases")));
+        assertFalse(EntityListCache.isSandboxReference(ec, reference("missing")));
+    }
+
+    private static void instance(EvaluationContext ec, String instanceName, String source) {
+        ExternalDataInstance instance = mock(ExternalDataInstance.class);
+        when(instance.getReference()).thenReturn(source);
+        when(ec.getInstance(instanceName)).thenReturn(instance);
+    }
+
+    private static TreeReference reference(String instanceName) {
+        TreeReference reference = mock(TreeReference.class);
+        when(reference.getInstanceName()).thenReturn(instanceName);
+        return reference;
+    }
+
+    private static Detail detail(String expression) throws Exception {
+        Detail detail = mock(Detail.class);
+        doAnswer(invocation -> {
+            ((DataOutputStream)invocation.getArgument(0)).writeUTF(expression);
+            return null;
+        }).when(detail).writeExternal(any());
+        return detail;
+    }
+
+    private static SessionFrame frame() {
+        SessionFrame frame = new SessionFrame();
+        frame.pushStep(new StackFrameStep(SessionFrame.STATE_COMMAND_ID, "m0", null));
+        return frame;
+    }
+
+    private static EntityListCache.Key key(String sandboxVersion, int sortIndex, String searchText) {
+        return new EntityListCache.Key(sandboxVersion, "m0_case_short", "hash", frame(), "2024-01-01",
+                sortIndex, searchText, false, "en");
+    }
+}
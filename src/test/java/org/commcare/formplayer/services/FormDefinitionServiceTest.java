@@ -16,7 +16,7 @@ import org.commcare.formplayer.objects.SerializableFormDefinition;
 import org.commcare.formplayer.objects.SerializableFormSession;
 import org.commcare.formplayer.repo.FormDefinitionRepo;
 import org.commcare.formplayer.util.PrototypeUtils;
-import org.commcare.formplayer.util.serializer.FormDefStringSerializer;
+import org.commcare.formplayer.util.serializer.FormDefSerializer;
 import org.commcare.formplayer.utils.FileUtils;
 import org.javarosa.core.api.ClassNameHasher;
 import org.javarosa.core.model.FormDef;
@@ -218,6 +218,19 @@ public class FormDefinitionServiceTest {
         assertThat(getCachedFormDefinition(sessionId)).isNotEmpty();
     }
 
+    @Test
+    public void testGetFormDefUncompressed() throws Exception {
+        // rows converted from the old text column are stored without compression
+        SerializableFormDefinition formDef = new SerializableFormDefinition(
+                this.appId, this.formXmlns, this.formVersion, FormDefSerializer.serialize(this.formDef, false)
+        );
+        SerializableFormSession session = new SerializableFormSession(UUID.randomUUID().toString());
+        session.setFormDefinition(formDef);
+
+        FormDef deserializedFormDef = this.formDefinitionService.getFormDef(session);
+        assertEquals(this.formDef.getMainInstance().getRoot(), deserializedFormDef.getMainInstance().getRoot());
+    }
+
     @Test
     public void testGetFormDefBrokenSerialization() {
         SerializableFormSession session = createSessionWithBrokenFormDef();
@@ -239,8 +252,8 @@ public class FormDefinitionServiceTest {
         SerializableFormDefinition updatedFormDef = this.formDefinitionService.getOrCreateFormDefinition(
                 this.appId, this.formXmlns, this.formVersion, this.formDef
         );
-        assertEquals(updatedFormDef.getSerializedFormDef(),
-                FormDefStringSerializer.serialize(reSerializedFormDef));
+        assertEquals(reSerializedFormDef.getMainInstance().getRoot(),
+                FormDefSerializer.deserialize(updatedFormDef.getSerializedFormDef()).getMainInstance().getRoot());
 
     }
 
@@ -254,8 +267,9 @@ public class FormDefinitionServiceTest {
                 appId, formXmlns, formVersion
         );
         assertTrue(cachedFormDefinition.isPresent());
-        assertEquals(cachedFormDefinition.get().getSerializedFormDef(),
-                FormDefStringSerializer.serialize(reSerializedFormDef));
+        assertEquals(reSerializedFormDef.getMainInstance().getRoot(),
+                FormDefSerializer.deserialize(cachedFormDefinition.get().getSerializedFormDef())
+                        .getMainInstance().getRoot());
 
     }
 
@@ -263,7 +277,7 @@ public class FormDefinitionServiceTest {
         SerializableFormDefinition formDef = this.formDefinitionService.getOrCreateFormDefinition(
                 this.appId, this.formXmlns, this.formVersion, this.formDef
         );
-        ReflectionTestUtils.setField(formDef, "serializedFormDef", "not a form def");
+        ReflectionTestUtils.setField(formDef, "serializedFormDef", "not a form def".getBytes());
 
         formDefinitionRepo.save(formDef);
 
@@ -0,0 +1,67 @@
+package org.commcare.formplayer.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import com.timgroup.statsd.StatsDClient;
+
+import org.commcare.formplayer.objects.SerializableFormSession;
+import org.commcare.formplayer.session.FormSession;
+import org.commcare.formplayer.util.Constants;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Tests for {@link FormSessionCache}
+ */
+public class FormSessionCacheTest {
+
+    private final StatsDClient datadogStatsDClient = mock(StatsDClient.class);
+    private final FormSessionCache cache = new FormSessionCache(10, 600, datadogStatsDClient);
+
+    @Test
+    public void testTakenAtSavedVersion() {
+        FormSession formSession = mock(FormSession.class);
+        cache.put(formSession, session("s1", 3), "sandbox:1");
+        verify(formSession).closeConnections();
+
+        assertSame(formSession, cache.take(session("s1", 3), "sandbox:1"));
+        verify(datadogStatsDClient).increment(Constants.DATADOG_FORM_SESSION_CACHE_LOOKUPS, "result:hit");
+
+        // taken sessions are not shared with other requests
+        assertNull(cache.take(session("s1", 3), "sandbox:1"));
+        verify(datadogStatsDClient).increment(Constants.DATADOG_FORM_SESSION_CACHE_LOOKUPS, "result:miss");
+    }
+
+    @Test
+    public void testStaleSessionsDropped() {
+        cache.put(mock(FormSession.class), session("s1", 3), "sandbox:1");
+        cache.put(mock(FormSession.class), session("s2", 3), "sandbox:1");
+
+        // saved elsewhere since
+        assertNull(cache.take(session("s1", 4), "sandbox:1"));
+        // synced since
+        assertNull(cache.take(session("s2", 3), "sandbox:2"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testDisabled() {
+        FormSessionCache disabled = new FormSessionCache(0, 600, datadogStatsDClient);
+        disabled.put(mock(FormSession.class), session("s1", 3), "sandbox:1");
+
+        assertFalse(disabled.isEnabled());
+        assertNull(disabled.take(session("s1", 3), "sandbox:1"));
+    }
+
+    private static SerializableFormSession session(String id, int version) {
+        SerializableFormSession session = new SerializableFormSession();
+        ReflectionTestUtils.setField(session, "id", id);
+        ReflectionTestUtils.setField(session, "version", version);
+        return session;
+    }
+}
@@ -0,0 +1,71 @@
+package org.commcare.formplayer.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import com.timgroup.statsd.StatsDClient;
+
+import org.commcare.formplayer.util.Constants;
+import org.commcare.session.SessionFrame;
+import org.commcare.suite.model.StackFrameStep;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link GraphHtmlCache}
+ */
+public class GraphHtmlCacheTest {
+
+    private final StatsDClient datadogStatsDClient = mock(StatsDClient.class);
+    private final GraphHtmlCache cache = new GraphHtmlCache(1024 * 1024, 600, datadogStatsDClient);
+
+    @Test
+    public void testKeyedOnCaseAndSandbox() {
+        cache.put(key("db:1:token", 2, "/casedb/case[1]"), "<html/>");
+
+        assertEquals("<html/>", cache.get(key("db:1:token", 2, "/casedb/case[1]")));
+        assertNull(cache.get(key("db:2:token", 2, "/casedb/case[1]")));
+        assertNull(cache.get(key("db:1:token", 3, "/casedb/case[1]")));
+        assertNull(cache.get(key("db:1:token", 2, "/casedb/case[2]")));
+
+        verify(datadogStatsDClient).increment(Constants.DATADOG_GRAPH_CACHE_LOOKUPS, "result:hit");
+        verify(datadogStatsDClient).gauge(Constants.DATADOG_GRAPH_CACHE_SIZE, 1L);
+    }
+
+    @Test
+    public void testKeyedOnSessionAndDate() {
+        cache.put(key("db:1:token", 2, "/casedb/case[1]"), "<html/>");
+
+        // graphs can refer to the selected parent case and to today()
+        SessionFrame otherParent = frame();
+        otherParent.pushStep(new StackFrameStep(SessionFrame.STATE_DATUM_VAL, "case_id", "parent2"));
+        assertNull(cache.get(new GraphHtmlCache.Key("db:1:token", "m0_case_short", 2, "/casedb/case[1]",
+                otherParent, "2024-01-01", "en")));
+        assertNull(cache.get(new GraphHtmlCache.Key("db:1:token", "m0_case_short", 2, "/casedb/case[1]",
+                frame(), "2024-01-02", "en")));
+    }
+
+    @Test
+    public void testBoundedByWeight() {
+        GraphHtmlCache small = new GraphHtmlCache(64 * 1024, 600, datadogStatsDClient);
+        String html = new String(new char[8 * 1024]);
+        for (int i = 0; i < 10; i++) {
+            small.put(key("db:1:token", 0, "/casedb/case[" + i + "]"), html);
+        }
+        // each entry weighs about 16KB
+        assertTrue(small.size() <= 3);
+    }
+
+    private static SessionFrame frame() {
+        SessionFrame frame = new SessionFrame();
+        frame.pushStep(new StackFrameStep(SessionFrame.STATE_COMMAND_ID, "m0", null));
+        return frame;
+    }
+
+    private static GraphHtmlCache.Key key(String sandboxVersion, int column, String reference) {
+        return new GraphHtmlCache.Key(sandboxVersion, "m0_case_short", column, reference, frame(), "2024-01-01",
+                "en");
+    }
+}
@@ -0,0 +1,59 @@
+package org.commcare.formplayer.services;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.commcare.formplayer.objects.QueryData;
+import org.junit.jupiter.api.Test;
+
+import java.util.Hashtable;
+
+/**
+ * Tests for {@link NavigationSnapshotCache}
+ */
+public class NavigationSnapshotCacheTest {
+
+    private final NavigationSnapshotCache cache = new NavigationSnapshotCache(1024 * 1024, 600);
+
+    @Test
+    public void testSnapshotKeyedOnSelectionsAndVersion() {
+        NavigationSnapshotCache.Snapshot snapshot = snapshot();
+        cache.put(key("db:1:token", new String[]{"0", "1"}, null), snapshot);
+
+        assertSame(snapshot, cache.get(key("db:1:token", new String[]{"0", "1"}, null)));
+        assertNull(cache.get(key("db:2:token", new String[]{"0", "1"}, null)));
+        assertNull(cache.get(key("db:1:token", new String[]{"0", "2"}, null)));
+        assertNull(cache.get(key("db:1:token", new String[]{"0"}, null)));
+    }
+
+    @Test
+    public void testQueryDataComparedByContent() {
+        cache.put(key("db:1:token", new String[]{"0", "1"}, queryData("name", "bob", "dob", "2000-01-01")),
+                snapshot());
+
+        assertNotNull(cache.get(key("db:1:token", new String[]{"0", "1"},
+                queryData("dob", "2000-01-01", "name", "bob"))));
+        assertNull(cache.get(key("db:1:token", new String[]{"0", "1"},
+                queryData("name", "alice", "dob", "2000-01-01"))));
+        assertNull(cache.get(key("db:1:token", new String[]{"0", "1"}, null)));
+    }
+
+    private static NavigationSnapshotCache.Key key(String version, String[] selections, QueryData queryData) {
+        return new NavigationSnapshotCache.Key(version, "en", selections, false, false, queryData, null);
+    }
+
+    private static NavigationSnapshotCache.Snapshot snapshot() {
+        return new NavigationSnapshotCache.Snapshot(new byte[16], new String[]{"App"}, new String[]{"0"}, false);
+    }
+
+    private static QueryData queryData(String... inputs) {
+        Hashtable<String, String> values = new Hashtable<>();
+        for (int i = 0; i < inputs.length; i += 2) {
+            values.put(inputs[i], inputs[i + 1]);
+        }
+        QueryData queryData = new QueryData();
+        queryData.setInputs("search_command.m1", values);
+        return queryData;
+    }
+}
@@ -0,0 +1,193 @@
+package org.commcare.formplayer.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.timgroup.statsd.StatsDClient;
+
+import org.commcare.formplayer.beans.PrewarmStatusBean;
+import org.commcare.formplayer.engine.CczStore;
+import org.commcare.formplayer.installers.XFormPreparser;
+import org.commcare.formplayer.util.SessionUtils;
+import org.javarosa.core.model.FormDef;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Tests for {@link PrewarmService}
+ */
+public class PrewarmServiceTest {
+
+    private static final String HOST = "http://localhost:8000";
+
+    @TempDir
+    Path tempDir;
+
+    private PrewarmService prewarmService;
+    private CczStore cczStore;
+    private XFormPreparser xFormPreparser;
+    private FormDefinitionService formDefinitionService;
+    private HashOperations<String, Object, Object> hashOperations;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        cczStore = mock(CczStore.class);
+        xFormPreparser = mock(XFormPreparser.class);
+        formDefinitionService = mock(FormDefinitionService.class);
+        hashOperations = mock(HashOperations.class);
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        when(redisTemplate.<Object, Object>opsForHash()).thenReturn(hashOperations);
+
+        prewarmService = new PrewarmService();
+        ReflectionTestUtils.setField(prewarmService, "cczStore", cczStore);
+        ReflectionTestUtils.setField(prewarmService, "xFormPreparser", xFormPreparser);
+        ReflectionTestUtils.setField(prewarmService, "formDefinitionService", formDefinitionService);
+        ReflectionTestUtils.setField(prewarmService, "restTemplate", mock(RestTemplate.class));
+        ReflectionTestUtils.setField(prewarmService, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(prewarmService, "datadogStatsDClient", mock(StatsDClient.class));
+        ReflectionTestUtils.setField(prewarmService, "host", HOST);
+        ReflectionTestUtils.setField(prewarmService, "formPauseMs", 0L);
+        ReflectionTestUtils.setField(prewarmService, "maxAgeHours", 24L);
+
+        File archive = writeCcz("9");
+        CczStore.Lease lease = mock(CczStore.Lease.class);
+        when(lease.getPath()).thenReturn(archive.getAbsolutePath());
+        when(cczStore.acquireForPrewarm(anyString(), anyString(), any())).thenReturn(lease);
+        when(xFormPreparser.findFormEntries(any())).thenReturn(
+                Arrays.asList("modules-0/forms-0.xml", "modules-0/forms-1.xml"));
+        when(xFormPreparser.parseEntry(any(), anyString())).thenAnswer(
+                invocation -> mock(FormDef.class, Mockito.RETURNS_DEEP_STUBS));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        prewarmService.shutdown();
+    }
+
+    @Test
+    public void testPrewarmDownloadsLikeLiveInstall() throws Exception {
+        prewarmService.prewarm("domain", "app", "build");
+        PrewarmStatusBean status = awaitFinished("domain", "app", "build");
+
+        assertEquals(PrewarmStatusBean.State.complete, status.getState());
+        assertEquals(2, status.getFormsTotal());
+        assertEquals(2, status.getFormsProcessed());
+        // installs are keyed by the id in the download URL
+        verify(cczStore).acquireForPrewarm(eq("build"),
+                eq(SessionUtils.resolveInstallReference("build", HOST, "domain")), any());
+        verify(formDefinitionService, times(2)).getOrCreateFormDefinition(eq("build"), any(), eq("9"), any());
+    }
+
+    @Test
+    public void testRequestingAgainPrewarmsAgain() throws Exception {
+        prewarmService.prewarm("domain", "app", null);
+        awaitFinished("domain", "app", null);
+        // wait for the clock to move so the second request is later than the first
+        Thread.sleep(5);
+        prewarmService.prewarm("domain", "app", null);
+        assertEquals(PrewarmStatusBean.State.complete, awaitFinished("domain", "app", null).getState());
+
+        verify(cczStore, times(2)).acquireForPrewarm(eq("app"), anyString(), any());
+    }
+
+    @Test
+    public void testPollOnlyPrewarmsNewRequests() throws Exception {
+        prewarmService.prewarm("domain", "app", "build");
+        awaitFinished("domain", "app", "build");
+        ArgumentCaptor<Object> requestedAt = ArgumentCaptor.forClass(Object.class);
+        verify(hashOperations).put(anyString(), eq("domain|app|build"), requestedAt.capture());
+        long firstRequest = Long.parseLong((String)requestedAt.getValue());
+
+        // the request this node already prewarmed
+        when(hashOperations.entries(anyString())).thenReturn(
+                Collections.singletonMap("domain|app|build", String.valueOf(firstRequest)));
+        prewarmService.prewarmRequestedBuilds();
+        awaitFinished("domain", "app", "build");
+        verify(cczStore, times(1)).acquireForPrewarm(anyString(), anyString(), any());
+
+        // the build requested again through another node
+        when(hashOperations.entries(anyString())).thenReturn(
+                Collections.singletonMap("domain|app|build", String.valueOf(firstRequest + 1)));
+        prewarmService.prewarmRequestedBuilds();
+        PrewarmStatusBean status = awaitFinished("domain", "app", "build");
+        assertEquals(firstRequest + 1, status.getRequestedAt());
+        verify(cczStore, times(2)).acquireForPrewarm(anyString(), anyString(), any());
+    }
+
+    @Test
+    public void testFailedPrewarmReportedAndRetried() throws Exception {
+        when(cczStore.acquireForPrewarm(anyString(), anyString(), any()))
+                .thenThrow(new RuntimeException("download failed"));
+        prewarmService.prewarm("domain", "app", null);
+        PrewarmStatusBean status = awaitFinished("domain", "app", null);
+        assertEquals(PrewarmStatusBean.State.failed, status.getState());
+        assertEquals("download failed", status.getError());
+
+        when(hashOperations.entries(anyString())).thenReturn(Collections.singletonMap(
+                "domain|app|", String.valueOf(status.getRequestedAt())));
+        prewarmService.prewarmRequestedBuilds();
+        awaitFinished("domain", "app", null);
+        verify(cczStore, times(2)).acquireForPrewarm(anyString(), anyString(), any());
+    }
+
+    @Test
+    public void testExpiredRequestsForgotten() throws Exception {
+        long expired = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(25);
+        when(hashOperations.entries(anyString())).thenReturn(
+                Collections.singletonMap("domain|app|", String.valueOf(expired)));
+        prewarmService.prewarmRequestedBuilds();
+
+        verify(hashOperations).delete(anyString(), eq("domain|app|"));
+        assertEquals(PrewarmStatusBean.State.unknown, prewarmService.getStatus("domain", "app", null).getState());
+        verify(cczStore, never()).acquireForPrewarm(anyString(), anyString(), any());
+    }
+
+    private PrewarmStatusBean awaitFinished(String domain, String appId, String buildId)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+        PrewarmStatusBean status = prewarmService.getStatus(domain, appId, buildId);
+        while (!status.isFinished() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            status = prewarmService.getStatus(domain, appId, buildId);
+        }
+        assertTrue(status.isFinished(), "prewarm didn't finish, state " + status.getState());
+        return status;
+    }
+
+    private File writeCcz(String version) throws Exception {
+        File file = tempDir.resolve("build.ccz").toFile();
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file))) {
+            zip.putNextEntry(new ZipEntry("profile.ccpr"));
+            zip.write(String.format("<profile version=\"%s\"/>", version).getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+        return file;
+    }
+}
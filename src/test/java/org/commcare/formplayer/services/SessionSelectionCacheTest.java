@@ -0,0 +1,67 @@
+package org.commcare.formplayer.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for {@link SessionSelectionCache}
+ */
+public class SessionSelectionCacheTest {
+
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, String> redisTemplate = mock(RedisTemplate.class);
+    private final SessionSelectionCache cache = new SessionSelectionCache(redisTemplate, 60, 100);
+    private final AtomicInteger roundTrips = new AtomicInteger();
+
+    @Test
+    public void testPrefixesCheckedInOneRoundTrip() {
+        when(redisTemplate.executePipelined(any(SessionCallback.class)))
+                .thenReturn(Arrays.asList(true, true, false));
+
+        boolean[] confirmed = cache.getConfirmed("user", Arrays.asList("0", "0|1", "0|1|abc"), roundTrips);
+
+        assertArrayEquals(new boolean[]{true, true, false}, confirmed);
+        assertEquals(1, roundTrips.get());
+    }
+
+    @Test
+    public void testConfirmedSelectionsServedLocally() {
+        when(redisTemplate.executePipelined(any(SessionCallback.class)))
+                .thenReturn(Collections.emptyList());
+        cache.add("user", "0", roundTrips);
+        cache.add("user", "0|1", roundTrips);
+
+        boolean[] confirmed = cache.getConfirmed("user", Arrays.asList("0", "0|1"), roundTrips);
+
+        assertArrayEquals(new boolean[]{true, true}, confirmed);
+        // only the two writes went to Redis
+        assertEquals(2, roundTrips.get());
+    }
+
+    @Test
+    public void testClearInvalidatesNearCache() {
+        when(redisTemplate.executePipelined(any(SessionCallback.class)))
+                .thenReturn(Collections.emptyList(), Collections.singletonList(false));
+        cache.add("user", "0", roundTrips);
+        cache.clear("user", roundTrips);
+
+        boolean[] confirmed = cache.getConfirmed("user", Collections.singletonList("0"), roundTrips);
+
+        assertArrayEquals(new boolean[]{false}, confirmed);
+        verify(redisTemplate).delete("user");
+        verify(redisTemplate, times(2)).executePipelined(any(SessionCallback.class));
+    }
+}
@@ -8,6 +8,11 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import static java.util.Optional.ofNullable;
@@ -34,6 +39,7 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.FilterType;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.TestPropertySource;
@@ -44,6 +50,8 @@ import org.springframework.transaction.annotation.EnableTransactionManagement;
 import java.time.Instant;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Tests for {@link VirtualDataInstanceService}
@@ -68,6 +76,8 @@ public class VirtualDataInstanceServiceTest {
 
     @BeforeEach
     public void setUp() {
+        ReflectionTestUtils.setField(virtualDataInstanceService, "writeAttempts", 3);
+        ReflectionTestUtils.setField(virtualDataInstanceService, "retryDelayMs", 1L);
         when(storageFactory.getUsername()).thenAnswer(invocation -> "username");
         when(storageFactory.getDomain()).thenAnswer(invocation -> "domain");
         when(storageFactory.getAppId()).thenAnswer(invocation -> "appId");
@@ -128,6 +138,100 @@ public class VirtualDataInstanceServiceTest {
         assertEquals(externalDataInstance.getRoot(), fetchedRecord.getRoot());
     }
 
+    @Test
+    public void testContainsServedFromCache() {
+        String recordId = virtualDataInstanceService.write(buildSelectedEntitiesInstance(new String[]{"val1"}));
+
+        // the repo is mocked and reports nothing stored
+        assertTrue(virtualDataInstanceService.contains(recordId));
+        assertFalse(virtualDataInstanceService.contains("456"));
+    }
+
+    @Test
+    public void testReadBeforeStored() throws InterruptedException {
+        CountDownLatch stored = new CountDownLatch(1);
+        when(virtualDataInstanceRepo.save(any())).thenAnswer(invocation -> {
+            stored.await(10, TimeUnit.SECONDS);
+            return invocation.getArguments()[0];
+        });
+        ExternalDataInstance externalDataInstance = buildSelectedEntitiesInstance(new String[]{"val1", "val2"});
+        String recordId = virtualDataInstanceService.write(externalDataInstance);
+        cacheManager.getCache(VIRTUAL_DATA_INSTANCES_CACHE).clear();
+
+        // the write is still queued, the repo is mocked and reports nothing stored
+        try {
+            assertTrue(virtualDataInstanceService.contains(recordId));
+            ExternalDataInstance fetchedRecord = virtualDataInstanceService.read(recordId, "selected_cases");
+            assertEquals(externalDataInstance.getRoot(), fetchedRecord.getRoot());
+        } finally {
+            stored.countDown();
+        }
+    }
+
+    @Test
+    public void testFailedWriteRetried() {
+        SerializableDataInstance[] saved = new SerializableDataInstance[1];
+        // stubbed without calling save, which the default answer doesn't allow
+        doThrow(new RuntimeException("connection refused"))
+                .doThrow(new RuntimeException("connection refused"))
+                .doAnswer(invocation -> saved[0] = invocation.getArgument(0))
+                .when(virtualDataInstanceRepo).save(any());
+        String recordId = virtualDataInstanceService.write(buildSelectedEntitiesInstance(new String[]{"val1"}));
+
+        verify(virtualDataInstanceRepo, timeout(5000).times(3)).save(any());
+        assertEquals(virtualDataInstanceService.namespaceKey(recordId), saved[0].getNamespacedKey());
+    }
+
+    @Test
+    public void testFailedWriteGivenUp() throws InterruptedException {
+        doThrow(new RuntimeException("connection refused")).when(virtualDataInstanceRepo).save(any());
+        virtualDataInstanceService.write(buildSelectedEntitiesInstance(new String[]{"val1"}));
+
+        flushAndRestartWriters();
+        verify(virtualDataInstanceRepo, times(3)).save(any());
+    }
+
+    @Test
+    public void testDuplicateKeyNotRetried() throws InterruptedException {
+        doThrow(new DataIntegrityViolationException("duplicate key")).when(virtualDataInstanceRepo).save(any());
+        virtualDataInstanceService.write("123", buildSelectedEntitiesInstance(new String[]{"val1"}));
+
+        flushAndRestartWriters();
+        verify(virtualDataInstanceRepo, times(1)).save(any());
+    }
+
+    @Test
+    public void testFlushWaitsForRetries() throws InterruptedException {
+        ReflectionTestUtils.setField(virtualDataInstanceService, "retryDelayMs", 100L);
+        doThrow(new RuntimeException("connection refused"))
+                .doThrow(new RuntimeException("connection refused"))
+                .doAnswer(invocation -> invocation.getArgument(0))
+                .when(virtualDataInstanceRepo).save(any());
+        String recordId = virtualDataInstanceService.write(buildSelectedEntitiesInstance(new String[]{"val1"}));
+        cacheManager.getCache(VIRTUAL_DATA_INSTANCES_CACHE).clear();
+
+        // readable while the write is being retried
+        assertTrue(virtualDataInstanceService.contains(recordId));
+        flushAndRestartWriters();
+        verify(virtualDataInstanceRepo, times(3)).save(any());
+        // no longer pending and the repo is mocked, so only a stored instance would be found
+        assertFalse(virtualDataInstanceService.contains(recordId));
+    }
+
+    private void flushAndRestartWriters() throws InterruptedException {
+        try {
+            virtualDataInstanceService.flush();
+        } finally {
+            virtualDataInstanceService.startWriters();
+        }
+    }
+
+    @Test
+    public void testPurgeInBatches() {
+        when(virtualDataInstanceRepo.deleteBatchOlderThan(any(), anyInt())).thenReturn(10000, 10000, 3);
+        assertEquals(20003, virtualDataInstanceService.purge(Instant.now()));
+    }
+
     @Test
     public void testReadByDifferentUser() {
         testReadByDifferentSessionDetail(() -> {
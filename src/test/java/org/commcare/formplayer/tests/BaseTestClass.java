@@ -60,6 +60,7 @@ import org.commcare.formplayer.sandbox.SqlSandboxUtils;
 import org.commcare.formplayer.sandbox.UserSqlSandbox;
 import org.commcare.formplayer.services.CategoryTimingHelper;
 import org.commcare.formplayer.services.FormDefinitionService;
+import org.commcare.formplayer.services.FormSessionCache;
 import org.commcare.formplayer.services.FormSessionService;
 import org.commcare.formplayer.services.FormplayerRemoteInstanceFetcher;
 import org.commcare.formplayer.services.FormplayerStorageFactory;
@@ -79,7 +80,7 @@ import org.commcare.formplayer.util.FormplayerDatadog;
 import org.commcare.formplayer.util.NotificationLogger;
 import org.commcare.formplayer.util.PrototypeUtils;
 import org.commcare.formplayer.util.SessionUtils;
-import org.commcare.formplayer.util.serializer.FormDefStringSerializer;
+import org.commcare.formplayer.util.serializer.FormDefSerializer;
 import org.commcare.formplayer.util.serializer.SessionSerializer;
 import org.commcare.formplayer.utils.CheckedSupplier;
 import org.commcare.formplayer.utils.FileUtils;
@@ -133,6 +134,7 @@ import java.lang.reflect.Method;
 import java.net.URL;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -221,6 +223,9 @@ public class BaseTestClass {
     @Autowired
     protected VirtualDataInstanceService virtualDataInstanceService;
 
+    @Autowired
+    protected FormSessionCache formSessionCache;
+
     @InjectMocks
     protected FormController formController;
 
@@ -316,6 +321,16 @@ public class BaseTestClass {
             String[] selections = (String[])invocation.getArguments()[0];
             return sessionSelectionsCache.contains(String.join("|", selections));
         }).when(restoreFactoryMock).isConfirmedSelection(any(String[].class));
+
+        doAnswer(invocation -> {
+            String[] selections = (String[])invocation.getArguments()[0];
+            boolean[] confirmed = new boolean[selections.length];
+            for (int i = 0; i < selections.length; i++) {
+                confirmed[i] = sessionSelectionsCache.contains(
+                        String.join("|", Arrays.copyOfRange(selections, 0, i + 1)));
+            }
+            return confirmed;
+        }).when(restoreFactoryMock).getConfirmedSelectionPrefixes(any(String[].class));
     }
 
     /*
@@ -329,9 +344,11 @@ public class BaseTestClass {
             public SerializableFormSession answer(InvocationOnMock invocation) throws Throwable {
                 SerializableFormSession session =
                         (SerializableFormSession)invocation.getArguments()[0];
+                // this is normally taken care of by Hibernate
                 if (session.getId() == null) {
-                    // this is normally taken care of by Hibernate
                     ReflectionTestUtils.setField(session, "id", UUID.randomUUID().toString());
+                } else {
+                    ReflectionTestUtils.setField(session, "version", session.getVersion() + 1);
                 }
                 sessionMap.put(session.getId(), session);
                 return session;
@@ -381,11 +398,11 @@ public class BaseTestClass {
                     }
                 }
                 // else create a new one
-                String serializedFormDef;
+                byte[] serializedFormDef;
                 try {
-                    serializedFormDef = FormDefStringSerializer.serialize(((FormDef)invocation.getArguments()[3]));
+                    serializedFormDef = FormDefSerializer.serialize(((FormDef)invocation.getArguments()[3]), true);
                 } catch (IOException ex) {
-                    serializedFormDef = "could not serialize provided form def";
+                    serializedFormDef = "could not serialize provided form def".getBytes();
                 }
                 SerializableFormDefinition serializableFormDef = new SerializableFormDefinition(
                         appId, appVersion, xmlns, serializedFormDef
@@ -463,9 +480,11 @@ public class BaseTestClass {
             public SerializableMenuSession answer(InvocationOnMock invocation) throws Throwable {
                 SerializableMenuSession session =
                         (SerializableMenuSession)invocation.getArguments()[0];
+                // this is normally taken care of by Hibernate
                 if (session.getId() == null) {
-                    // this is normally taken care of by Hibernate
                     ReflectionTestUtils.setField(session, "id", UUID.randomUUID().toString());
+                } else {
+                    ReflectionTestUtils.setField(session, "version", session.getVersion() + 1);
                 }
                 menuSessionMap.put(session.getId(), session);
                 return session;
@@ -1195,6 +1214,8 @@ public class BaseTestClass {
 
     protected FormSession getFormSession(SerializableFormSession serializableFormSession)
             throws Exception {
+        // the rebuilt session shares its form definition with any live one
+        formSessionCache.evict(serializableFormSession.getId());
         FormplayerRemoteInstanceFetcher remoteInstanceFetcher = new FormplayerRemoteInstanceFetcher(
                 menuSessionRunnerService.getCaseSearchHelper(),
                 virtualDataInstanceService);
@@ -4,6 +4,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.Mockito.verifyNoInteractions;
 
@@ -97,6 +98,7 @@ public class CaseClaimNavigationTests extends BaseTestClass {
                 caseSearchHelper, "getCacheKey", "http://localhost:8000/a/test/phone/search/", data);
         Cache.ValueWrapper cachedValue = cacheManager.getCache("case_search").get(key);
         assertNotNull(cachedValue, "Expected cache to contain results for the instance");
+        assertTrue(cachedValue.get() instanceof byte[], "Expected results to be cached serialized");
 
         CommandListResponseBean commandListResponseBean;
         try (
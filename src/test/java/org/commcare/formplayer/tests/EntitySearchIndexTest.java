@@ -0,0 +1,102 @@
+package org.commcare.formplayer.tests;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.commcare.cases.entity.Entity;
+import org.commcare.cases.entity.NodeEntityFactory;
+import org.commcare.formplayer.util.EntitySearchIndex;
+import org.commcare.formplayer.util.EntityStringFilterer;
+import org.javarosa.core.model.instance.TreeReference;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Tests for {@link EntitySearchIndex}
+ */
+public class EntitySearchIndexTest {
+
+    private List<Entity<TreeReference>> entities;
+    private EntitySearchIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        entities = Arrays.asList(
+                entity("Alice Smith", "Nairobi"),
+                entity("Bob Jones", "Kampala"),
+                entity("Alicia Keys", "Kampala"),
+                entity("Carol ALICEA", "Mombasa")
+        );
+        // the sort field of a column may differ from its display text and is matched as well
+        when(entities.get(1).getSortField(0)).thenReturn("Jones, Robert");
+        index = EntitySearchIndex.build(entities, Locale.getDefault());
+    }
+
+    @Test
+    public void testCandidatesMatchEveryTerm() {
+        assertArrayEquals(new int[]{0, 2, 3}, index.getCandidates(new String[]{"alic"}));
+        assertArrayEquals(new int[]{2}, index.getCandidates(new String[]{"alic", "kampala"}));
+        assertArrayEquals(new int[]{1}, index.getCandidates(new String[]{"jones"}));
+    }
+
+    @Test
+    public void testMixedCaseTerms() {
+        assertArrayEquals(new int[]{0, 2, 3}, index.getCandidates(new String[]{"Alic"}));
+        assertArrayEquals(new int[]{2}, index.getCandidates(new String[]{"ALIC", "Kampala"}));
+    }
+
+    @Test
+    public void testMatchesUnindexedFilter() {
+        String[] searches = {"Alice", "alice", "ALICE smith", "Kampala alic", "rob", "ROBERT jones",
+                "Bob  Jones", "a", "Al ice", "zanzibar", "mombasa CAROL"};
+        NodeEntityFactory nodeEntityFactory = mock(NodeEntityFactory.class);
+        when(nodeEntityFactory.isEntitySetReady()).thenReturn(true);
+        for (String search : searches) {
+            String[] terms = search.split(" ");
+            List<Entity<TreeReference>> unindexed = new EntityStringFilterer(terms, nodeEntityFactory,
+                    entities, false).buildMatchList();
+
+            int[] candidates = index.getCandidates(terms);
+            List<Entity<TreeReference>> narrowed = entities;
+            if (candidates != null) {
+                narrowed = new ArrayList<>();
+                for (int position : candidates) {
+                    narrowed.add(entities.get(position));
+                }
+            }
+            List<Entity<TreeReference>> indexed = new EntityStringFilterer(terms, nodeEntityFactory,
+                    narrowed, false).buildMatchList();
+            assertEquals(unindexed, indexed, search);
+        }
+    }
+
+    @Test
+    public void testNoCandidates() {
+        assertArrayEquals(new int[0], index.getCandidates(new String[]{"zanzibar"}));
+    }
+
+    @Test
+    public void testShortTermsDoNotNarrow() {
+        assertNull(index.getCandidates(new String[]{"al", "b"}));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Entity<TreeReference> entity(String... fields) {
+        Entity<TreeReference> entity = mock(Entity.class);
+        when(entity.getNumFields()).thenReturn(fields.length);
+        when(entity.getNormalizedField(anyInt())).thenAnswer(
+                invocation -> fields[(Integer)invocation.getArgument(0)].toLowerCase());
+        when(entity.getFieldString(anyInt())).thenAnswer(
+                invocation -> fields[(Integer)invocation.getArgument(0)]);
+        return entity;
+    }
+}
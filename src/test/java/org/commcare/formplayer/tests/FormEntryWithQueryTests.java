@@ -74,6 +74,7 @@ public class FormEntryWithQueryTests extends BaseTestClass {
 
         // Check if form's query was executed
         verify(webClientMock).postFormData(any(), any());
+        verify(webClientMock).postFormData(any(), any(), any());
         verifyNoMoreInteractions(webClientMock);
 
         // Open the form with `query` blocks
@@ -85,6 +86,7 @@ public class FormEntryWithQueryTests extends BaseTestClass {
 
         // verify the second query block to fetch the remote case was executed
         verify(webClientMock, times(2)).postFormData(any(), any());
+        verify(webClientMock, times(2)).postFormData(any(), any(), any());
         verifyNoMoreInteractions(webClientMock);
 
         // see if the instance is retained into the form session
@@ -127,6 +129,7 @@ public class FormEntryWithQueryTests extends BaseTestClass {
 
         // Check if form's query was executed
         verify(webClientMock).postFormData(any(), any());
+        verify(webClientMock).postFormData(any(), any(), any());
         verifyNoMoreInteractions(webClientMock);
 
         // Select a case
@@ -143,6 +146,7 @@ public class FormEntryWithQueryTests extends BaseTestClass {
         // query block
         // to do a custom lookup
         verify(webClientMock, times(3)).postFormData(any(), any());
+        verify(webClientMock, times(3)).postFormData(any(), any(), any());
         verifyNoMoreInteractions(webClientMock);
 
         // Open the form
@@ -153,6 +157,7 @@ public class FormEntryWithQueryTests extends BaseTestClass {
                 NewFormResponse.class);
 
         verify(webClientMock, times(3)).postFormData(any(), any());
+        verify(webClientMock, times(3)).postFormData(any(), any(), any());
         verifyNoMoreInteractions(webClientMock);
 
         // check we can access the 'registry' instance in the form
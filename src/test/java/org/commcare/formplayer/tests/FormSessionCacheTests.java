@@ -0,0 +1,92 @@
+package org.commcare.formplayer.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.timgroup.statsd.StatsDClient;
+
+import org.commcare.formplayer.beans.FormEntryResponseBean;
+import org.commcare.formplayer.beans.NewFormResponse;
+import org.commcare.formplayer.services.FormSessionCache;
+import org.commcare.formplayer.util.Constants;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks that form entry on a live session kept in the {@link FormSessionCache} gives the same
+ * responses and saved instance as rebuilding the session for every request
+ */
+@WebMvcTest
+public class FormSessionCacheTests extends BaseTestClass {
+
+    @Autowired
+    private StatsDClient datadogStatsDClient;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        super.setUp();
+        configureRestoreFactory("test", "test");
+    }
+
+    @Test
+    public void testAnswersMatchRebuiltSession() throws Exception {
+        String[][] answers = {{"1", "William Pride"}, {"2", "345"}, {"7", "ben rudolph"}, {"11", "1 2 3"}};
+        assertSameAsRebuilt("requests/new_form/new_form_2.json", "xforms/question_types.xml", answers);
+    }
+
+    @Test
+    public void testCalculationsMatchRebuiltSession() throws Exception {
+        String[][] answers = {{"0", "10"}, {"0", "12"}, {"0", "10"}};
+        assertSameAsRebuilt("requests/new_form/new_form_2.json", "xforms/hidden_value_form.xml", answers);
+    }
+
+    private void assertSameAsRebuilt(String requestPath, String formPath, String[][] answers)
+            throws Exception {
+        clearInvocations(datadogStatsDClient);
+        FormRun cached = fillForm(requestPath, formPath, answers);
+        // every answer after opening the form is served by the live session
+        verify(datadogStatsDClient, times(answers.length)).increment(
+                Constants.DATADOG_FORM_SESSION_CACHE_LOOKUPS, "result:hit");
+
+        clearInvocations(datadogStatsDClient);
+        FormRun rebuilt;
+        ReflectionTestUtils.setField(formController, "formSessionCache",
+                new FormSessionCache(0, 600, datadogStatsDClient));
+        try {
+            rebuilt = fillForm(requestPath, formPath, answers);
+        } finally {
+            ReflectionTestUtils.setField(formController, "formSessionCache", formSessionCache);
+        }
+        verify(datadogStatsDClient, never()).increment(
+                Constants.DATADOG_FORM_SESSION_CACHE_LOOKUPS, "result:hit");
+
+        assertEquals(rebuilt.responses, cached.responses);
+        assertEquals(rebuilt.instanceXml, cached.instanceXml);
+    }
+
+    private FormRun fillForm(String requestPath, String formPath, String[][] answers) throws Exception {
+        NewFormResponse newFormResponse = startNewForm(requestPath, formPath);
+        String sessionId = newFormResponse.getSessionId();
+        FormRun run = new FormRun();
+        for (String[] answer : answers) {
+            FormEntryResponseBean response = answerQuestionGetResult(answer[0], answer[1], sessionId);
+            run.responses.add(mapper.writeValueAsString(response.getTree()));
+        }
+        run.instanceXml = formSessionService.getSessionById(sessionId).getInstanceXml();
+        return run;
+    }
+
+    private static class FormRun {
+        private final List<String> responses = new ArrayList<>();
+        private String instanceXml;
+    }
+}
@@ -0,0 +1,90 @@
+package org.commcare.formplayer.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.commcare.formplayer.util.ParallelEntityEvaluator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for {@link ParallelEntityEvaluator}
+ */
+public class ParallelEntityEvaluatorTest {
+
+    private final ParallelEntityEvaluator evaluator = new ParallelEntityEvaluator(4, 3);
+
+    @AfterEach
+    public void tearDown() {
+        evaluator.shutdown();
+    }
+
+    @Test
+    public void testResultsInTaskOrder() throws Exception {
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            int value = i;
+            tasks.add(() -> value * value);
+            expected.add(value * value);
+        }
+        assertEquals(expected, evaluator.evaluate(tasks));
+    }
+
+    @Test
+    public void testConcurrencyLimitedPerRequest() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            tasks.add(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.sleep(2);
+                running.decrementAndGet();
+                return 0;
+            });
+        }
+        evaluator.evaluate(tasks);
+        assertTrue(maxRunning.get() <= 3);
+    }
+
+    @Test
+    public void testWaitsForSlowHelpers() throws Exception {
+        Thread caller = Thread.currentThread();
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            int value = i;
+            // the caller runs out of work while helpers are still inside their tasks
+            tasks.add(() -> {
+                if (Thread.currentThread() != caller) {
+                    Thread.sleep(100);
+                }
+                return value;
+            });
+        }
+        List<Integer> results = evaluator.evaluate(tasks);
+        for (int i = 0; i < tasks.size(); i++) {
+            assertNotNull(results.get(i));
+            assertEquals(i, results.get(i));
+        }
+    }
+
+    @Test
+    public void testFailurePropagated() {
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        tasks.add(() -> 1);
+        tasks.add(() -> {
+            throw new IllegalStateException("bad graph");
+        });
+        ExecutionException e = assertThrows(ExecutionException.class, () -> evaluator.evaluate(tasks));
+        assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+}
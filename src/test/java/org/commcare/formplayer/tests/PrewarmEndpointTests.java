@@ -0,0 +1,69 @@
+package org.commcare.formplayer.tests;
+
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.commcare.formplayer.beans.PrewarmStatusBean;
+import org.commcare.formplayer.services.PrewarmService;
+import org.commcare.formplayer.util.Constants;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.MediaType;
+
+/**
+ * Tests for the build prewarm endpoints
+ */
+@WebMvcTest
+public class PrewarmEndpointTests extends BaseTestClass {
+
+    @Autowired
+    private PrewarmService prewarmService;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        Mockito.reset(prewarmService);
+        super.setUp();
+    }
+
+    @Test
+    public void testPrewarmBuild() throws Exception {
+        PrewarmStatusBean queued = new PrewarmStatusBean("test", "app", "build");
+        when(prewarmService.prewarm("test", "app", "build")).thenReturn(queued);
+
+        mockUtilController.perform(post("/" + Constants.URL_PREWARM_BUILD)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"domain\": \"test\", \"app_id\": \"app\", \"build_id\": \"build\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.domain", is("test")))
+                .andExpect(jsonPath("$.app_id", is("app")))
+                .andExpect(jsonPath("$.build_id", is("build")))
+                .andExpect(jsonPath("$.state", is("queued")));
+        verify(prewarmService).prewarm("test", "app", "build");
+    }
+
+    @Test
+    public void testPrewarmStatus() throws Exception {
+        PrewarmStatusBean parsing = new PrewarmStatusBean("test", "app", null);
+        parsing.setState(PrewarmStatusBean.State.parsing);
+        parsing.setFormsTotal(4);
+        parsing.setFormsProcessed(1);
+        when(prewarmService.getStatus("test", "app", null)).thenReturn(parsing);
+
+        mockUtilController.perform(post("/" + Constants.URL_PREWARM_STATUS)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"domain\": \"test\", \"app_id\": \"app\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.state", is("parsing")))
+                .andExpect(jsonPath("$.forms_total", is(4)))
+                .andExpect(jsonPath("$.forms_processed", is(1)));
+        verify(prewarmService).getStatus(Mockito.eq("test"), Mockito.eq("app"), isNull());
+    }
+}
@@ -7,7 +7,7 @@ import org.commcare.formplayer.beans.NewFormResponse;
 import org.commcare.formplayer.beans.SubmitResponseBean;
 import org.commcare.formplayer.objects.SerializableFormSession;
 import org.commcare.formplayer.session.FormSession;
-import org.commcare.formplayer.util.serializer.FormDefStringSerializer;
+import org.commcare.formplayer.util.serializer.FormDefSerializer;
 import org.commcare.formplayer.utils.FileUtils;
 import org.commcare.formplayer.utils.TestContext;
 import org.javarosa.core.model.FormDef;
@@ -34,7 +34,7 @@ public class SavedFormDefTest extends BaseTestClass {
 
         SerializableFormSession session = this.formSessionService.getSessionById(
                 newSessionResponse.getSessionId());
-        FormDef actualFormDef = FormDefStringSerializer.deserialize(session.getFormDefinition().getSerializedFormDef());
+        FormDef actualFormDef = FormDefSerializer.deserialize(session.getFormDefinition().getSerializedFormDef());
 
         assertEquals(expectedFormDef.getMainInstance().getRoot(), actualFormDef.getMainInstance().getRoot());
     }
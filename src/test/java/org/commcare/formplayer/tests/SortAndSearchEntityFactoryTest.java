@@ -0,0 +1,99 @@
+package org.commcare.formplayer.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.commcare.cases.entity.Entity;
+import org.commcare.formplayer.util.SortAndSearchEntityFactory;
+import org.commcare.suite.model.Detail;
+import org.commcare.suite.model.DetailField;
+import org.commcare.suite.model.Text;
+import org.commcare.suite.model.graph.Graph;
+import org.javarosa.core.model.condition.EvaluationContext;
+import org.javarosa.core.model.instance.TreeReference;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for {@link SortAndSearchEntityFactory}
+ */
+public class SortAndSearchEntityFactoryTest {
+
+    private static final int CASES = 30;
+
+    private Detail detail;
+    private Text nameTemplate;
+    private Text dobTemplate;
+    private Text dobSort;
+    private Graph graph;
+
+    @BeforeEach
+    public void setUp() {
+        nameTemplate = mock(Text.class);
+        when(nameTemplate.evaluate(any(EvaluationContext.class))).thenAnswer(
+                invocation -> "name " + caseIndex(invocation.getArgument(0)));
+        dobTemplate = mock(Text.class);
+        when(dobTemplate.evaluate(any(EvaluationContext.class))).thenReturn("1 Jan");
+        dobSort = mock(Text.class);
+        when(dobSort.evaluate(any(EvaluationContext.class))).thenAnswer(
+                invocation -> String.valueOf(CASES - caseIndex(invocation.getArgument(0))));
+        graph = mock(Graph.class);
+
+        DetailField name = mock(DetailField.class);
+        when(name.getTemplate()).thenReturn(nameTemplate);
+        DetailField dob = mock(DetailField.class);
+        when(dob.getTemplate()).thenReturn(dobTemplate);
+        when(dob.getSort()).thenReturn(dobSort);
+        DetailField chart = mock(DetailField.class);
+        when(chart.getTemplate()).thenReturn(graph);
+        detail = mock(Detail.class);
+        when(detail.getFields()).thenReturn(new DetailField[]{name, dob, chart});
+    }
+
+    @Test
+    public void testOnlySortFieldsEvaluated() {
+        SortAndSearchEntityFactory factory = new SortAndSearchEntityFactory(detail,
+                new EvaluationContext(null), new int[]{1}, false);
+        List<Entity<TreeReference>> entities = buildEntities(factory);
+
+        // every case is sorted on its date of birth, the rows off the requested page never have
+        // their names or graphs evaluated
+        verify(dobTemplate, times(CASES)).evaluate(any(EvaluationContext.class));
+        verify(dobSort, times(CASES)).evaluate(any(EvaluationContext.class));
+        verify(nameTemplate, never()).evaluate(any(EvaluationContext.class));
+        verify(graph, never()).evaluate(any(EvaluationContext.class));
+        assertEquals(String.valueOf(CASES), entities.get(0).getSortField(1));
+        assertEquals("", entities.get(0).getFieldString(0));
+    }
+
+    @Test
+    public void testSearchEvaluatesTextFields() {
+        SortAndSearchEntityFactory factory = new SortAndSearchEntityFactory(detail,
+                new EvaluationContext(null), new int[]{1}, true);
+        List<Entity<TreeReference>> entities = buildEntities(factory);
+
+        verify(nameTemplate, times(CASES)).evaluate(any(EvaluationContext.class));
+        verify(graph, never()).evaluate(any(EvaluationContext.class));
+        assertEquals("name 3", entities.get(3).getFieldString(0));
+    }
+
+    private static List<Entity<TreeReference>> buildEntities(SortAndSearchEntityFactory factory) {
+        List<Entity<TreeReference>> entities = new ArrayList<>();
+        for (int i = 0; i < CASES; i++) {
+            entities.add(factory.getEntity(TreeReference.rootRef().extendRef("case", i)));
+        }
+        return entities;
+    }
+
+    private static int caseIndex(EvaluationContext context) {
+        return context.getContextRef().getMultLast();
+    }
+}
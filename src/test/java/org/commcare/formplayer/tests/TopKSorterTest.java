@@ -0,0 +1,56 @@
+package org.commcare.formplayer.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.commcare.formplayer.util.TopKSorter;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests for {@link TopKSorter}
+ */
+public class TopKSorterTest {
+
+    // compares only the first character so that many rows tie
+    private static final Comparator<String> FIRST_CHARACTER = Comparator.comparing(row -> row.charAt(0));
+
+    @Test
+    public void testMatchesPrefixOfStableSort() {
+        Random random = new Random(42);
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            rows.add((char)('a' + random.nextInt(20)) + "-" + i);
+        }
+        List<String> expected = new ArrayList<>(rows);
+        Collections.sort(expected, FIRST_CHARACTER);
+
+        for (int k : new int[]{1, 10, 110, 2499, 2500, 4999, 5000, 6000}) {
+            List<String> sorted = TopKSorter.sort(rows, FIRST_CHARACTER, k);
+            assertEquals(expected.subList(0, Math.min(k, rows.size())), sorted);
+        }
+    }
+
+    @Test
+    public void testInputNotModified() {
+        List<String> rows = new ArrayList<>();
+        for (int i = 50; i > 0; i--) {
+            rows.add("row" + i);
+        }
+        List<String> original = new ArrayList<>(rows);
+        TopKSorter.sort(rows, Comparator.naturalOrder(), 5);
+        TopKSorter.sort(rows, Comparator.naturalOrder(), 50);
+        assertEquals(original, rows);
+    }
+
+    @Test
+    public void testEmpty() {
+        assertTrue(TopKSorter.sort(new ArrayList<String>(), FIRST_CHARACTER, 10).isEmpty());
+        assertTrue(TopKSorter.sort(Collections.singletonList("a"), FIRST_CHARACTER, 0).isEmpty());
+    }
+}
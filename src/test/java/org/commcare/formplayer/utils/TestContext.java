@@ -2,31 +2,43 @@ package org.commcare.formplayer.utils;
 
 import com.timgroup.statsd.StatsDClient;
 
+import org.commcare.formplayer.engine.CczStore;
 import org.commcare.formplayer.installers.FormplayerInstallerFactory;
+import org.commcare.formplayer.installers.XFormPreparser;
 import org.commcare.formplayer.mocks.MockLockRegistry;
 import org.commcare.formplayer.mocks.TestInstallService;
 import org.commcare.formplayer.objects.FormVolatilityRecord;
 import org.commcare.formplayer.services.CaseSearchHelper;
+import org.commcare.formplayer.services.CaseSearchRedisCache;
 import org.commcare.formplayer.services.CategoryTimingHelper;
+import org.commcare.formplayer.services.DetailResponseCache;
+import org.commcare.formplayer.services.EntityListCache;
 import org.commcare.formplayer.services.FormDefinitionService;
 import org.commcare.formplayer.services.FormSessionService;
 import org.commcare.formplayer.services.FormplayerFormSendCalloutHandler;
 import org.commcare.formplayer.services.FormplayerStorageFactory;
+import org.commcare.formplayer.services.FormSessionCache;
+import org.commcare.formplayer.services.GraphHtmlCache;
 import org.commcare.formplayer.services.HqUserDetailsService;
 import org.commcare.formplayer.services.InstallService;
 import org.commcare.formplayer.services.MenuSessionFactory;
 import org.commcare.formplayer.services.MenuSessionRunnerService;
 import org.commcare.formplayer.services.MenuSessionService;
+import org.commcare.formplayer.services.NavigationSnapshotCache;
 import org.commcare.formplayer.services.NewFormResponseFactory;
+import org.commcare.formplayer.services.PrewarmService;
 import org.commcare.formplayer.services.RestoreFactory;
+import org.commcare.formplayer.services.SessionSelectionCache;
 import org.commcare.formplayer.services.SubmitService;
 import org.commcare.formplayer.services.VirtualDataInstanceService;
 import org.commcare.formplayer.util.Constants;
 import org.commcare.formplayer.util.FormplayerDatadog;
 import org.commcare.formplayer.util.NotificationLogger;
+import org.commcare.formplayer.util.ParallelEntityEvaluator;
 import org.commcare.formplayer.web.client.WebClient;
 import org.commcare.modern.reference.ArchiveFileRoot;
 import org.javarosa.core.model.actions.FormSendCalloutHandler;
+import org.mockito.Answers;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.springframework.boot.test.mock.mockito.MockBean;
@@ -41,8 +53,12 @@ import org.springframework.integration.support.locks.LockRegistry;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.servlet.view.InternalResourceViewResolver;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.List;
 
 
 public class TestContext {
@@ -82,8 +98,6 @@ public class TestContext {
     @MockBean
     public VirtualDataInstanceService virtualDataInstanceService;
 
-    @MockBean
-    public WebClient webClient;
 
     @MockBean
     public HqUserDetailsService userDetailsService;
@@ -91,6 +105,9 @@ public class TestContext {
     @MockBean
     public NotificationLogger notificationLogger;
 
+    @MockBean
+    public PrewarmService prewarmService;
+
     @Bean
     public ValueOperations<String, Long> redisTemplateLong() {
         return Mockito.mock(ValueOperations.class);
@@ -161,11 +178,92 @@ public class TestContext {
         return Mockito.spy(ArchiveFileRoot.class);
     }
 
+    @Bean
+    public CczStore cczStore() {
+        return Mockito.mock(CczStore.class);
+    }
+
+    @Bean
+    public EntityListCache entityListCache() {
+        return new EntityListCache(16 * 1024 * 1024, 600);
+    }
+
+    @Bean
+    public NavigationSnapshotCache navigationSnapshotCache() {
+        // no capacity, tests share users and sandboxes but mock different case search results
+        return new NavigationSnapshotCache(0, 600);
+    }
+
+    @Bean
+    public GraphHtmlCache graphHtmlCache() {
+        return new GraphHtmlCache(16 * 1024 * 1024, 600, datadogStatsDClient());
+    }
+
+    @Bean
+    public DetailResponseCache detailResponseCache() {
+        // no capacity, tests share users and sandboxes but restore different cases
+        return new DetailResponseCache(0, 600);
+    }
+
+    @Bean
+    public FormSessionCache formSessionCache() {
+        // spied so that it is injected into the controllers under test
+        return Mockito.spy(new FormSessionCache(100, 600, datadogStatsDClient()));
+    }
+
+    @Bean
+    public SessionSelectionCache sessionSelectionCache() {
+        // nothing is confirmed unless a test stubs the restore factory
+        SessionSelectionCache sessionSelectionCache = Mockito.mock(SessionSelectionCache.class);
+        Mockito.when(sessionSelectionCache.getConfirmed(Mockito.any(), Mockito.anyList(), Mockito.any()))
+                .thenAnswer(invocation -> new boolean[((List<?>)invocation.getArgument(1)).size()]);
+        return sessionSelectionCache;
+    }
+
+    @Bean
+    public ParallelEntityEvaluator parallelEntityEvaluator() {
+        return new ParallelEntityEvaluator(2, 2);
+    }
+
+    @Bean
+    public XFormPreparser xFormPreparser() {
+        return new XFormPreparser(2, datadogStatsDClient());
+    }
+
+    @Bean
+    public WebClient webClient() {
+        // tests stub the buffered postFormData, serve streamed posts from those stubs
+        return Mockito.mock(WebClient.class, invocation -> {
+            if (invocation.getMethod().getName().equals("postFormData")
+                    && invocation.getArguments().length == 3) {
+                WebClient webClient = (WebClient)invocation.getMock();
+                String response = webClient.postFormData(invocation.getArgument(0), invocation.getArgument(1));
+                WebClient.ResponseReader<?> reader = invocation.getArgument(2);
+                try {
+                    if (response == null) {
+                        throw new IOException("No response from server");
+                    }
+                    byte[] body = response.getBytes(StandardCharsets.UTF_8);
+                    return reader.read(new ByteArrayInputStream(body), body.length);
+                } catch (Exception e) {
+                    throw new WebClient.ResponseReadException(e);
+                }
+            }
+            return Answers.RETURNS_DEFAULTS.answer(invocation);
+        });
+    }
+
     @Bean
     public CaseSearchHelper caseSearchHelper() {
         return new CaseSearchHelper();
     }
 
+    @Bean
+    public CaseSearchRedisCache caseSearchRedisCache() {
+        // results are only cached on the node
+        return Mockito.mock(CaseSearchRedisCache.class);
+    }
+
 
     @Bean
     public CategoryTimingHelper categoryTimingHelper() {
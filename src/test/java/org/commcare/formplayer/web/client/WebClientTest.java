@@ -9,6 +9,7 @@ import static org.springframework.test.web.client.response.MockRestResponseCreat
 
 import com.google.common.collect.ImmutableListMultimap;
 
+import org.apache.commons.io.IOUtils;
 import org.commcare.formplayer.services.RestoreFactory;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -26,7 +27,9 @@ import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 
 public class WebClientTest {
 
@@ -81,4 +84,33 @@ public class WebClientTest {
         mockServer.verify();
     }
 
+    @Test
+    public void testPostFormDataStreamed() {
+        String url = "http://localhost:8000/a/demo/receiver/1234";
+        mockServer.expect(ExpectedCount.once(), requestTo(url))
+                .andExpect(method(HttpMethod.POST))
+                .andRespond(withStatus(HttpStatus.OK)
+                        .contentType(MediaType.TEXT_HTML)
+                        .body("response123")
+                );
+
+        String response = webClient.postFormData(url, ImmutableListMultimap.of("a", "1"),
+                (body, contentLength) -> IOUtils.toString(body, StandardCharsets.UTF_8));
+        Assertions.assertEquals("response123", response);
+
+        mockServer.verify();
+    }
+
+    @Test
+    public void testPostFormDataStreamedReaderFailure() {
+        String url = "http://localhost:8000/a/demo/receiver/1234";
+        mockServer.expect(ExpectedCount.once(), requestTo(url))
+                .andRespond(withStatus(HttpStatus.OK).body("response123"));
+
+        WebClient.ResponseReadException e = Assertions.assertThrows(WebClient.ResponseReadException.class,
+                () -> webClient.postFormData(url, ImmutableListMultimap.of("a", "1"), (body, contentLength) -> {
+                    throw new IOException("too big");
+                }));
+        Assertions.assertEquals("too big", e.getCause().getMessage());
+    }
 }
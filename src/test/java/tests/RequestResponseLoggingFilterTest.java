@@ -1,5 +1,6 @@
 package tests;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.argThat;
 import static org.mockito.Mockito.doAnswer;
@@ -69,6 +70,26 @@ public class RequestResponseLoggingFilterTest {
         }));
     }
 
+    @Test
+    @WithHqUser
+    public void testResponseWrittenThroughAndLogTruncated() throws IOException, ServletException {
+        String responseBody = "0123456789abcdef";
+        HttpServletRequest request = this.getHttpRequest("{}", "/test");
+        MockHttpServletResponse response = this.getHttpServletResponse(responseBody);
+        FilterChain filterChain = this.getFilterChain(responseBody);
+
+        RequestResponseLoggingFilter reqRespFilter = new RequestResponseLoggingFilter(this.log,
+                true, 4);
+        reqRespFilter.doFilter(request, response, filterChain);
+
+        assertEquals(responseBody, response.getContentAsString());
+        verify(this.log).info(argThat(logMessage -> {
+            return ((JSONObject)logMessage).getString("responseBody").equals("0123") &&
+                    ((JSONObject)logMessage).getLong("responseSize") == responseBody.length() &&
+                    ((JSONObject)logMessage).getBoolean("responseTruncated");
+        }));
+    }
+
     @Test
     @WithHqUser
     public void testDoFilterNoLogging() throws IOException, ServletException {